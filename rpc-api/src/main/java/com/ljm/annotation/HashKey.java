@@ -0,0 +1,16 @@
+package com.ljm.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * @author ljm
+ * 标记作为一致性哈希key的方法参数
+ * 使用一致性哈希负载均衡时，该参数相同的调用总是路由到同一个服务提供者
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.PARAMETER)
+public @interface HashKey {
+}
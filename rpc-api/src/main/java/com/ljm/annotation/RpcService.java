@@ -0,0 +1,16 @@
+package com.ljm.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * @author ljm
+ * 标记RPC服务接口，编译时为其生成客户端桩类和服务端骨架类
+ * 客户端桩类代替JDK动态代理，服务端骨架类用switch直接调用实现类，二者都不经过反射
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface RpcService {
+}
@@ -0,0 +1,17 @@
+package com.ljm.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * @author ljm
+ * 调用超时时间（毫秒）
+ * 标在方法上只对该方法生效，标在接口上对接口的所有方法生效，方法上的优先
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.METHOD, ElementType.TYPE})
+public @interface RpcTimeout {
+    long value();
+}
@@ -0,0 +1,340 @@
+package com.ljm.processor;
+
+import com.ljm.stub.StubNaming;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.TypeParameterElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.ExecutableType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * @ClassName RpcStubProcessor
+ * @Description 为 @RpcService 接口生成客户端桩类和服务端骨架类
+ * 桩类实现接口，每个方法把预先取好的Method和参数交给InvocationHandler（ClientProxy 为该接口创建），不再需要JDK动态代理
+ * 骨架类实现ServiceSkeleton，按方法下标switch直接调用实现类，服务端不再经过反射或MethodHandle适配
+ * 方法签名规则与 MethodSignatureUtil 一致：接口二进制名#方法名(参数类型的Class.getName())
+ * @Author ljm
+ */
+@SupportedAnnotationTypes("com.ljm.annotation.RpcService")
+public class RpcStubProcessor extends AbstractProcessor {
+    private static final String GENERATED = "@javax.annotation.processing.Generated(\"" + RpcStubProcessor.class.getName() + "\")";
+
+    private Elements elements;
+    private Types types;
+    private Filer filer;
+    private Messager messager;
+
+    @Override
+    public synchronized void init(ProcessingEnvironment processingEnv) {
+        super.init(processingEnv);
+        elements = processingEnv.getElementUtils();
+        types = processingEnv.getTypeUtils();
+        filer = processingEnv.getFiler();
+        messager = processingEnv.getMessager();
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (TypeElement annotation : annotations) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                if (element.getKind() != ElementKind.INTERFACE) {
+                    messager.printMessage(Diagnostic.Kind.ERROR, "@RpcService 只能标注在接口上", element);
+                    continue;
+                }
+                TypeElement service = (TypeElement) element;
+                try {
+                    List<ExecutableElement> methods = getServiceMethods(service);
+                    writeStub(service, methods);
+                    writeSkeleton(service, methods);
+                } catch (IOException e) {
+                    messager.printMessage(Diagnostic.Kind.ERROR, "生成桩类失败: " + e, element);
+                }
+            }
+        }
+        return true;
+    }
+
+    //接口及其父接口中所有可调用的抽象方法和默认方法，不含静态方法、私有方法和Object的方法
+    private List<ExecutableElement> getServiceMethods(TypeElement service) {
+        List<ExecutableElement> methods = new ArrayList<>();
+        for (Element member : elements.getAllMembers(service)) {
+            if (member.getKind() != ElementKind.METHOD
+                    || member.getEnclosingElement().getKind() != ElementKind.INTERFACE
+                    || member.getModifiers().contains(Modifier.STATIC)
+                    || member.getModifiers().contains(Modifier.PRIVATE)) {
+                continue;
+            }
+            methods.add((ExecutableElement) member);
+        }
+        return methods;
+    }
+
+    /**
+     * 客户端桩类：
+     * public final class UserServiceRpcStub implements UserService {
+     *     public User getUserByUserId(Integer id) { return (User) handler.invoke(this, METHODS[0], new Object[]{id}); }
+     * }
+     */
+    private void writeStub(TypeElement service, List<ExecutableElement> methods) throws IOException {
+        String interfaceName = elements.getBinaryName(service).toString();
+        String className = StubNaming.getStubClassName(interfaceName);
+        String simpleName = className.substring(className.lastIndexOf('.') + 1);
+        DeclaredType serviceType = (DeclaredType) service.asType();
+        String serviceTypeName = types.erasure(serviceType).toString();
+
+        StringBuilder sb = new StringBuilder();
+        appendPackage(sb, service);
+        sb.append(GENERATED).append('\n');
+        sb.append("@SuppressWarnings({\"unchecked\", \"rawtypes\"})\n");
+        sb.append("public final class ").append(simpleName).append(typeParameters(service.getTypeParameters()))
+                .append(" implements ").append(serviceType).append(" {\n");
+        sb.append("    private static final java.lang.reflect.Method[] METHODS;\n\n");
+        sb.append("    static {\n        try {\n            METHODS = new java.lang.reflect.Method[]{\n");
+        for (ExecutableElement method : methods) {
+            sb.append("                    ").append(serviceTypeName).append(".class.getMethod(\"")
+                    .append(method.getSimpleName()).append('"');
+            for (TypeMirror parameterType : ((ExecutableType) method.asType()).getParameterTypes()) {
+                sb.append(", ").append(types.erasure(parameterType)).append(".class");
+            }
+            sb.append("),\n");
+        }
+        sb.append("            };\n        } catch (NoSuchMethodException e) {\n")
+                .append("            throw new ExceptionInInitializerError(e);\n        }\n    }\n\n");
+        sb.append("    private final java.lang.reflect.InvocationHandler handler;\n\n");
+        sb.append("    public ").append(simpleName).append("(java.lang.reflect.InvocationHandler handler) {\n")
+                .append("        this.handler = handler;\n    }\n");
+
+        for (int i = 0; i < methods.size(); i++) {
+            ExecutableElement method = methods.get(i);
+            ExecutableType methodType = (ExecutableType) types.asMemberOf(serviceType, method);
+            List<? extends TypeMirror> parameterTypes = methodType.getParameterTypes();
+            TypeMirror returnType = methodType.getReturnType();
+
+            sb.append("\n    @Override\n    public ");
+            String methodTypeParameters = typeParameters(method.getTypeParameters());
+            if (!methodTypeParameters.isEmpty()) {
+                sb.append(methodTypeParameters).append(' ');
+            }
+            sb.append(returnType).append(' ').append(method.getSimpleName()).append('(');
+            for (int p = 0; p < parameterTypes.size(); p++) {
+                if (p > 0) {
+                    sb.append(", ");
+                }
+                TypeMirror parameterType = parameterTypes.get(p);
+                if (method.isVarArgs() && p == parameterTypes.size() - 1) {
+                    sb.append(((ArrayType) parameterType).getComponentType()).append("...");
+                } else {
+                    sb.append(parameterType);
+                }
+                sb.append(" arg").append(p);
+            }
+            sb.append(')');
+            List<TypeMirror> thrownTypes = getCheckedThrownTypes(methodType.getThrownTypes());
+            if (!methodType.getThrownTypes().isEmpty()) {
+                sb.append(" throws ").append(methodType.getThrownTypes().stream()
+                        .map(TypeMirror::toString).collect(Collectors.joining(", ")));
+            }
+            sb.append(" {\n        try {\n            ");
+            if (returnType.getKind() != TypeKind.VOID) {
+                sb.append("return (").append(returnType).append(") ");
+            }
+            sb.append("handler.invoke(this, METHODS[").append(i).append("], ");
+            if (parameterTypes.isEmpty()) {
+                //与JDK动态代理一致，无参方法传null
+                sb.append("null");
+            } else {
+                sb.append("new Object[]{");
+                for (int p = 0; p < parameterTypes.size(); p++) {
+                    sb.append(p > 0 ? ", arg" : "arg").append(p);
+                }
+                sb.append('}');
+            }
+            sb.append(");\n        } catch (RuntimeException | Error e) {\n            throw e;\n        }");
+            boolean catchesThrowable = false;
+            for (TypeMirror thrownType : thrownTypes) {
+                sb.append(" catch (").append(thrownType).append(" e) {\n            throw e;\n        }");
+                catchesThrowable |= thrownType.toString().equals("java.lang.Throwable");
+            }
+            if (!catchesThrowable) {
+                sb.append(" catch (Throwable e) {\n")
+                        .append("            throw new java.lang.reflect.UndeclaredThrowableException(e);\n        }");
+            }
+            sb.append("\n    }\n");
+        }
+        sb.append("}\n");
+        write(className, service, sb);
+    }
+
+    /**
+     * 服务端骨架类：
+     * switch (methodIndex) { case 0: return service.getUserByUserId((Integer) args[0]); ... }
+     */
+    private void writeSkeleton(TypeElement service, List<ExecutableElement> methods) throws IOException {
+        String interfaceName = elements.getBinaryName(service).toString();
+        String className = StubNaming.getSkeletonClassName(interfaceName);
+        String simpleName = className.substring(className.lastIndexOf('.') + 1);
+        String serviceTypeName = types.erasure(service.asType()).toString();
+
+        StringBuilder sb = new StringBuilder();
+        appendPackage(sb, service);
+        sb.append(GENERATED).append('\n');
+        sb.append("@SuppressWarnings({\"unchecked\", \"rawtypes\"})\n");
+        sb.append("public final class ").append(simpleName).append(" implements com.ljm.stub.ServiceSkeleton {\n");
+        sb.append("    private static final String[] SIGNATURES = {\n");
+        for (ExecutableElement method : methods) {
+            sb.append("            \"").append(getMethodSignature(interfaceName, method)).append("\",\n");
+        }
+        sb.append("    };\n\n");
+        sb.append("    private final ").append(serviceTypeName).append(" service;\n\n");
+        sb.append("    public ").append(simpleName).append('(').append(serviceTypeName).append(" service) {\n")
+                .append("        this.service = service;\n    }\n\n");
+        sb.append("    @Override\n    public String[] getMethodSignatures() {\n        return SIGNATURES.clone();\n    }\n\n");
+        sb.append("    @Override\n    public Object invoke(int methodIndex, Object[] args) throws Throwable {\n")
+                .append("        switch (methodIndex) {\n");
+        DeclaredType serviceType = (DeclaredType) service.asType();
+        for (int i = 0; i < methods.size(); i++) {
+            ExecutableElement method = methods.get(i);
+            //参数按在本接口中的类型转换，父接口方法的类型参数已由本接口确定，如 BaseService<String>.find(K) 取 String
+            List<? extends TypeMirror> parameterTypes = ((ExecutableType) types.asMemberOf(serviceType, method)).getParameterTypes();
+            StringBuilder call = new StringBuilder("service.").append(method.getSimpleName()).append('(');
+            for (int p = 0; p < parameterTypes.size(); p++) {
+                if (p > 0) {
+                    call.append(", ");
+                }
+                call.append('(').append(types.erasure(parameterTypes.get(p))).append(") args[").append(p).append(']');
+            }
+            call.append(')');
+            sb.append("            case ").append(i).append(":\n");
+            if (method.getReturnType().getKind() == TypeKind.VOID) {
+                sb.append("                ").append(call).append(";\n                return null;\n");
+            } else {
+                sb.append("                return ").append(call).append(";\n");
+            }
+        }
+        sb.append("            default:\n")
+                .append("                throw new IllegalArgumentException(\"未知的方法下标: \" + methodIndex);\n")
+                .append("        }\n    }\n}\n");
+        write(className, service, sb);
+    }
+
+    //与 MethodSignatureUtil.getMethodSignature 的格式保持一致
+    private String getMethodSignature(String interfaceName, ExecutableElement method) {
+        StringBuilder sb = new StringBuilder(interfaceName).append('#').append(method.getSimpleName()).append('(');
+        List<? extends TypeMirror> parameterTypes = ((ExecutableType) method.asType()).getParameterTypes();
+        for (int i = 0; i < parameterTypes.size(); i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(getClassName(types.erasure(parameterTypes.get(i))));
+        }
+        return sb.append(')').toString();
+    }
+
+    //擦除后类型的 Class.getName()
+    private String getClassName(TypeMirror type) {
+        if (type.getKind() == TypeKind.ARRAY) {
+            return getDescriptor(type).replace('/', '.');
+        }
+        if (type.getKind().isPrimitive()) {
+            return type.toString();
+        }
+        return elements.getBinaryName((TypeElement) types.asElement(type)).toString();
+    }
+
+    //数组的 Class.getName() 形式，如 [I、[Ljava.lang.String;
+    private String getDescriptor(TypeMirror type) {
+        switch (type.getKind()) {
+            case BOOLEAN: return "Z";
+            case BYTE: return "B";
+            case CHAR: return "C";
+            case SHORT: return "S";
+            case INT: return "I";
+            case LONG: return "J";
+            case FLOAT: return "F";
+            case DOUBLE: return "D";
+            case ARRAY: return "[" + getDescriptor(types.erasure(((ArrayType) type).getComponentType()));
+            default: return "L" + getClassName(types.erasure(type)) + ";";
+        }
+    }
+
+    //需要原样抛出的受检异常，去掉运行时异常以及已被其父类覆盖的类型，避免重复catch
+    private List<TypeMirror> getCheckedThrownTypes(List<? extends TypeMirror> thrownTypes) {
+        TypeMirror runtimeException = elements.getTypeElement("java.lang.RuntimeException").asType();
+        TypeMirror error = elements.getTypeElement("java.lang.Error").asType();
+        List<TypeMirror> result = new ArrayList<>();
+        for (TypeMirror thrownType : thrownTypes) {
+            if (types.isSubtype(thrownType, runtimeException) || types.isSubtype(thrownType, error)) {
+                continue;
+            }
+            boolean covered = false;
+            for (TypeMirror other : thrownTypes) {
+                if (other != thrownType && !types.isSameType(other, thrownType) && types.isSubtype(thrownType, other)) {
+                    covered = true;
+                    break;
+                }
+            }
+            if (!covered) {
+                result.add(thrownType);
+            }
+        }
+        return result;
+    }
+
+    private String typeParameters(List<? extends TypeParameterElement> typeParameters) {
+        if (typeParameters.isEmpty()) {
+            return "";
+        }
+        return typeParameters.stream().map(parameter -> {
+            List<? extends TypeMirror> bounds = parameter.getBounds();
+            if (bounds.isEmpty() || (bounds.size() == 1 && bounds.get(0).toString().equals("java.lang.Object"))) {
+                return parameter.getSimpleName().toString();
+            }
+            return parameter.getSimpleName() + " extends "
+                    + bounds.stream().map(TypeMirror::toString).collect(Collectors.joining(" & "));
+        }).collect(Collectors.joining(", ", "<", ">"));
+    }
+
+    private void appendPackage(StringBuilder sb, TypeElement service) {
+        PackageElement packageElement = elements.getPackageOf(service);
+        if (!packageElement.isUnnamed()) {
+            sb.append("package ").append(packageElement.getQualifiedName()).append(";\n\n");
+        }
+    }
+
+    private void write(String className, TypeElement service, StringBuilder source) throws IOException {
+        JavaFileObject file = filer.createSourceFile(className, service);
+        try (Writer writer = file.openWriter()) {
+            writer.write(source.toString());
+        }
+    }
+}
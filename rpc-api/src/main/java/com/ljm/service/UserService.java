@@ -1,14 +1,22 @@
 package com.ljm.service;
 
+import com.ljm.annotation.HashKey;
 import com.ljm.annotation.Retryable;
+import com.ljm.annotation.RpcService;
 import com.ljm.pojo.User;
 
+import java.util.concurrent.CompletableFuture;
+
+@RpcService
 public interface UserService {
 
     // 查询
     @Retryable
-    User getUserByUserId(Integer id);
+    User getUserByUserId(@HashKey Integer id);
 
     // 新增 不是幂等性操作，不支持重试
     Integer insertUserId(User user);
+
+    // 异步查询 客户端调用后立即返回，结果到达时完成
+    CompletableFuture<User> getUserByUserIdAsync(Integer id);
 }
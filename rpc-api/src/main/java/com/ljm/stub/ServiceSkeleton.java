@@ -0,0 +1,15 @@
+package com.ljm.stub;
+
+/**
+ * @InterfaceName ServiceSkeleton
+ * @Description 服务端骨架，由注解处理器为 @RpcService 接口生成
+ * 每个方法对应一个下标，调用时按下标switch到实现类的方法上
+ * @Author ljm
+ */
+public interface ServiceSkeleton {
+    //方法签名（接口名#方法名(参数类型)），数组下标即方法下标
+    String[] getMethodSignatures();
+
+    //调用第 methodIndex 个方法，业务异常原样抛出
+    Object invoke(int methodIndex, Object[] args) throws Throwable;
+}
@@ -0,0 +1,22 @@
+package com.ljm.stub;
+
+/**
+ * @ClassName StubNaming
+ * @Description 生成类的命名规则，注解处理器生成时和运行时加载时共用
+ * 与接口在同一个包下，内部接口的 $ 替换为 _，例如 com.ljm.service.UserService -> com.ljm.service.UserServiceRpcStub
+ * @Author ljm
+ */
+public class StubNaming {
+    public static final String STUB_SUFFIX = "RpcStub";
+    public static final String SKELETON_SUFFIX = "RpcSkeleton";
+
+    //客户端桩类的全限定名，参数为接口的二进制名（Class.getName()）
+    public static String getStubClassName(String interfaceName) {
+        return interfaceName.replace('$', '_') + STUB_SUFFIX;
+    }
+
+    //服务端骨架类的全限定名
+    public static String getSkeletonClassName(String interfaceName) {
+        return interfaceName.replace('$', '_') + SKELETON_SUFFIX;
+    }
+}
@@ -11,7 +11,10 @@ public enum RequestType {
 
     NORMAL(0),
 
-    HEARTBEAT(1);
+    HEARTBEAT(1),
+
+    //握手：客户端建连后获取服务端的方法id字典
+    HANDSHAKE(2);
 
     private int code;
 
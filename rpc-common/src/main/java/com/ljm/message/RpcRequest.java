@@ -20,6 +20,8 @@ import java.io.Serializable;
 public class RpcRequest implements Serializable {
     //请求类型：与心跳包进行区分
     private RequestType requestType=RequestType.NORMAL;
+    //请求id：同一连接上多路复用时，用于把响应和请求对应起来，只在协议头中传输，不进入消息体
+    private transient long requestId;
     //接口名、方法名、参数列表参数类型
     private String interfaceName;
 
@@ -29,7 +31,21 @@ public class RpcRequest implements Serializable {
 
     private Class<?>[] paramsType;
 
+    //方法id：握手后由服务端分配，大于0时服务端按id定位方法，此时接口名、方法名、参数类型都不再传输
+    private int methodId;
+
+    //剩余超时时间（毫秒），0表示不限制；服务端收到后据此判断请求是否已过期
+    //传相对时间而不是绝对时间戳，不受两端时钟偏差影响
+    private long timeout;
+
+    //方法签名，仅在客户端本地用于查找方法id，不参与序列化
+    private transient String methodSignature;
+
     public static RpcRequest heartBeat(){
         return RpcRequest.builder().requestType(RequestType.HEARTBEAT).build();
     }
+
+    public static RpcRequest handshake(){
+        return RpcRequest.builder().requestType(RequestType.HANDSHAKE).build();
+    }
 }
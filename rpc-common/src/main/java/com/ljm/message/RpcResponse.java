@@ -17,6 +17,8 @@ import java.io.Serializable;
 @Data
 @Builder
 public class RpcResponse implements Serializable {
+    //对应请求的id，只在协议头中传输，不进入消息体
+    private transient long requestId;
     //状态信息
     private int code;
     private String message;
@@ -24,10 +26,16 @@ public class RpcResponse implements Serializable {
     private Object data;
 
     public static RpcResponse sussess(Object data) {
-        return RpcResponse.builder().code(200).dataType(data.getClass()).data(data).build();
+        //无返回值(void)或异步结果为null时，dataType为空
+        return RpcResponse.builder().code(200).dataType(data == null ? null : data.getClass()).data(data).build();
     }
 
     public static RpcResponse fail(String msg) {
         return RpcResponse.builder().code(500).message(msg).build();
     }
+
+    //服务端过载拒绝，请求没有被执行，调用方可以换一个实例重试
+    public static RpcResponse overloaded(String msg) {
+        return RpcResponse.builder().code(503).message(msg).build();
+    }
 }
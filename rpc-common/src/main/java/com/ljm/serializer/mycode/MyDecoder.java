@@ -3,54 +3,88 @@ package com.ljm.serializer.mycode;
 
 import com.ljm.exception.SerializeException;
 import com.ljm.message.MessageType;
+import com.ljm.message.RpcRequest;
+import com.ljm.message.RpcResponse;
 import com.ljm.serializer.myserializer.Serializer;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
-import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
 import lombok.extern.slf4j.Slf4j;
 
-import java.util.Arrays;
-import java.util.List;
-
 /**
  * @ClassName MyDecoder
  * @Description 解码器
+ * 基于长度字段拆帧，半包时由父类累积等待，粘包时按长度切分，不会破坏后续数据
+ * 拆出的帧是累积缓冲区上retain过的切片，消息体直接以切片交给序列化器，不再额外拷贝到byte[]
  * @Author ljm
  */
 @Slf4j
-public class MyDecoder extends ByteToMessageDecoder {//负责传入的字节流解码为业务对象，并将解码后的对象添加到out中，供下一个handler处理
+public class MyDecoder extends LengthFieldBasedFrameDecoder {//负责传入的字节流解码为业务对象，并将解码后的对象添加到out中，供下一个handler处理
+
+    public MyDecoder() {
+        this(ProtocolConstant.MAX_FRAME_LENGTH);
+    }
+
+    public MyDecoder(int maxFrameLength) {
+        super(maxFrameLength, ProtocolConstant.LENGTH_FIELD_OFFSET, ProtocolConstant.LENGTH_FIELD_LENGTH, 0, 0);
+    }
+
     @Override
-    protected void decode(ChannelHandlerContext channelHandlerContext, ByteBuf in, List<Object> out) throws Exception {
-        //检查可读字节数
-        if (in.readableBytes() < 6) {  // messageType + serializerType + length
-            return;
+    protected Object decode(ChannelHandlerContext ctx, ByteBuf in) throws Exception {
+        //拆出一个完整的帧，数据不完整时返回null，等待更多数据
+        ByteBuf frame = (ByteBuf) super.decode(ctx, in);
+        if (frame == null) {
+            return null;
+        }
+        try {
+            return decodeFrame(frame);
+        } finally {
+            frame.release();
         }
-        //1.读取消息类型
-        short messageType = in.readShort();
+    }
+
+    private Object decodeFrame(ByteBuf frame) {
+        //1.校验魔数和版本
+        int magic = frame.readInt();
+        if (magic != ProtocolConstant.MAGIC_NUMBER) {
+            throw new CorruptedFrameException("非法的魔数: " + Integer.toHexString(magic));
+        }
+        byte version = frame.readByte();
+        if (version != ProtocolConstant.VERSION) {
+            throw new CorruptedFrameException("不支持的协议版本: " + version);
+        }
+        //2.读取消息类型
+        byte messageType = frame.readByte();
         // 现在还只支持request与response请求
         if (messageType != MessageType.REQUEST.getCode() &&
                 messageType != MessageType.RESPONSE.getCode()) {
+            //帧长度已知，丢弃这一帧即可，不影响后续数据
             log.warn("暂不支持此种数据, messageType: {}", messageType);
-            return;
+            return null;
         }
-        //2.读取序列化的方式&类型
-        short serializerType = in.readShort();
+        //3.读取序列化的方式&类型
+        byte serializerType = frame.readByte();
         Serializer serializer = Serializer.getSerializerByCode(serializerType);
         if (serializer == null) {
             log.error("不存在对应的序列化器, serializerType: {}", serializerType);
             throw new SerializeException("不存在对应的序列化器, serializerType: " + serializerType);
         }
-        //3.读取序列化数组长度
-        int length = in.readInt();
-        if (in.readableBytes() < length) {
-            return;  // 数据不完整，等待更多数据
+        //4.压缩标志、请求id、长度
+        byte compress = frame.readByte();
+        if (compress != ProtocolConstant.COMPRESS_NONE) {
+            throw new SerializeException("不支持的压缩方式: " + compress);
         }
-        //4.读取序列化数组
-        byte[] bytes = new byte[length];
-        in.readBytes(bytes);
-        log.debug("Received bytes: {}", Arrays.toString(bytes));
-        Object deserialize = serializer.deserialize(bytes, messageType);
-
-        out.add(deserialize);
+        long requestId = frame.readLong();
+        int length = frame.readInt();
+        //5.反序列化消息体
+        Object deserialize = serializer.deserialize(frame.slice(frame.readerIndex(), length), messageType);
+        //请求id只在头部传输
+        if (deserialize instanceof RpcRequest) {
+            ((RpcRequest) deserialize).setRequestId(requestId);
+        } else if (deserialize instanceof RpcResponse) {
+            ((RpcResponse) deserialize).setRequestId(requestId);
+        }
+        return deserialize;
     }
 }
@@ -13,7 +13,7 @@ import lombok.extern.slf4j.Slf4j;
 
 /**
  * @ClassName MyEncoder
- * @Description 编码器
+ * @Description 编码器，按 ProtocolConstant 中定义的v2帧格式写出
  * @Author ljm
  */
 @Slf4j
@@ -24,25 +24,36 @@ public class MyEncoder extends MessageToByteEncoder {//MessageToByteEncoder是ne
     @Override
     protected void encode(ChannelHandlerContext ctx, Object msg, ByteBuf out) throws Exception {
         log.debug("编码的消息类型为: {}", msg.getClass());
-        //1.写入消息类型
+        //1.确定消息类型和请求id
+        MessageType messageType;
+        long requestId;
         if (msg instanceof RpcRequest) {
-            out.writeShort(MessageType.REQUEST.getCode());
+            messageType = MessageType.REQUEST;
+            requestId = ((RpcRequest) msg).getRequestId();
         } else if (msg instanceof RpcResponse) {
-            out.writeShort(MessageType.RESPONSE.getCode());
+            messageType = MessageType.RESPONSE;
+            requestId = ((RpcResponse) msg).getRequestId();
         } else {
             log.error("Unknown message type: {}", msg.getClass());
             throw new IllegalArgumentException("未知消息类型: " + msg.getClass());
         }
-        //2.写入序列化方式
-        out.writeShort(serializer.getType());
-        //得到序列化数组
-        byte[] serializeBytes = serializer.serialize(msg);
-        if (serializeBytes == null || serializeBytes.length == 0) {
+        //2.写入头部：魔数、版本、消息类型、序列化方式、压缩标志、请求id，长度先占位
+        int frameStart = out.writerIndex();
+        out.writeInt(ProtocolConstant.MAGIC_NUMBER);
+        out.writeByte(ProtocolConstant.VERSION);
+        out.writeByte(messageType.getCode());
+        out.writeByte(serializer.getType());
+        out.writeByte(ProtocolConstant.COMPRESS_NONE);
+        out.writeLong(requestId);
+        out.writeInt(0);
+        //3.消息体直接序列化进输出缓冲区
+        int bodyStart = out.writerIndex();
+        serializer.serialize(msg, out);
+        int bodyLength = out.writerIndex() - bodyStart;
+        if (bodyLength == 0) {
             throw new IllegalArgumentException("被序列化的消息为空");
         }
-        //3.写入长度
-        out.writeInt(serializeBytes.length);
-        //4.写入序列化数组
-        out.writeBytes(serializeBytes);
+        //4.回填长度
+        out.setInt(frameStart + ProtocolConstant.LENGTH_FIELD_OFFSET, bodyLength);
     }
 }
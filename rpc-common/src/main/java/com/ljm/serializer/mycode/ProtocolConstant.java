@@ -0,0 +1,34 @@
+package com.ljm.serializer.mycode;
+
+/**
+ * @InterfaceName ProtocolConstant
+ * @Description 协议帧常量
+ * 帧格式（v2），头部固定20字节：
+ * +-------+---------+-------------+------------+----------+-----------+------------+
+ * | magic | version | messageType | serializer | compress | requestId | bodyLength |
+ * |  4B   |   1B    |     1B      |     1B     |    1B    |    8B     |     4B     |
+ * +-------+---------+-------------+------------+----------+-----------+------------+
+ * |                              body (bodyLength)                                |
+ * +-------------------------------------------------------------------------------+
+ * @Author ljm
+ */
+public interface ProtocolConstant {
+    //魔数 "KRPC"，用于快速识别非法连接
+    int MAGIC_NUMBER = 0x4B525043;
+
+    //协议版本号
+    byte VERSION = 2;
+
+    //头部长度
+    int HEADER_LENGTH = 20;
+
+    //bodyLength字段在帧中的偏移量和长度
+    int LENGTH_FIELD_OFFSET = 16;
+    int LENGTH_FIELD_LENGTH = 4;
+
+    //单帧最大长度 16MB
+    int MAX_FRAME_LENGTH = 16 * 1024 * 1024;
+
+    //压缩标志：不压缩
+    byte COMPRESS_NONE = 0;
+}
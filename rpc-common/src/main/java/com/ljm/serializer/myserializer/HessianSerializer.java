@@ -3,6 +3,9 @@ package com.ljm.serializer.myserializer;
 import com.caucho.hessian.io.HessianInput;
 import com.caucho.hessian.io.HessianOutput;
 import com.ljm.exception.SerializeException;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.ByteBufOutputStream;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
@@ -58,6 +61,28 @@ public class HessianSerializer implements Serializer {
         }
     }
 
+    @Override
+    public void serialize(Object obj, ByteBuf out) {
+        // HessianOutput 直接写入 ByteBuf，省去 ByteArrayOutputStream 的扩容和 toByteArray 拷贝
+        try {
+            HessianOutput hessianOutput = new HessianOutput(new ByteBufOutputStream(out));
+            hessianOutput.writeObject(obj);
+            hessianOutput.flush();
+        } catch (IOException e) {
+            throw new SerializeException("Serialization failed", e);
+        }
+    }
+
+    @Override
+    public Object deserialize(ByteBuf in, int messageType) {
+        try {
+            HessianInput hessianInput = new HessianInput(new ByteBufInputStream(in));
+            return hessianInput.readObject();
+        } catch (IOException e) {
+            throw new SerializeException("Deserialization failed", e);
+        }
+    }
+
     @Override
     public int getType() {
         return 3;
@@ -3,9 +3,16 @@ package com.ljm.serializer.myserializer;
 import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONObject;
 import com.ljm.message.RpcRequest;
+import com.ljm.exception.SerializeException;
 import com.ljm.message.RpcResponse;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.ByteBufOutputStream;
 import lombok.extern.slf4j.Slf4j;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
 
 /**
  * @ClassName JsonSerializer
@@ -20,13 +27,60 @@ public class JsonSerializer implements Serializer {
         return bytes;
     }
 
+    @Override
+    public void serialize(Object obj, ByteBuf out) {
+        // 直接以UTF-8写入ByteBuf
+        try {
+            JSON.writeJSONString(new ByteBufOutputStream(out), obj);
+        } catch (IOException e) {
+            throw new SerializeException("Serialization failed", e);
+        }
+    }
+
     @Override
     public Object deserialize(byte[] bytes, int messageType) {
+        return convert(JSON.parseObject(bytes, getClassForMessageType(messageType)), messageType);
+    }
+
+    @Override
+    public Object deserialize(ByteBuf in, int messageType) {
+        Class<?> clazz = getClassForMessageType(messageType);
+        if (in.hasArray()) {
+            // 堆内存直接解析底层数组
+            return convert(JSON.parseObject(in.array(), in.arrayOffset() + in.readerIndex(), in.readableBytes(),
+                    StandardCharsets.UTF_8, clazz), messageType);
+        }
+        try {
+            return convert(JSON.parseObject(new ByteBufInputStream(in), StandardCharsets.UTF_8, clazz), messageType);
+        } catch (IOException e) {
+            throw new SerializeException("Deserialization failed", e);
+        }
+    }
+
+    private Class<?> getClassForMessageType(int messageType) {
+        switch (messageType) {
+            case 0:
+                return RpcRequest.class;
+            case 1:
+                return RpcResponse.class;
+            default:
+                log.error("暂时不支持此种消息:{}",messageType);
+                throw new RuntimeException();
+        }
+    }
+
+    // json只保留了基本结构，按照参数/返回值的类型把JSONObject转换回对应的对象
+    private Object convert(Object parsed, int messageType) {
         Object obj = null;
         // 传输的消息分为request与response
         switch (messageType){
             case 0:
-                RpcRequest request = JSON.parseObject(bytes, RpcRequest.class);
+                RpcRequest request = (RpcRequest) parsed;
+                //心跳、握手请求没有参数
+                if (request.getParams() == null) {
+                    obj = request;
+                    break;
+                }
                 Object[] objects = new Object[request.getParams().length];
                 // 把json字串转化成对应的对象， fastjson可以读出基本数据类型，不用转化
                 // 对转换后的request中的params属性逐个进行类型判断
@@ -45,7 +99,7 @@ public class JsonSerializer implements Serializer {
                 obj = request;
                 break;
             case 1:
-                RpcResponse response = JSON.parseObject(bytes, RpcResponse.class);
+                RpcResponse response = (RpcResponse) parsed;
                 // 如果类型为空，说明返回错误
                 if(response.getDataType()==null){
                     obj = RpcResponse.fail("类型为空");
@@ -65,6 +119,12 @@ public class JsonSerializer implements Serializer {
         return obj;
     }
 
+    //json不携带参数的运行时类型，需要完整的paramsType
+    @Override
+    public boolean isSelfDescribing() {
+        return false;
+    }
+
     //1 代表json序列化方式
     @Override
     public int getType() {
@@ -4,24 +4,66 @@ import com.esotericsoftware.kryo.Kryo;
 import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.io.Output;
 import com.ljm.exception.SerializeException;
+import com.ljm.message.RequestType;
 import com.ljm.message.RpcRequest;
 import com.ljm.message.RpcResponse;
+import com.ljm.pojo.User;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
 
 
 /**
  * @ClassName KryoSerializer
  * @Description kryo序列化
+ * Kryo 不是线程安全的，每个线程（Netty的每个EventLoop）持有自己的 Kryo 实例以及复用的 Input/Output 缓冲
+ * 注册过的类只写一个整数id而不是完整类名，两端必须以相同顺序注册相同的类
+ * 第一个线程创建 Kryo 实例时注册表即冻结，之后再注册会抛出 IllegalStateException，避免各线程的id不一致
  * @Author ljm
  */
 
 public class KryoSerializer implements Serializer {
-    private Kryo kryo;
+    //输出缓冲初始大小
+    private static final int BUFFER_SIZE = 4096;
+    //输出缓冲超过该大小后不再保留，避免偶发的大消息长期占用线程内存
+    private static final int MAX_RETAINED_BUFFER_SIZE = 1024 * 1024;
+    private static final byte[] EMPTY = new byte[0];
+
+    //注册类列表，按顺序分配id，冻结前的读写都在类锁内
+    private static final List<Class<?>> REGISTERED_CLASSES = new ArrayList<>(List.of(
+            RpcRequest.class,
+            RpcResponse.class,
+            RequestType.class,
+            Class.class,
+            Class[].class,
+            Object[].class,
+            User.class
+    ));
+    //已有线程按注册表创建了 Kryo 实例
+    private static boolean frozen;
+
+    private final ThreadLocal<KryoHolder> holderThreadLocal = ThreadLocal.withInitial(KryoHolder::new);
+
+    /**
+     * 注册业务DTO，减少序列化体积
+     * 需要在第一次序列化之前调用，且服务端和客户端的注册顺序必须一致
+     * @throws IllegalStateException 已经序列化或反序列化过，注册表已冻结
+     */
+    public static synchronized void registerClass(Class<?> clazz) {
+        if (frozen) {
+            throw new IllegalStateException("Kryo 注册表已冻结，需要在第一次序列化之前注册: " + clazz.getName());
+        }
+        if (!REGISTERED_CLASSES.contains(clazz)) {
+            REGISTERED_CLASSES.add(clazz);
+        }
+    }
 
-    public KryoSerializer() {
-        this.kryo = new Kryo();
+    //冻结注册表，之后列表不再变化
+    private static synchronized List<Class<?>> freezeRegistrations() {
+        frozen = true;
+        return REGISTERED_CLASSES;
     }
 
     @Override
@@ -29,15 +71,31 @@ public class KryoSerializer implements Serializer {
         if (obj == null) {
             throw new IllegalArgumentException("Cannot serialize null object");
         }
+        KryoHolder holder = holderThreadLocal.get();
+        try {
+            holder.writeObject(obj);
+            return holder.output.toBytes(); // 返回字节数组
+        } catch (Exception e) {
+            throw new SerializeException("Serialization failed", e);
+        } finally {
+            holder.releaseOutput();
+        }
+    }
 
-        try (ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-             Output output = new Output(byteArrayOutputStream)) {
-
-            kryo.writeObject(output, obj); // 使用 Kryo 写入对象
-            return output.toBytes(); // 返回字节数组
-
+    @Override
+    public void serialize(Object obj, ByteBuf out) {
+        if (obj == null) {
+            throw new IllegalArgumentException("Cannot serialize null object");
+        }
+        KryoHolder holder = holderThreadLocal.get();
+        try {
+            // 写入线程复用的缓冲，再一次性拷入 ByteBuf
+            holder.writeObject(obj);
+            out.writeBytes(holder.output.getBuffer(), 0, holder.output.position());
         } catch (Exception e) {
-            throw new SerializeException("Serialization failed");
+            throw new SerializeException("Serialization failed", e);
+        } finally {
+            holder.releaseOutput();
         }
     }
 
@@ -46,16 +104,40 @@ public class KryoSerializer implements Serializer {
         if (bytes == null || bytes.length == 0) {
             throw new IllegalArgumentException("Cannot deserialize null or empty byte array");
         }
+        // 根据 messageType 来反序列化不同的类
+        Class<?> clazz = getClassForMessageType(messageType);
+        KryoHolder holder = holderThreadLocal.get();
+        try {
+            holder.arrayInput.setBuffer(bytes);
+            return holder.kryo.readObject(holder.arrayInput, clazz); // 使用 Kryo 反序列化对象
+        } catch (Exception e) {
+            throw new SerializeException("Deserialization failed", e);
+        } finally {
+            holder.arrayInput.setBuffer(EMPTY);
+        }
+    }
 
-        try (ByteArrayInputStream byteArrayInputStream = new ByteArrayInputStream(bytes);
-             Input input = new Input(byteArrayInputStream)) {
-
-            // 根据 messageType 来反序列化不同的类
-            Class<?> clazz = getClassForMessageType(messageType);
-            return kryo.readObject(input, clazz); // 使用 Kryo 反序列化对象
-
+    @Override
+    public Object deserialize(ByteBuf in, int messageType) {
+        if (!in.isReadable()) {
+            throw new IllegalArgumentException("Cannot deserialize null or empty byte array");
+        }
+        Class<?> clazz = getClassForMessageType(messageType);
+        KryoHolder holder = holderThreadLocal.get();
+        try {
+            if (in.hasArray()) {
+                // 堆内存直接读底层数组
+                holder.arrayInput.setBuffer(in.array(), in.arrayOffset() + in.readerIndex(), in.readableBytes());
+                return holder.kryo.readObject(holder.arrayInput, clazz);
+            }
+            // 直接内存通过流读取，读缓冲是线程自己的
+            holder.streamInput.setInputStream(new ByteBufInputStream(in));
+            return holder.kryo.readObject(holder.streamInput, clazz);
         } catch (Exception e) {
-            throw new SerializeException("Deserialization failed");
+            throw new SerializeException("Deserialization failed", e);
+        } finally {
+            holder.arrayInput.setBuffer(EMPTY);
+            holder.streamInput.setInputStream(null);
         }
     }
 
@@ -79,4 +161,34 @@ public class KryoSerializer implements Serializer {
     public String toString() {
         return "Kryo";
     }
-}
\ No newline at end of file
+
+    //每个线程独享的 Kryo 实例和读写缓冲
+    private static class KryoHolder {
+        private final Kryo kryo;
+        private Output output = new Output(BUFFER_SIZE, -1);
+        //读取外部数组，不持有自己的缓冲
+        private final Input arrayInput = new Input();
+        //从流读取，使用自己的缓冲
+        private final Input streamInput = new Input(BUFFER_SIZE);
+
+        KryoHolder() {
+            kryo = new Kryo();
+            //未注册的类仍可序列化，只是会写入完整类名
+            kryo.setRegistrationRequired(false);
+            for (Class<?> clazz : freezeRegistrations()) {
+                kryo.register(clazz);
+            }
+        }
+
+        void writeObject(Object obj) {
+            output.clear();
+            kryo.writeObject(output, obj); // 使用 Kryo 写入对象
+        }
+
+        void releaseOutput() {
+            if (output.getBuffer().length > MAX_RETAINED_BUFFER_SIZE) {
+                output = new Output(BUFFER_SIZE, -1);
+            }
+        }
+    }
+}
@@ -4,11 +4,15 @@ package com.ljm.serializer.myserializer;
 import com.ljm.exception.SerializeException;
 import com.ljm.message.RpcRequest;
 import com.ljm.message.RpcResponse;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.ByteBufOutputStream;
 import io.protostuff.LinkedBuffer;
 import io.protostuff.ProtostuffIOUtil;
 import io.protostuff.Schema;
 import io.protostuff.runtime.RuntimeSchema;
 
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
@@ -39,7 +43,7 @@ public class ProtostuffSerializer implements Serializer {
     @Override
     public byte[] serialize(Object obj) {
         if(obj==null){
-            throw new IllegalArgumentException("无法序列化空对象");
+            throw new IllegalArgumentException("Cannot serialize null object");
         }
         Class<?> clazz = obj.getClass();
         Schema schema = getSchema(clazz);
@@ -73,6 +77,51 @@ public class ProtostuffSerializer implements Serializer {
             throw new SerializeException("Deserialization failed: " + e.getMessage(), e);
         }
     }
+    @Override
+    public void serialize(Object obj, ByteBuf out) {
+        if (obj == null) {
+            throw new IllegalArgumentException("Cannot serialize null object");
+        }
+        Schema schema = getSchema(obj.getClass());
+        LinkedBuffer buffer = bufferThreadLocal.get();
+        try {
+            // 先写入线程复用的 LinkedBuffer，再一次性刷到 ByteBuf
+            ProtostuffIOUtil.writeTo(new ByteBufOutputStream(out), obj, schema, buffer);
+        } catch (IOException e) {
+            throw new SerializeException("Serialization failed: " + e.getMessage(), e);
+        } finally {
+            buffer.clear();
+        }
+    }
+
+    @Override
+    public Object deserialize(ByteBuf in, int messageType) {
+        if (!in.isReadable()) {
+            throw new IllegalArgumentException("Cannot deserialize null or empty byte array");
+        }
+        Class<?> clazz = typeMap.get(messageType);
+        if (clazz == null) {
+            throw new SerializeException("Unknown message type: " + messageType);
+        }
+        Schema schema = getSchema(clazz);
+        Object obj = schema.newMessage();
+        LinkedBuffer buffer = bufferThreadLocal.get();
+        try {
+            if (in.hasArray()) {
+                // 堆内存直接读底层数组
+                ProtostuffIOUtil.mergeFrom(in.array(), in.arrayOffset() + in.readerIndex(), in.readableBytes(), obj, schema);
+            } else {
+                // 直接内存通过流读取，读缓冲复用线程的 LinkedBuffer
+                ProtostuffIOUtil.mergeFrom(new ByteBufInputStream(in), obj, schema, buffer);
+            }
+            return obj;
+        } catch (Exception e) {
+            throw new SerializeException("Deserialization failed: " + e.getMessage(), e);
+        } finally {
+            buffer.clear();
+        }
+    }
+
    @SuppressWarnings("unchecked")
    private <T> Schema<T> getSchema(Class<T> clazz) {
         //有则复用，无则创建
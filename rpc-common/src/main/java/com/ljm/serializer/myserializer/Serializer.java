@@ -2,6 +2,8 @@ package com.ljm.serializer.myserializer;
 
 
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -16,8 +18,25 @@ public interface Serializer {
 
     Object deserialize(byte[] bytes, int messageType);
 
+    // 直接序列化到编码器分配的(池化、直接内存)缓冲区，不经过中间byte[]
+    // 默认实现退化为先序列化成byte[]再写入，各序列化器按需覆盖
+    default void serialize(Object obj, ByteBuf out) {
+        out.writeBytes(serialize(obj));
+    }
+
+    // 从解码器拆出的帧切片中反序列化，读取范围为 readerIndex 到 writerIndex
+    default Object deserialize(ByteBuf in, int messageType) {
+        return deserialize(ByteBufUtil.getBytes(in), messageType);
+    }
+
     int getType();
 
+    // 是否保留运行时类型信息：不保留类型的序列化方式（如json）需要靠 paramsType 还原参数，
+    // 因此不能使用只携带方法id的精简请求
+    default boolean isSelfDescribing() {
+        return true;
+    }
+
     // 定义静态常量 serializerMap
     static final Map<Integer, Serializer> serializerMap = new HashMap<>();
 
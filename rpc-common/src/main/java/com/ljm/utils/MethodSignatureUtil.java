@@ -0,0 +1,30 @@
+package com.ljm.utils;
+
+import java.lang.reflect.Method;
+
+/**
+ * @author ljm
+ * @description 方法签名工具类
+ * 签名格式：接口全限定名#方法名(参数类型1,参数类型2)
+ * 服务端和客户端用同一套规则生成签名，用于重试白名单和方法id字典的匹配
+ */
+public class MethodSignatureUtil {
+
+    public static String getMethodSignature(Class<?> clazz, Method method) {
+        return getMethodSignature(clazz.getName(), method.getName(), method.getParameterTypes());
+    }
+
+    public static String getMethodSignature(String interfaceName, String methodName, Class<?>[] parameterTypes) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(interfaceName).append("#").append(methodName).append("(");
+        if (parameterTypes != null) {
+            for (int i = 0; i < parameterTypes.length; i++) {
+                if (i > 0) {
+                    sb.append(",");
+                }
+                sb.append(parameterTypes[i].getName());
+            }
+        }
+        return sb.append(")").toString();
+    }
+}
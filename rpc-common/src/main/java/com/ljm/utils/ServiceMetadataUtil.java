@@ -0,0 +1,33 @@
+package com.ljm.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * @author ljm
+ * @description 服务节点数据的编解码
+ * 服务提供者在注册中心的地址节点上写入自己可重试的方法签名，每行一个，UTF-8编码
+ * 签名中的参数列表含逗号，因此按行分隔
+ */
+public class ServiceMetadataUtil {
+
+    public static byte[] encodeRetryableMethods(Collection<String> retryableMethods) {
+        return String.join("\n", retryableMethods).getBytes(StandardCharsets.UTF_8);
+    }
+
+    public static Set<String> decodeRetryableMethods(byte[] data) {
+        if (data == null || data.length == 0) {
+            return Collections.emptySet();
+        }
+        Set<String> retryableMethods = new HashSet<>();
+        for (String line : new String(data, StandardCharsets.UTF_8).split("\n")) {
+            if (!line.isBlank()) {
+                retryableMethods.add(line.trim());
+            }
+        }
+        return Collections.unmodifiableSet(retryableMethods);
+    }
+}
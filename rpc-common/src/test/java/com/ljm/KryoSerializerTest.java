@@ -0,0 +1,71 @@
+package com.ljm;
+
+import com.ljm.message.RequestType;
+import com.ljm.message.RpcRequest;
+import com.ljm.pojo.User;
+import com.ljm.serializer.myserializer.KryoSerializer;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+public class KryoSerializerTest {
+    private final KryoSerializer serializer = new KryoSerializer();
+
+    private RpcRequest newRequest(int id) {
+        return RpcRequest.builder()
+                .requestType(RequestType.NORMAL)
+                .interfaceName("com.ljm.service.UserService")
+                .methodName("insertUserId")
+                .params(new Object[]{new User(id, "User" + id, true)})
+                .paramsType(new Class[]{User.class})
+                .build();
+    }
+
+    @Test
+    public void testRegisteredClassesAreNotWrittenByName() {
+        byte[] bytes = serializer.serialize(newRequest(1));
+        String content = new String(bytes, StandardCharsets.ISO_8859_1);
+        assertFalse(content.contains(RpcRequest.class.getName()));
+        assertFalse(content.contains(User.class.getName()));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testRegisterAfterFirstUseFails() {
+        serializer.serialize(newRequest(1));
+        KryoSerializer.registerClass(UUID.class);
+    }
+
+    @Test
+    public void testConcurrentSerialize() throws Exception {
+        // 多线程共用一个序列化器实例
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Boolean>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                final int base = t * 1000;
+                futures.add(executor.submit(() -> {
+                    for (int i = base; i < base + 1000; i++) {
+                        RpcRequest request = (RpcRequest) serializer.deserialize(serializer.serialize(newRequest(i)), 0);
+                        if (!new User(i, "User" + i, true).equals(request.getParams()[0])) {
+                            return false;
+                        }
+                    }
+                    return true;
+                }));
+            }
+            for (Future<Boolean> future : futures) {
+                assertTrue(future.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
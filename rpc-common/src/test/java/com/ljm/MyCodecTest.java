@@ -0,0 +1,99 @@
+package com.ljm;
+
+import com.ljm.message.RequestType;
+import com.ljm.message.RpcRequest;
+import com.ljm.message.RpcResponse;
+import com.ljm.pojo.User;
+import com.ljm.serializer.mycode.MyDecoder;
+import com.ljm.serializer.mycode.MyEncoder;
+import com.ljm.serializer.mycode.ProtocolConstant;
+import com.ljm.serializer.myserializer.Serializer;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.DecoderException;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class MyCodecTest {
+
+    private ByteBuf encode(Object msg, int serializerCode) {
+        EmbeddedChannel channel = new EmbeddedChannel(new MyEncoder(Serializer.getSerializerByCode(serializerCode)));
+        assertTrue(channel.writeOutbound(msg));
+        return channel.readOutbound();
+    }
+
+    private RpcRequest newRequest(long requestId) {
+        RpcRequest request = RpcRequest.builder()
+                .requestType(RequestType.NORMAL)
+                .interfaceName("com.ljm.service.UserService")
+                .methodName("getUserByUserId")
+                .params(new Object[]{1})
+                .paramsType(new Class[]{Integer.class})
+                .build();
+        request.setRequestId(requestId);
+        return request;
+    }
+
+    @Test
+    public void testHeaderLayout() {
+        ByteBuf frame = encode(newRequest(42L), 3);
+        assertEquals(ProtocolConstant.MAGIC_NUMBER, frame.getInt(0));
+        assertEquals(ProtocolConstant.VERSION, frame.getByte(4));
+        assertEquals(0, frame.getByte(5));
+        assertEquals(3, frame.getByte(6));
+        assertEquals(ProtocolConstant.COMPRESS_NONE, frame.getByte(7));
+        assertEquals(42L, frame.getLong(8));
+        assertEquals(frame.readableBytes() - ProtocolConstant.HEADER_LENGTH, frame.getInt(16));
+        frame.release();
+    }
+
+    @Test
+    public void testDecodeFragmentedFrame() {
+        // 逐字节写入，模拟最极端的半包
+        for (int code = 1; code <= 4; code++) {
+            ByteBuf frame = encode(newRequest(7L), code);
+            EmbeddedChannel channel = new EmbeddedChannel(new MyDecoder());
+            while (frame.isReadable()) {
+                channel.writeInbound(frame.readRetainedSlice(1));
+            }
+            frame.release();
+            RpcRequest decoded = channel.readInbound();
+            assertNotNull("serializer " + code, decoded);
+            assertEquals(7L, decoded.getRequestId());
+            assertEquals("getUserByUserId", decoded.getMethodName());
+            assertEquals(1, decoded.getParams()[0]);
+            assertNull(channel.readInbound());
+            assertFalse(channel.finish());
+        }
+    }
+
+    @Test
+    public void testDecodeCoalescedFrames() {
+        // 多个帧粘在一起
+        ByteBuf first = encode(newRequest(1L), 3);
+        ByteBuf second = encode(RpcResponse.sussess(new User(2, "u", true)), 3);
+        EmbeddedChannel channel = new EmbeddedChannel(new MyDecoder());
+        channel.writeInbound(Unpooled.wrappedBuffer(first, second));
+        RpcRequest request = channel.readInbound();
+        RpcResponse response = channel.readInbound();
+        assertEquals(1L, request.getRequestId());
+        assertEquals(0L, response.getRequestId());
+        assertEquals(new User(2, "u", true), response.getData());
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testRejectBadMagic() {
+        ByteBuf frame = encode(newRequest(1L), 3);
+        frame.setInt(0, 0xCAFEBABE);
+        EmbeddedChannel channel = new EmbeddedChannel(new MyDecoder());
+        try {
+            channel.writeInbound(frame);
+            fail("非法魔数应当抛出异常");
+        } catch (DecoderException e) {
+            assertTrue(e.getMessage().contains("cafebabe"));
+        }
+    }
+}
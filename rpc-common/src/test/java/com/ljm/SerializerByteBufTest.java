@@ -0,0 +1,66 @@
+package com.ljm;
+
+import com.ljm.message.RpcResponse;
+import com.ljm.pojo.User;
+import com.ljm.serializer.myserializer.Serializer;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SerializerByteBufTest {
+    private static final int[] CODES = {1, 2, 3, 4};
+
+    private void roundTrip(ByteBuf buf) {
+        try {
+            for (int code : CODES) {
+                Serializer serializer = Serializer.getSerializerByCode(code);
+                buf.clear();
+                // 前面留出一段数据，确认序列化器只读写自己的区域
+                buf.writeInt(0x12345678);
+                int start = buf.writerIndex();
+                serializer.serialize(RpcResponse.sussess(new User(3, "ByteBuf", false)), buf);
+                assertTrue(serializer + " 应写入数据", buf.writerIndex() > start);
+
+                ByteBuf body = buf.slice(start, buf.writerIndex() - start);
+                RpcResponse response = (RpcResponse) serializer.deserialize(body, 1);
+                assertEquals(serializer.toString(), new User(3, "ByteBuf", false), response.getData());
+                assertEquals(0x12345678, buf.getInt(0));
+            }
+        } finally {
+            buf.release();
+        }
+    }
+
+    @Test
+    public void testHeapBuffer() {
+        roundTrip(PooledByteBufAllocator.DEFAULT.heapBuffer(16));
+    }
+
+    @Test
+    public void testDirectBuffer() {
+        roundTrip(PooledByteBufAllocator.DEFAULT.directBuffer(16));
+    }
+
+    @Test
+    public void testByteBufAndByteArrayAreCompatible() {
+        for (int code : CODES) {
+            Serializer serializer = Serializer.getSerializerByCode(code);
+            byte[] bytes = serializer.serialize(RpcResponse.sussess(new User(4, "compat", true)));
+            ByteBuf buf = PooledByteBufAllocator.DEFAULT.directBuffer();
+            try {
+                serializer.serialize(RpcResponse.sussess(new User(4, "compat", true)), buf);
+                // 交叉解码：byte[] 的输出按 ByteBuf 读，ByteBuf 的输出按 byte[] 读
+                RpcResponse fromBytes = (RpcResponse) serializer.deserialize(Unpooled.wrappedBuffer(bytes), 1);
+                RpcResponse fromBuf = (RpcResponse) serializer.deserialize(ByteBufUtil.getBytes(buf), 1);
+                assertEquals(serializer.toString(), new User(4, "compat", true), fromBytes.getData());
+                assertEquals(serializer.toString(), new User(4, "compat", true), fromBuf.getData());
+            } finally {
+                buf.release();
+            }
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package com.ljm.stub;
+
+//父接口的方法也属于服务方法，类型参数由子接口确定
+public interface BaseService<K> {
+    K find(K key);
+
+    void remove(K key) throws Exception;
+}
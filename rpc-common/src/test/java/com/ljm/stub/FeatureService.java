@@ -0,0 +1,46 @@
+package com.ljm.stub;
+
+import com.ljm.annotation.RpcService;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeoutException;
+
+//覆盖注解处理器需要处理的各种方法形式
+@RpcService
+public interface FeatureService extends BaseService<String> {
+    <T extends Comparable<T>> T max(List<T> values);
+
+    Map<String, List<Integer>> group(Map<String, ? extends Number> input);
+
+    int sum(int... values);
+
+    String join(String separator, String... parts);
+
+    <T> List<T> listOf(T... items);
+
+    void write(byte[] data, long[][] matrix) throws IOException;
+
+    Object load(String name) throws IOException, TimeoutException;
+
+    boolean flag(boolean value, char c, double d);
+
+    default String greet(String name) {
+        return "hello " + name;
+    }
+
+    static String helper() {
+        return "static";
+    }
+
+    @RpcService
+    interface Repository<T extends Serializable> {
+        T get(String id);
+
+        void put(String id, T value);
+
+        List<T> all();
+    }
+}
@@ -0,0 +1,144 @@
+package com.ljm.stub;
+
+import com.ljm.utils.MethodSignatureUtil;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.*;
+
+//编译测试代码时注解处理器为 FeatureService 和 FeatureService.Repository 生成桩类和骨架类
+public class RpcStubProcessorTest {
+    private static final Class<?>[] SERVICES = {FeatureService.class, FeatureService.Repository.class};
+
+    private static ServiceSkeleton skeleton(Class<?> service, Object implementation) throws Exception {
+        Class<?> skeletonClass = Class.forName(StubNaming.getSkeletonClassName(service.getName()));
+        return (ServiceSkeleton) skeletonClass.getConstructor(service).newInstance(implementation);
+    }
+
+    private static Object stub(Class<?> service, InvocationHandler handler) throws Exception {
+        Class<?> stubClass = Class.forName(StubNaming.getStubClassName(service.getName()));
+        return stubClass.getConstructor(InvocationHandler.class).newInstance(handler);
+    }
+
+    private static Method[] stubMethods(Class<?> service) throws Exception {
+        Field field = Class.forName(StubNaming.getStubClassName(service.getName())).getDeclaredField("METHODS");
+        field.setAccessible(true);
+        return (Method[]) field.get(null);
+    }
+
+    @Test
+    public void testSkeletonSignaturesMatchMethodSignatureUtil() throws Exception {
+        for (Class<?> service : SERVICES) {
+            Set<String> expected = new HashSet<>();
+            for (Method method : service.getMethods()) {
+                if (!Modifier.isStatic(method.getModifiers())) {
+                    expected.add(MethodSignatureUtil.getMethodSignature(service, method));
+                }
+            }
+            String[] signatures = skeleton(service, null).getMethodSignatures();
+            assertEquals(service.getName(), expected, new HashSet<>(Arrays.asList(signatures)));
+            assertEquals("签名不应重复", expected.size(), signatures.length);
+        }
+    }
+
+    @Test
+    public void testStubMethodsLineUpWithSkeletonIndexes() throws Exception {
+        for (Class<?> service : SERVICES) {
+            String[] signatures = skeleton(service, null).getMethodSignatures();
+            Method[] methods = stubMethods(service);
+            assertEquals(signatures.length, methods.length);
+            for (int i = 0; i < methods.length; i++) {
+                assertEquals(signatures[i], MethodSignatureUtil.getMethodSignature(service, methods[i]));
+            }
+        }
+    }
+
+    @Test
+    public void testStubPassesMethodAndArguments() throws Exception {
+        List<Method> invoked = new ArrayList<>();
+        List<Object[]> arguments = new ArrayList<>();
+        FeatureService service = (FeatureService) stub(FeatureService.class, (proxy, method, args) -> {
+            invoked.add(method);
+            arguments.add(args);
+            return method.getReturnType() == int.class ? 6 : method.getReturnType() == boolean.class ? true : null;
+        });
+        assertEquals(6, service.sum(1, 2, 3));
+        assertArrayEquals(new int[]{1, 2, 3}, (int[]) arguments.get(0)[0]);
+        service.join(",", "a", "b");
+        assertArrayEquals(new String[]{"a", "b"}, (String[]) arguments.get(1)[1]);
+        assertTrue(service.flag(true, 'c', 1.5));
+        assertArrayEquals(new Object[]{true, 'c', 1.5}, arguments.get(2));
+        service.find("key");
+        //默认方法同样转发给处理器，而不是在客户端执行
+        service.greet("ljm");
+        assertEquals(FeatureService.class.getMethod("sum", int[].class), invoked.get(0));
+        assertEquals(BaseService.class.getMethod("find", Object.class), invoked.get(3));
+        assertEquals(FeatureService.class.getMethod("greet", String.class), invoked.get(4));
+    }
+
+    @Test
+    public void testStubRethrowsDeclaredCheckedExceptions() throws Exception {
+        IOException ioException = new IOException("io");
+        FeatureService service = (FeatureService) stub(FeatureService.class, (proxy, method, args) -> {
+            throw method.getName().equals("find") ? new TimeoutException() : ioException;
+        });
+        try {
+            service.load("name");
+            fail();
+        } catch (IOException e) {
+            assertSame(ioException, e);
+        }
+        try {
+            service.remove("key");
+            fail();
+        } catch (Exception e) {
+            assertSame(ioException, e);
+        }
+        try {
+            service.find("key");
+            fail();
+        } catch (UndeclaredThrowableException e) {
+            assertTrue(e.getCause() instanceof TimeoutException);
+        }
+    }
+
+    @Test
+    public void testSkeletonInvokesImplementation() throws Throwable {
+        FeatureService implementation = (FeatureService) java.lang.reflect.Proxy.newProxyInstance(
+                FeatureService.class.getClassLoader(), new Class<?>[]{FeatureService.class}, (proxy, method, args) -> {
+                    if (method.isDefault()) {
+                        return InvocationHandler.invokeDefault(proxy, method, args);
+                    }
+                    if (method.getName().equals("sum")) {
+                        return Arrays.stream((int[]) args[0]).sum();
+                    }
+                    if (method.getName().equals("find")) {
+                        return "found " + args[0];
+                    }
+                    throw new IOException(method.getName());
+                });
+        ServiceSkeleton skeleton = skeleton(FeatureService.class, implementation);
+        List<String> signatures = Arrays.asList(skeleton.getMethodSignatures());
+        assertEquals(6, skeleton.invoke(signatures.indexOf("com.ljm.stub.FeatureService#sum([I)"), new Object[]{new int[]{1, 2, 3}}));
+        assertEquals("found key", skeleton.invoke(signatures.indexOf("com.ljm.stub.FeatureService#find(java.lang.Object)"), new Object[]{"key"}));
+        assertEquals("hello ljm", skeleton.invoke(signatures.indexOf("com.ljm.stub.FeatureService#greet(java.lang.String)"), new Object[]{"ljm"}));
+        try {
+            skeleton.invoke(signatures.indexOf("com.ljm.stub.FeatureService#load(java.lang.String)"), new Object[]{"name"});
+            fail();
+        } catch (IOException e) {
+            assertEquals("load", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package com.ljm.client.cache;
+
+import io.netty.util.concurrent.DefaultThreadFactory;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * @ClassName RegistrySnapshotStore
+ * @Description 注册中心数据的本地快照文件
+ * 启动时先从文件加载服务地址和各提供者的可重试方法，第一次调用不必等待zookeeper；zookeeper不可用时继续使用文件中的数据
+ * 文件格式（大端）：magic | version | 注册中心地址 | 写入时间 | 服务数 {服务名 | 地址数 {地址 | 可重试方法数 {方法签名}}}
+ * 字符串为 2字节长度 + UTF-8 内容；读取时内存映射，写入时先写临时文件再原子替换，不会读到写了一半的文件
+ * 文件记录所属的注册中心，连接其他注册中心的进程不会读到这里的地址；
+ * 同一注册中心的多个进程共用一个文件，各自只监听部分服务，写入时保留文件中其他进程写入的服务
+ * @Author ljm
+ */
+@Slf4j
+public class RegistrySnapshotStore {
+    private static final int MAGIC = 0x4B525353; // "KRSS"
+    private static final int VERSION = 3;
+    //成员变化后延迟写入，合并短时间内的多次变化
+    private static final long SAVE_DELAY_MS = 1000;
+
+    private final Path file;
+    //注册中心地址，与文件头中的不一致时忽略文件
+    private final String registry;
+    //写入时的数据来源
+    private final Supplier<RegistryData> source;
+    private final ScheduledExecutorService writer =
+            Executors.newSingleThreadScheduledExecutor(new DefaultThreadFactory("registry-snapshot", true));
+    private final AtomicBoolean saveScheduled = new AtomicBoolean();
+
+    public RegistrySnapshotStore(Path file, String registry, Supplier<RegistryData> source) {
+        this.file = file;
+        this.registry = registry;
+        this.source = source;
+    }
+
+    //读取快照文件，文件不存在、损坏或属于其他注册中心时返回空数据
+    public RegistryData load() {
+        return read(true);
+    }
+
+    private RegistryData read(boolean logLoaded) {
+        if (!Files.isRegularFile(file)) {
+            return RegistryData.EMPTY;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                log.warn("注册中心快照文件 {} 格式不匹配，忽略", file);
+                return RegistryData.EMPTY;
+            }
+            String savedRegistry = readString(buffer);
+            if (!registry.equals(savedRegistry)) {
+                log.warn("注册中心快照文件 {} 属于注册中心 {}，当前为 {}，忽略", file, savedRegistry, registry);
+                return RegistryData.EMPTY;
+            }
+            long savedAt = buffer.getLong();
+            Map<String, Map<String, Set<String>>> services = new HashMap<>();
+            int serviceCount = buffer.getInt();
+            for (int i = 0; i < serviceCount; i++) {
+                String serviceName = readString(buffer);
+                int addressCount = buffer.getInt();
+                Map<String, Set<String>> addresses = new LinkedHashMap<>();
+                for (int j = 0; j < addressCount; j++) {
+                    String address = readString(buffer);
+                    int retryCount = buffer.getInt();
+                    Set<String> retryableMethods = new HashSet<>();
+                    for (int k = 0; k < retryCount; k++) {
+                        retryableMethods.add(readString(buffer));
+                    }
+                    addresses.put(address, Collections.unmodifiableSet(retryableMethods));
+                }
+                services.put(serviceName, addresses);
+            }
+            if (buffer.hasRemaining()) {
+                log.warn("注册中心快照文件 {} 末尾有多余数据，忽略", file);
+                return RegistryData.EMPTY;
+            }
+            if (logLoaded) {
+                log.info("从快照文件 {} 加载了 {} 个服务，快照时间 {}", file, services.size(), new Date(savedAt));
+            }
+            return new RegistryData(services);
+        } catch (IOException | BufferUnderflowException | IllegalArgumentException e) {
+            log.warn("读取注册中心快照文件 {} 失败，忽略: {}", file, e.toString());
+            return RegistryData.EMPTY;
+        }
+    }
+
+    //请求写入，1秒内的多次请求只写一次
+    public void requestSave() {
+        if (saveScheduled.compareAndSet(false, true)) {
+            try {
+                writer.schedule(() -> {
+                    saveScheduled.set(false);
+                    saveNow();
+                }, SAVE_DELAY_MS, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                //已关闭
+                saveScheduled.set(false);
+            }
+        }
+    }
+
+    public synchronized void saveNow() {
+        //本进程没有的服务沿用文件中的数据，不覆盖其他进程写入的内容
+        Map<String, Map<String, Set<String>>> services = new HashMap<>(read(false).getServices());
+        services.putAll(source.get().getServices());
+        RegistryData data = new RegistryData(services);
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(4096);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            writeString(out, registry);
+            out.writeLong(System.currentTimeMillis());
+            out.writeInt(data.getServices().size());
+            for (Map.Entry<String, Map<String, Set<String>>> service : data.getServices().entrySet()) {
+                writeString(out, service.getKey());
+                out.writeInt(service.getValue().size());
+                for (Map.Entry<String, Set<String>> address : service.getValue().entrySet()) {
+                    writeString(out, address.getKey());
+                    out.writeInt(address.getValue().size());
+                    for (String signature : address.getValue()) {
+                        writeString(out, signature);
+                    }
+                }
+            }
+            out.flush();
+
+            Path parent = file.toAbsolutePath().getParent();
+            Files.createDirectories(parent);
+            Path tmp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+            Files.write(tmp, bytes.toByteArray());
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.debug("注册中心快照已写入 {}", file);
+        } catch (IOException e) {
+            log.warn("写入注册中心快照文件 {} 失败: {}", file, e.toString());
+        }
+    }
+
+    //关闭前写入最后一次
+    public void close() {
+        writer.shutdownNow();
+        saveNow();
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getShort() & 0xFFFF;
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    //快照内容：服务名->地址->该地址可重试的方法签名
+    @Getter
+    public static class RegistryData {
+        public static final RegistryData EMPTY = new RegistryData(Collections.emptyMap());
+
+        private final Map<String, Map<String, Set<String>>> services;
+
+        public RegistryData(Map<String, Map<String, Set<String>>> services) {
+            this.services = services;
+        }
+    }
+}
@@ -2,71 +2,145 @@ package com.ljm.client.cache;
 
 import lombok.extern.slf4j.Slf4j;
 
-import java.util.ArrayList;
-import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * @ClassName serviceCache
  * @Description 本地缓存
+ * 每个服务对应一个不可变的快照，修改时按服务原子地替换成新快照
+ * 注册中心的监听线程写、调用线程读，两者互不影响
  * @Author ljm
  */
 @Slf4j
 public class ServiceCache {
     //key: serviceName 服务名
-    //value： addressList 服务提供者列表
-    private static Map<String, List<String>> cache = new ConcurrentHashMap<>();
+    //value： 服务提供者快照
+    private final Map<String, ServiceSnapshot> cache = new ConcurrentHashMap<>();
+    //成员变化监听器
+    private final List<ServiceChangeListener> listeners = new CopyOnWriteArrayList<>();
 
-    //添加服务
+    public void addListener(ServiceChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(ServiceChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    //添加服务，已存在的地址保留原有的重试信息
     public void addServiceToCache(String serviceName, String address) {
-        if (cache.containsKey(serviceName)) {
-            List<String> addressList = cache.get(serviceName);
-            addressList.add(address);
-            log.info("有服务名情况，将name为{}和地址为{}的服务添加到本地缓存中", serviceName, address);
+        addServiceToCache(serviceName, address, null);
+    }
+
+    //添加服务或更新该地址发布的可重试方法，retryableMethods 为null表示不修改
+    public void addServiceToCache(String serviceName, String address, Set<String> retryableMethods) {
+        ServiceSnapshot[] before = new ServiceSnapshot[1];
+        ServiceSnapshot after = cache.compute(serviceName, (key, old) -> {
+            before[0] = old;
+            return (old == null ? ServiceSnapshot.EMPTY : old).with(address, retryableMethods);
+        });
+        if (after == before[0]) {
+            return;
+        }
+        if (before[0] != null && before[0].contains(address)) {
+            log.info("服务{}地址{}的可重试方法更新为{}", serviceName, address, retryableMethods);
+            for (ServiceChangeListener listener : listeners) {
+                listener.onInstanceUpdated(serviceName, address);
+            }
         } else {
-            List<String> addressList = new ArrayList<>();
-            addressList.add(address);
-            cache.put(serviceName, addressList);
-            log.info("无服务名情况，将name为{}和地址为{}的服务添加到本地缓存中", serviceName, address);
+            log.info("将name为{}和地址为{}的服务添加到本地缓存中", serviceName, address);
+            for (ServiceChangeListener listener : listeners) {
+                listener.onInstanceAdded(serviceName, address);
+            }
         }
     }
 
     //修改服务地址
     public void replaceServiceAddress(String serviceName, String oldAddress, String newAddress) {
-        if (cache.containsKey(serviceName)) {
-            List<String> addressList = cache.get(serviceName);
-            addressList.remove(oldAddress);
-            addressList.add(newAddress);
-            log.info("将服务{}的地址{}替换为{}", serviceName, oldAddress, newAddress);
-        } else {
+        if (oldAddress.equals(newAddress)) {
+            return;
+        }
+        if (!cache.containsKey(serviceName)) {
             log.error("旧地址{}不在服务{}的地址列表中", oldAddress, serviceName);
+            return;
         }
+        delete(serviceName, oldAddress);
+        addServiceToCache(serviceName, newAddress);
+        log.info("将服务{}的地址{}替换为{}", serviceName, oldAddress, newAddress);
+    }
+
+    //从缓存中取服务快照，不存在时返回空快照，避免调用的时候出现空指针异常
+    public ServiceSnapshot getSnapshot(String serviceName) {
+        ServiceSnapshot snapshot = cache.get(serviceName);
+        return snapshot != null ? snapshot : ServiceSnapshot.EMPTY;
     }
 
-    //从缓存中取服务地址列表
+    //从缓存中取服务地址列表，返回的列表不可修改
     public List<String> getServiceListFromCache(String serviceName) {
-        if (!cache.containsKey(serviceName)) {
-            log.warn("服务{}未找到", serviceName);
-            //返回空列表，避免调用的时候出现空指针异常
-            return Collections.emptyList();
-        }
-        return cache.get(serviceName);
+        return getSnapshot(serviceName).getAddresses();
     }
 
     //从缓存中删除服务地址
     public void delete(String serviceName, String address) {
-        List<String> addressList = cache.get(serviceName);
-        if (addressList != null && addressList.contains(address)) {
-            addressList.remove(address);
-            log.info("将name为{}和地址为{}的服务从本地缓存中删除", serviceName, address);
-            if (addressList.isEmpty()) {
-                cache.remove(serviceName);  // 移除该服务的缓存条目
-                log.info("服务{}的地址列表为空，已从缓存中清除", serviceName);
-            }
-        } else {
+        ServiceSnapshot[] before = new ServiceSnapshot[1];
+        ServiceSnapshot after = cache.computeIfPresent(serviceName, (key, old) -> {
+            before[0] = old;
+            ServiceSnapshot snapshot = old.without(address);
+            // 地址列表为空时移除该服务的缓存条目
+            return snapshot.isEmpty() ? null : snapshot;
+        });
+        if (before[0] == null || after == before[0]) {
             log.warn("删除失败，地址{}不在服务{}的地址列表中", address, serviceName);
+            return;
+        }
+        log.info("将name为{}和地址为{}的服务从本地缓存中删除", serviceName, address);
+        for (ServiceChangeListener listener : listeners) {
+            listener.onInstanceRemoved(serviceName, address);
+        }
+    }
+
+    //整体移除某个服务的缓存（停止监听该服务时调用），每个地址按下线通知监听器，释放与这些地址相关的状态
+    public void removeService(String serviceName) {
+        ServiceSnapshot removed = cache.remove(serviceName);
+        if (removed == null) {
+            return;
         }
+        log.info("服务{}的本地缓存已清除", serviceName);
+        for (String address : removed.getAddresses()) {
+            for (ServiceChangeListener listener : listeners) {
+                listener.onInstanceRemoved(serviceName, address);
+            }
+        }
+    }
+
+    //是否还有服务使用该地址
+    public boolean containsAddress(String address) {
+        for (ServiceSnapshot snapshot : cache.values()) {
+            if (snapshot.contains(address)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    //只保留给定的地址，其余的按下线处理（用注册中心的最新数据校正从快照文件加载的旧数据）
+    public void retainAddresses(String serviceName, Set<String> liveAddresses) {
+        for (String address : getServiceListFromCache(serviceName)) {
+            if (!liveAddresses.contains(address)) {
+                delete(serviceName, address);
+            }
+        }
+    }
+
+    //所有服务当前的地址及其可重试方法，用于写入本地快照
+    public Map<String, Map<String, Set<String>>> getAll() {
+        Map<String, Map<String, Set<String>>> all = new HashMap<>();
+        cache.forEach((serviceName, snapshot) -> all.put(serviceName, snapshot.getRetryableMethods()));
+        return all;
     }
 }
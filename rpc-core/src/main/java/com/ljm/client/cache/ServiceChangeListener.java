@@ -0,0 +1,19 @@
+package com.ljm.client.cache;
+
+/**
+ * @InterfaceName ServiceChangeListener
+ * @Description 服务提供者变化监听
+ * 在新快照生效之后回调，回调在注册中心的事件线程中执行，不应做耗时操作
+ * @Author ljm
+ */
+public interface ServiceChangeListener {
+    //服务新增了一个提供者
+    void onInstanceAdded(String serviceName, String address);
+
+    //服务下线了一个提供者
+    void onInstanceRemoved(String serviceName, String address);
+
+    //提供者发布的元数据（可重试方法）发生变化
+    default void onInstanceUpdated(String serviceName, String address) {
+    }
+}
@@ -0,0 +1,104 @@
+package com.ljm.client.cache;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * @ClassName ServiceSnapshot
+ * @Description 某个服务在某一时刻的提供者列表，不可变
+ * 成员变化时整体替换为新快照，读取方拿到的列表不会在遍历过程中被修改
+ * 地址在创建快照时就解析好，服务发现时不再重复解析字符串
+ * 每个提供者还带有它发布的可重试方法签名，不同提供者可以不同
+ * @Author ljm
+ */
+public class ServiceSnapshot {
+    public static final ServiceSnapshot EMPTY = new ServiceSnapshot(Collections.emptyMap());
+
+    //ip:port 形式的地址列表，与注册中心中的节点名一致
+    private final List<String> addresses;
+    //ip:port -> 可重试的方法签名，保持加入顺序
+    private final Map<String, Set<String>> retryableMethods;
+    //ip:port -> 解析后的地址
+    private final Map<String, InetSocketAddress> socketAddresses;
+    //解析后的地址 -> 可重试的方法签名，调用时直接用服务发现返回的地址查找
+    private final Map<InetSocketAddress, Set<String>> retryableBySocket;
+
+    private ServiceSnapshot(Map<String, Set<String>> retryableMethods) {
+        this.retryableMethods = Collections.unmodifiableMap(new LinkedHashMap<>(retryableMethods));
+        this.addresses = Collections.unmodifiableList(new ArrayList<>(retryableMethods.keySet()));
+        Map<String, InetSocketAddress> parsed = new HashMap<>();
+        Map<InetSocketAddress, Set<String>> bySocket = new HashMap<>();
+        for (Map.Entry<String, Set<String>> entry : this.retryableMethods.entrySet()) {
+            InetSocketAddress socketAddress = parseAddress(entry.getKey());
+            parsed.put(entry.getKey(), socketAddress);
+            bySocket.put(socketAddress, entry.getValue());
+        }
+        this.socketAddresses = parsed;
+        this.retryableBySocket = bySocket;
+    }
+
+    public List<String> getAddresses() {
+        return addresses;
+    }
+
+    public InetSocketAddress getSocketAddress(String address) {
+        InetSocketAddress socketAddress = socketAddresses.get(address);
+        return socketAddress != null ? socketAddress : parseAddress(address);
+    }
+
+    //该提供者是否声明了方法可重试
+    public boolean isRetryable(InetSocketAddress serviceAddress, String methodSignature) {
+        Set<String> methods = retryableBySocket.get(serviceAddress);
+        return methods != null && methods.contains(methodSignature);
+    }
+
+    //ip:port -> 可重试的方法签名
+    public Map<String, Set<String>> getRetryableMethods() {
+        return retryableMethods;
+    }
+
+    public boolean contains(String address) {
+        return socketAddresses.containsKey(address);
+    }
+
+    public boolean isEmpty() {
+        return addresses.isEmpty();
+    }
+
+    /**
+     * 在当前快照基础上增加或更新一个地址，内容没有变化时返回自身
+     * retryable 为null表示不修改已有的重试信息
+     */
+    ServiceSnapshot with(String address, Set<String> retryable) {
+        Set<String> current = retryableMethods.get(address);
+        if (current != null && (retryable == null || Objects.equals(current, retryable))) {
+            return this;
+        }
+        Map<String, Set<String>> map = new LinkedHashMap<>(retryableMethods);
+        map.put(address, retryable != null ? retryable : Collections.emptySet());
+        return new ServiceSnapshot(map);
+    }
+
+    //在当前快照基础上删除一个地址，不存在时返回自身
+    ServiceSnapshot without(String address) {
+        if (!contains(address)) {
+            return this;
+        }
+        Map<String, Set<String>> map = new LinkedHashMap<>(retryableMethods);
+        map.remove(address);
+        return new ServiceSnapshot(map);
+    }
+
+    // 字符串解析为地址
+    private static InetSocketAddress parseAddress(String address) {
+        String[] result = address.split(":");
+        return new InetSocketAddress(result[0], Integer.parseInt(result[1]));
+    }
+}
@@ -2,103 +2,236 @@ package com.ljm.client.circuitbreaker;
 
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
 
 /**
  * @author ljm
  * @description 熔断器
  * 熔断器状态机
  * 熔断器有三种状态：关闭、开启、半开启
- * 在请求失败 N 次后在 X 时间内不再请求，进行熔断；然后再在 X 时间后恢复 M% 的请求，
- * 如果 M% 的请求都成功则恢复正常，关闭熔断，否则再熔断 Y 时间，依此循环
+ * 关闭状态下用滑动时间窗口统计失败率和慢调用比例，窗口内请求数足够且任一比例超过阈值时开启熔断；
+ * 开启一段时间后进入半开，只放行有限个探测请求，全部成功则关闭，任一失败或过慢则重新开启
+ * 窗口是按时间划分的环形桶数组，过期的桶整体替换成新桶；状态和计数都用原子变量维护，不加锁
  */
 @Slf4j
 public class CircuitBreaker {
+    private static final int CLOSED = 0;
+    private static final int OPEN = 1;
+    private static final int HALF_OPEN = 2;
+
+    private final CircuitBreakerConfig config;
+    private final String name;
+    private final long bucketMs;
+    private final long slowCallNanos;
+    //毫秒时钟，测试时可替换
+    private final LongSupplier clock;
+    //环形桶，下标为 时间/桶长度 对桶数取模
+    private final AtomicReferenceArray<Bucket> buckets;
 
     //熔断器当前状态,默认关闭
-    private CircuitBreakerState state = CircuitBreakerState.CLOSED;
-    private AtomicInteger failureCount = new AtomicInteger(0);//请求失败次数
-    private AtomicInteger successCount = new AtomicInteger(0);//请求成功次数
-    private AtomicInteger requestCount = new AtomicInteger(0);//请求次数
-    //关闭-》开启阈值  开启-》半开阈值
-    private final int failureThreshold;
-    private final double halfOpenThreshold;
-    // 最小请求数阈值（避免少量请求导致误判）
-    private final int minRequestThreshold;
-    //检测开启-》半开的时间周期
-    private final long retryTimePeriod;
-    //上次失败时间
-    private long lastFailureTime = 0;
-    public CircuitBreaker(int failureThreshold, double halfOpenThreshold, int minRequestThreshold,long retryTimePeriod) {
-        this.failureThreshold = failureThreshold;
-        this.halfOpenThreshold = halfOpenThreshold;
-        this.retryTimePeriod = retryTimePeriod;
-        this.minRequestThreshold = minRequestThreshold;
-    }
-
-    public synchronized boolean allowRequest() {
-        long currentTime = System.currentTimeMillis();
-        log.info("熔断检查, 当前失败次数：{}", failureCount);
-        switch (state){
-            case OPEN :
-                if(currentTime-lastFailureTime>retryTimePeriod){
-                    state = CircuitBreakerState.HALF_OPEN;
-                    resetCounts();
-                    log.info("熔断已解除，进入半开启状态，允许请求通过");
-                    //requestCount.incrementAndGet();
-                    return true;
+    private final AtomicInteger state = new AtomicInteger(CLOSED);
+    //进入开启状态的时间
+    private volatile long openedAt;
+    //半开状态剩余的探测名额和已成功的探测数
+    private final AtomicInteger halfOpenPermits = new AtomicInteger();
+    //本轮探测开始的时间
+    private final AtomicLong halfOpenedAt = new AtomicLong();
+    private final AtomicInteger halfOpenSuccesses = new AtomicInteger();
+
+    public CircuitBreaker(String name, CircuitBreakerConfig config) {
+        this(name, config, System::currentTimeMillis);
+    }
+
+    CircuitBreaker(String name, CircuitBreakerConfig config, LongSupplier clock) {
+        this.name = name;
+        this.clock = clock;
+        this.config = config;
+        this.bucketMs = Math.max(1, config.getWindowMs() / config.getBuckets());
+        this.slowCallNanos = TimeUnit.MILLISECONDS.toNanos(config.getSlowCallMs());
+        this.buckets = new AtomicReferenceArray<>(config.getBuckets());
+    }
+
+    public boolean allowRequest() {
+        switch (state.get()) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (clock.getAsLong() - openedAt < config.getOpenMs()) {
+                    return false;
                 }
-                log.warn("熔断生效中，拒绝请求！");
-                return false;
+                //只有一个线程能把状态切到半开并发放探测名额
+                if (state.compareAndSet(OPEN, HALF_OPEN)) {
+                    startProbing(halfOpenedAt.get());
+                    log.info("熔断器 {} 进入半开启状态，放行 {} 个探测请求", name, config.getHalfOpenCalls());
+                }
+                return tryAcquirePermit();
             case HALF_OPEN:
-                requestCount.incrementAndGet();
-                log.info("当前为半开启状态，计数请求+1");
-                return true;
-            case CLOSED:
             default:
-                log.info("当前为正常状态，允许请求通过");
-                return true;
+                if (tryAcquirePermit()) {
+                    return true;
+                }
+                //探测请求的结果迟迟没有上报（如调用方未记录），超过开启时长后重新发放名额，避免一直停在半开
+                long startedAt = halfOpenedAt.get();
+                return clock.getAsLong() - startedAt >= config.getOpenMs()
+                        && startProbing(startedAt) && tryAcquirePermit();
         }
     }
+
     //记录请求成功
-    public synchronized void recordSuccess() {
-        if(state==CircuitBreakerState.HALF_OPEN){
-            int success = successCount.incrementAndGet();
-            int total = requestCount.get();
-            //达到转换阈值
-            if(total >= minRequestThreshold&& success >= total*halfOpenThreshold){
-                state = CircuitBreakerState.CLOSED;
-                //状态转换需要重置次数
-                resetCounts();
-                log.info("成功次数已达到阈值，熔断器切换至关闭状态");
+    public void recordSuccess() {
+        recordSuccess(0);
+    }
+
+    //记录请求成功及耗时，超过慢调用阈值的按慢调用统计
+    public void recordSuccess(long durationNanos) {
+        record(false, isSlow(durationNanos));
+    }
+
+    //记录请求失败
+    public void recordFailure() {
+        recordFailure(0);
+    }
+
+    public void recordFailure(long durationNanos) {
+        record(true, isSlow(durationNanos));
+    }
+
+    private boolean isSlow(long durationNanos) {
+        return slowCallNanos > 0 && durationNanos >= slowCallNanos;
+    }
+
+    public CircuitBreakerState getState() {
+        switch (state.get()) {
+            case OPEN:
+                return CircuitBreakerState.OPEN;
+            case HALF_OPEN:
+                return CircuitBreakerState.HALF_OPEN;
+            default:
+                return CircuitBreakerState.CLOSED;
+        }
+    }
+
+    private void record(boolean failure, boolean slow) {
+        int current = state.get();
+        if (current == HALF_OPEN) {
+            if (failure || slow) {
+                open(HALF_OPEN, failure ? "半开启状态下探测请求失败" : "半开启状态下探测请求过慢");
+            } else if (halfOpenSuccesses.incrementAndGet() >= config.getHalfOpenCalls()
+                    && state.compareAndSet(HALF_OPEN, CLOSED)) {
+                //关闭后重新开始统计
+                for (int i = 0; i < buckets.length(); i++) {
+                    buckets.set(i, null);
+                }
+                log.info("熔断器 {} 探测请求全部成功，切换至关闭状态", name);
             }
+            return;
         }
-        else {
-            resetCounts();
-            log.info("熔断器处于关闭状态，重置计数器");
+        if (current != CLOSED) {
+            //开启状态下放行前的请求陆续返回，不计入统计
+            return;
+        }
+        long now = clock.getAsLong();
+        Bucket bucket = currentBucket(now);
+        bucket.total.increment();
+        if (failure) {
+            bucket.failures.increment();
+        }
+        if (slow) {
+            bucket.slowCalls.increment();
+        }
+        //比例只会因为失败或慢调用而升高，成功请求不需要检查
+        if (failure || slow) {
+            checkThreshold(now);
         }
     }
-    //记录请求失败
-    public synchronized void recordFailure() {
-        int failure = failureCount.incrementAndGet();
-        lastFailureTime = System.currentTimeMillis();
-        if(state==CircuitBreakerState.HALF_OPEN){
-            state = CircuitBreakerState.OPEN;//半开状态下失败，熔断重新打开
-            log.warn("半开启状态下发生失败，熔断器切换至开启状态");
-        }else if(failure>=failureThreshold){
-            state = CircuitBreakerState.OPEN; // 失败超过阈值，切换到打开状态
-            log.error("失败次数已超过阈值，熔断器切换至开启状态");
+
+    private void checkThreshold(long now) {
+        long epoch = now / bucketMs;
+        long total = 0, failures = 0, slowCalls = 0;
+        for (int i = 0; i < buckets.length(); i++) {
+            Bucket bucket = buckets.get(i);
+            //只统计窗口内的桶
+            if (bucket != null && epoch - bucket.epoch < buckets.length()) {
+                total += bucket.total.sum();
+                failures += bucket.failures.sum();
+                slowCalls += bucket.slowCalls.sum();
+            }
+        }
+        if (total < config.getMinRequests()) {
+            return;
+        }
+        if (failures >= total * config.getFailureRate()) {
+            open(CLOSED, "失败率 " + failures + "/" + total + " 超过阈值");
+        } else if (slowCalls >= total * config.getSlowCallRate()) {
+            open(CLOSED, "慢调用比例 " + slowCalls + "/" + total + " 超过阈值");
         }
     }
-    //重置次数
-    private void resetCounts() {
-        failureCount.set(0);
-        successCount.set(0);
-        requestCount.set(0);
+
+    private void open(int expected, String reason) {
+        if (state.compareAndSet(expected, OPEN)) {
+            openedAt = clock.getAsLong();
+            log.warn("熔断器 {} 切换至开启状态：{}", name, reason);
+        }
     }
 
-    public CircuitBreakerState getState() {
-        return state;
+    //开始一轮探测，同一时刻只有一个线程能成功
+    private boolean startProbing(long expectedStartedAt) {
+        if (!halfOpenedAt.compareAndSet(expectedStartedAt, clock.getAsLong())) {
+            return false;
+        }
+        halfOpenSuccesses.set(0);
+        halfOpenPermits.set(config.getHalfOpenCalls());
+        return true;
+    }
+
+    private boolean tryAcquirePermit() {
+        //名额用完后不再递减，避免长时间开启时计数一直下溢
+        int permits;
+        do {
+            permits = halfOpenPermits.get();
+            if (permits <= 0) {
+                return false;
+            }
+        } while (!halfOpenPermits.compareAndSet(permits, permits - 1));
+        return true;
+    }
+
+    //取当前时间所在的桶，桶已过期时用新桶替换
+    private Bucket currentBucket(long now) {
+        long epoch = now / bucketMs;
+        int index = (int) (epoch % buckets.length());
+        while (true) {
+            Bucket bucket = buckets.get(index);
+            if (bucket != null && bucket.epoch == epoch) {
+                return bucket;
+            }
+            if (bucket != null && bucket.epoch > epoch) {
+                //时间较早的线程晚到，计入较新的桶即可
+                return bucket;
+            }
+            Bucket fresh = new Bucket(epoch);
+            if (buckets.compareAndSet(index, bucket, fresh)) {
+                return fresh;
+            }
+        }
+    }
+
+    //一个时间桶内的请求数、失败数、慢调用数
+    private static class Bucket {
+        private final long epoch;
+        //多线程同时记录时LongAdder分散竞争
+        private final LongAdder total = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder slowCalls = new LongAdder();
+
+        Bucket(long epoch) {
+            this.epoch = epoch;
+        }
     }
 
     enum CircuitBreakerState {
@@ -107,4 +240,3 @@ public class CircuitBreaker {
         HALF_OPEN // 半开状态
     }
 }
-
@@ -0,0 +1,51 @@
+package com.ljm.client.circuitbreaker;
+
+import com.ljm.config.KRpcConfig;
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * @ClassName CircuitBreakerConfig
+ * @Description 熔断器参数，未配置的项使用默认值
+ * 配置示例：
+ * rpc.breakerWindowMs=10000
+ * rpc.breakerMinRequests=20
+ * rpc.breakerFailureRate=0.5
+ * rpc.breakerSlowCallMs=1000
+ * rpc.breakerSlowCallRate=0.8
+ * rpc.breakerOpenMs=5000
+ * rpc.breakerHalfOpenCalls=5
+ * @Author ljm
+ */
+@Getter
+@Builder
+public class CircuitBreakerConfig {
+    //统计窗口长度（毫秒），按时间分成 buckets 个桶滚动
+    private final long windowMs;
+    private final int buckets;
+    //窗口内请求数达到该值后才判断失败率，避免少量请求导致误判
+    private final int minRequests;
+    //失败率阈值，0~1
+    private final double failureRate;
+    //超过该耗时（毫秒）记为慢调用
+    private final long slowCallMs;
+    //慢调用比例阈值，0~1
+    private final double slowCallRate;
+    //开启状态持续时间（毫秒），之后进入半开
+    private final long openMs;
+    //半开状态允许通过的探测请求数，全部成功才关闭
+    private final int halfOpenCalls;
+
+    public static CircuitBreakerConfig from(KRpcConfig config) {
+        return CircuitBreakerConfig.builder()
+                .windowMs(config.getBreakerWindowMs() != null ? config.getBreakerWindowMs() : 10_000)
+                .buckets(10)
+                .minRequests(config.getBreakerMinRequests() != null ? config.getBreakerMinRequests() : 20)
+                .failureRate(config.getBreakerFailureRate() != null ? config.getBreakerFailureRate() : 0.5)
+                .slowCallMs(config.getBreakerSlowCallMs() != null ? config.getBreakerSlowCallMs() : 1000)
+                .slowCallRate(config.getBreakerSlowCallRate() != null ? config.getBreakerSlowCallRate() : 0.8)
+                .openMs(config.getBreakerOpenMs() != null ? config.getBreakerOpenMs() : 5000)
+                .halfOpenCalls(config.getBreakerHalfOpenCalls() != null ? config.getBreakerHalfOpenCalls() : 5)
+                .build();
+    }
+}
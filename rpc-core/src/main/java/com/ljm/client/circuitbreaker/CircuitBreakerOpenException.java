@@ -0,0 +1,13 @@
+package com.ljm.client.circuitbreaker;
+
+/**
+ * 熔断器开启，请求没有发出
+ * 重试时据此区分于真正发出后失败的请求：立即换实例，不消耗重试预算，也不等待退避时间
+ * @author ljm
+ */
+public class CircuitBreakerOpenException extends RuntimeException {
+    public CircuitBreakerOpenException(String message) {
+        //熔断时可能大量抛出，不需要堆栈
+        super(message, null, false, false);
+    }
+}
@@ -1,22 +1,54 @@
 package com.ljm.client.circuitbreaker;
 
+import com.ljm.RpcApplication;
 import lombok.extern.slf4j.Slf4j;
 
+import java.net.InetSocketAddress;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * @author ljm
  * @description 提供熔断器
+ * 每个方法签名在每个服务提供者上各有一个熔断器，一个提供者出问题不会连带其他提供者上的同名方法
  */
 @Slf4j
 public class CircuitBreakerProvider {
-    private Map<String,CircuitBreaker> circuitBreakerMap= new ConcurrentHashMap<>();
+    //方法签名 -> (服务地址 -> 熔断器)
+    private final Map<String, Map<InetSocketAddress, CircuitBreaker>> circuitBreakerMap = new ConcurrentHashMap<>();
+    private final CircuitBreakerConfig config;
 
-    public synchronized CircuitBreaker getCircuitBreaker(String serviceName) {
-        return circuitBreakerMap.computeIfAbsent(serviceName, k -> {
-            log.info("服务 [{}] 不存在熔断器，创建新的熔断器实例", serviceName);
-            return  new CircuitBreaker(2,0.5,10,10000);
+    public CircuitBreakerProvider() {
+        this(CircuitBreakerConfig.from(RpcApplication.getRpcConfig()));
+    }
+
+    public CircuitBreakerProvider(CircuitBreakerConfig config) {
+        this.config = config;
+    }
+
+    public CircuitBreaker getCircuitBreaker(String methodSignature, InetSocketAddress serviceAddress) {
+        Map<InetSocketAddress, CircuitBreaker> breakers = circuitBreakerMap.get(methodSignature);
+        if (breakers == null) {
+            breakers = circuitBreakerMap.computeIfAbsent(methodSignature, k -> new ConcurrentHashMap<>());
+        }
+        CircuitBreaker circuitBreaker = breakers.get(serviceAddress);
+        if (circuitBreaker == null) {
+            circuitBreaker = breakers.computeIfAbsent(serviceAddress, address -> {
+                log.info("方法 [{}] 在 {} 上不存在熔断器，创建新的熔断器实例", methodSignature, address);
+                return new CircuitBreaker(methodSignature + "@" + address, config);
+            });
+        }
+        return circuitBreaker;
+    }
+
+    //服务提供者下线时移除该服务的方法在这个地址上的熔断器，address 格式为 host:port
+    public void removeAddress(String serviceName, String address) {
+        String prefix = serviceName + "#";
+        circuitBreakerMap.forEach((methodSignature, breakers) -> {
+            if (methodSignature.startsWith(prefix)) {
+                breakers.keySet().removeIf(serviceAddress ->
+                        address.equals(serviceAddress.getHostString() + ":" + serviceAddress.getPort()));
+            }
         });
     }
 }
@@ -0,0 +1,24 @@
+package com.ljm.client.context;
+
+/**
+ * @ClassName RpcContext
+ * @Description 调用上下文
+ * 在发起调用前设置，只对当前线程的下一次远程调用生效
+ * 例：RpcContext.setTimeout(200); userService.getUserByUserId(1);
+ * @Author ljm
+ */
+public class RpcContext {
+    private static final ThreadLocal<Long> TIMEOUT = new ThreadLocal<>();
+
+    //设置下一次调用的超时时间（毫秒），优先于 @RpcTimeout 和配置文件
+    public static void setTimeout(long timeoutMillis) {
+        TIMEOUT.set(timeoutMillis);
+    }
+
+    //取出并清除，避免影响同一线程后续的调用
+    public static Long consumeTimeout() {
+        Long timeout = TIMEOUT.get();
+        TIMEOUT.remove();
+        return timeout;
+    }
+}
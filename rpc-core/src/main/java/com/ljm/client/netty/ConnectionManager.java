@@ -0,0 +1,128 @@
+package com.ljm.client.netty;
+
+import com.ljm.message.RpcRequest;
+import com.ljm.message.RpcResponse;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFutureListener;
+import lombok.extern.slf4j.Slf4j;
+
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @ClassName ConnectionManager
+ * @Description 长连接管理
+ * 按服务提供者地址缓存连接，同一地址的所有请求复用一条channel
+ * 连接断开后自动从缓存中移除，下次请求时重新建立
+ * 建连后异步握手获取方法id字典，握手完成前的请求照常发送完整的接口名和方法名
+ * @Author ljm
+ */
+@Slf4j
+public class ConnectionManager {
+    private final Bootstrap bootstrap;
+    //序列化方式不保留参数类型时不能用方法id，也就不需要握手
+    private final boolean handshakeEnabled;
+    //key: ip:port  value: 正在建立或已建立的连接
+    private final Map<String, CompletableFuture<Channel>> channels = new ConcurrentHashMap<>();
+
+    public ConnectionManager(Bootstrap bootstrap, boolean handshakeEnabled) {
+        this.bootstrap = bootstrap;
+        this.handshakeEnabled = handshakeEnabled;
+    }
+
+    /**
+     * 获取到指定地址的连接，不存在或已失效时新建
+     * 并发请求同一地址时只会建立一条连接
+     */
+    public CompletableFuture<Channel> getChannel(InetSocketAddress address) {
+        String key = getKey(address);
+        while (true) {
+            CompletableFuture<Channel> existing = channels.get(key);
+            if (existing != null) {
+                //正在连接中，或者连接仍然可用
+                if (!existing.isDone() || isUsable(existing)) {
+                    return existing;
+                }
+                channels.remove(key, existing);
+                continue;
+            }
+            CompletableFuture<Channel> promise = new CompletableFuture<>();
+            if (channels.putIfAbsent(key, promise) == null) {
+                connect(address, key, promise);
+                return promise;
+            }
+        }
+    }
+
+    private void connect(InetSocketAddress address, String key, CompletableFuture<Channel> promise) {
+        bootstrap.connect(address).addListener((ChannelFutureListener) future -> {
+            if (future.isSuccess()) {
+                Channel channel = future.channel();
+                //连接关闭时移除缓存
+                channel.closeFuture().addListener(f -> {
+                    channels.remove(key, promise);
+                    log.info("与服务端 {} 的连接已关闭", key);
+                });
+                log.info("与服务端 {} 建立连接", key);
+                if (handshakeEnabled) {
+                    handshake(channel, key);
+                }
+                promise.complete(channel);
+            } else {
+                channels.remove(key, promise);
+                log.error("连接服务端 {} 失败: {}", key, future.cause().getMessage());
+                promise.completeExceptionally(future.cause());
+            }
+        });
+    }
+
+    //获取服务端的方法id字典，失败时该连接继续使用完整请求
+    private void handshake(Channel channel, String key) {
+        PendingRequests pendingRequests = channel.attr(PendingRequests.KEY).get();
+        RpcRequest request = RpcRequest.handshake();
+        long requestId = PendingRequests.nextRequestId();
+        request.setRequestId(requestId);
+        CompletableFuture<RpcResponse> responseFuture = pendingRequests.register(requestId);
+        channel.writeAndFlush(request).addListener((ChannelFutureListener) future -> {
+            if (!future.isSuccess()) {
+                pendingRequests.remove(requestId);
+                responseFuture.completeExceptionally(future.cause());
+            }
+        });
+        responseFuture.whenComplete((response, e) -> {
+            if (e == null && response.getCode() == 200 && response.getData() instanceof Map) {
+                @SuppressWarnings("unchecked")
+                Map<String, Integer> methodIds = (Map<String, Integer>) response.getData();
+                channel.attr(MethodDictionary.KEY).set(new MethodDictionary(methodIds));
+                log.info("与服务端 {} 握手完成，方法数: {}", key, methodIds.size());
+            } else {
+                log.warn("与服务端 {} 握手失败，使用完整请求: {}", key, e != null ? e.getMessage() : response.getMessage());
+            }
+        });
+    }
+
+    private boolean isUsable(CompletableFuture<Channel> future) {
+        if (future.isCompletedExceptionally()) {
+            return false;
+        }
+        Channel channel = future.getNow(null);
+        return channel != null && channel.isActive();
+    }
+
+    //关闭所有连接
+    public void close() {
+        for (CompletableFuture<Channel> future : channels.values()) {
+            if (isUsable(future)) {
+                future.getNow(null).close();
+            }
+        }
+        channels.clear();
+    }
+
+    private String getKey(InetSocketAddress address) {
+        return address.getHostString() + ":" + address.getPort();
+    }
+}
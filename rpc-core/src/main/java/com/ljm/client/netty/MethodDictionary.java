@@ -0,0 +1,34 @@
+package com.ljm.client.netty;
+
+import io.netty.util.AttributeKey;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * @ClassName MethodDictionary
+ * @Description 握手得到的服务端方法id字典，挂在连接上
+ * 方法id只在这条连接上有效，服务端重启后连接重建，会重新握手
+ * @Author ljm
+ */
+public class MethodDictionary {
+    public static final AttributeKey<MethodDictionary> KEY = AttributeKey.valueOf("methodDictionary");
+
+    //方法签名->方法id
+    private final Map<String, Integer> methodIds;
+
+    public MethodDictionary(Map<String, Integer> methodIds) {
+        this.methodIds = Collections.unmodifiableMap(new HashMap<>(methodIds));
+    }
+
+    //没有对应id时返回0，调用方应发送完整请求
+    public int getMethodId(String methodSignature) {
+        Integer id = methodIds.get(methodSignature);
+        return id == null ? 0 : id;
+    }
+
+    public int size() {
+        return methodIds.size();
+    }
+}
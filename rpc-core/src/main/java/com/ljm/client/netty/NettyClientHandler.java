@@ -3,9 +3,10 @@ package com.ljm.client.netty;
 import com.ljm.message.RpcResponse;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
-import io.netty.util.AttributeKey;
 import lombok.extern.slf4j.Slf4j;
 
+import java.nio.channels.ClosedChannelException;
+
 /**
  * @ClassName NettyClientHandler
  * @Description 客户端处理器
@@ -17,11 +18,23 @@ public class NettyClientHandler extends SimpleChannelInboundHandler<RpcResponse>
 
     @Override
     protected void channelRead0(ChannelHandlerContext ctx, RpcResponse response) throws Exception {
-        // 接收到response, 给channel设计别名，让sendRequest里读取response
-        AttributeKey<RpcResponse> RESPONSE_KEY = AttributeKey.valueOf("RPCResponse");
-        // 将响应存入 Channel 属性
-        ctx.channel().attr(RESPONSE_KEY).set(response);
-        ctx.channel().close();
+        // 接收到response，按requestId找到等待中的请求并完成，连接保持打开供后续请求复用
+        PendingRequests pendingRequests = ctx.channel().attr(PendingRequests.KEY).get();
+        if (pendingRequests == null) {
+            log.error("连接上没有未完成请求表, channel: {}", ctx.channel());
+            return;
+        }
+        pendingRequests.complete(response);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        // 连接断开，未完成的请求全部失败
+        PendingRequests pendingRequests = ctx.channel().attr(PendingRequests.KEY).get();
+        if (pendingRequests != null) {
+            pendingRequests.failAll(new ClosedChannelException());
+        }
+        super.channelInactive(ctx);
     }
 
     @Override
@@ -1,12 +1,15 @@
 package com.ljm.client.netty;
 
 
+import com.ljm.RpcApplication;
+import com.ljm.config.RpcConstant;
 import com.ljm.serializer.mycode.MyDecoder;
 import com.ljm.serializer.mycode.MyEncoder;
 import com.ljm.serializer.myserializer.Serializer;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelPipeline;
 import io.netty.channel.socket.SocketChannel;
+import io.netty.handler.flush.FlushConsolidationHandler;
 import io.netty.handler.timeout.IdleStateHandler;
 import lombok.extern.slf4j.Slf4j;
 
@@ -19,16 +22,28 @@ import java.util.concurrent.TimeUnit;
  */
 @Slf4j
 public class NettyClientInitializer extends ChannelInitializer<SocketChannel> {
+    private final Serializer serializer = Serializer.getSerializerByCode(3);
 
+    public Serializer getSerializer() {
+        return serializer;
+    }
 
     @Override
     protected void initChannel(SocketChannel ch) throws Exception {//初始化每一个socketchannel
         ChannelPipeline pipeline = ch.pipeline();
+        //每条连接一张未完成请求表
+        ch.attr(PendingRequests.KEY).set(new PendingRequests());
+        //合并flush：多个线程在同一连接上连续发出的请求由IO线程合并成一次系统调用，放在最前面以覆盖所有出站消息
+        Integer flushBatchSize = RpcApplication.getRpcConfig().getFlushBatchSize();
+        int batchSize = flushBatchSize != null ? flushBatchSize : RpcConstant.DEFAULT_FLUSH_BATCH_SIZE;
+        if (batchSize > 0) {
+            pipeline.addLast(new FlushConsolidationHandler(batchSize, true));
+        }
 
         // 使用自定义的编码器和解码器
         try {
             // 根据传入的序列化器类型初始化编码器
-            pipeline.addLast(new MyEncoder(Serializer.getSerializerByCode(3)));
+            pipeline.addLast(new MyEncoder(serializer));
             pipeline.addLast(new MyDecoder());
             pipeline.addLast(new NettyClientHandler());
             //客户端超过10秒没有写数据，则发送心跳包
@@ -36,7 +51,7 @@ public class NettyClientInitializer extends ChannelInitializer<SocketChannel> {
             pipeline.addLast(new IdleStateHandler(0,10,0, TimeUnit.SECONDS));
             pipeline.addLast(new HeartbeatHandler());
 
-            log.info("Netty client pipeline initialized with serializer type: {}",Serializer.getSerializerByCode(3).toString());
+            log.info("Netty client pipeline initialized with serializer type: {}",serializer.toString());
         } catch (Exception e) {
             log.error("Error initializing Netty client pipeline", e);
             throw e;  // 重新抛出异常，确保管道初始化失败时处理正确
@@ -0,0 +1,67 @@
+package com.ljm.client.netty;
+
+import com.ljm.message.RpcResponse;
+import io.netty.util.AttributeKey;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @ClassName PendingRequests
+ * @Description 未完成请求表
+ * 每条连接持有一张表：requestId -> 等待响应的future
+ * 多个请求共用一条连接时，响应可以乱序返回，按requestId找到对应的调用
+ * @Author ljm
+ */
+@Slf4j
+public class PendingRequests {
+    //挂在channel上的属性名
+    public static final AttributeKey<PendingRequests> KEY = AttributeKey.valueOf("pendingRequests");
+    //全局递增的请求id
+    private static final AtomicLong ID_GENERATOR = new AtomicLong(0);
+
+    private final Map<Long, CompletableFuture<RpcResponse>> pending = new ConcurrentHashMap<>();
+
+    public static long nextRequestId() {
+        return ID_GENERATOR.incrementAndGet();
+    }
+
+    //登记一个等待响应的请求
+    public CompletableFuture<RpcResponse> register(long requestId) {
+        CompletableFuture<RpcResponse> future = new CompletableFuture<>();
+        pending.put(requestId, future);
+        return future;
+    }
+
+    //收到响应，完成对应的future
+    public void complete(RpcResponse response) {
+        CompletableFuture<RpcResponse> future = pending.remove(response.getRequestId());
+        if (future == null) {
+            log.warn("收到未知请求的响应，可能已超时或被取消, requestId: {}", response.getRequestId());
+            return;
+        }
+        future.complete(response);
+    }
+
+    //移除请求（发送失败、超时）
+    public CompletableFuture<RpcResponse> remove(long requestId) {
+        return pending.remove(requestId);
+    }
+
+    //连接断开时，所有未完成的请求都以异常结束，避免调用方一直等待
+    public void failAll(Throwable cause) {
+        for (Long requestId : pending.keySet()) {
+            CompletableFuture<RpcResponse> future = pending.remove(requestId);
+            if (future != null) {
+                future.completeExceptionally(cause);
+            }
+        }
+    }
+
+    public int size() {
+        return pending.size();
+    }
+}
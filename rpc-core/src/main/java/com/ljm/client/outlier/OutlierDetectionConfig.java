@@ -0,0 +1,41 @@
+package com.ljm.client.outlier;
+
+import com.ljm.config.KRpcConfig;
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * @ClassName OutlierDetectionConfig
+ * @Description 异常实例摘除参数，未配置的项使用默认值
+ * 配置示例：
+ * rpc.outlierConsecutiveErrors=5
+ * rpc.outlierSlowCallMs=1000
+ * rpc.outlierBaseEjectionMs=30000
+ * rpc.outlierMaxEjectionMs=300000
+ * rpc.outlierMaxEjectionPercent=0.5
+ * @Author ljm
+ */
+@Getter
+@Builder
+public class OutlierDetectionConfig {
+    //连续失败（或过慢）次数达到该值时摘除，为0表示关闭异常检测
+    private final int consecutiveErrors;
+    //超过该耗时（毫秒）的调用也按失败计，为0表示不按耗时判断
+    private final long slowCallMs;
+    //第一次摘除的时长（毫秒），之后每次摘除时长成倍增加
+    private final long baseEjectionMs;
+    //单次摘除的最长时长（毫秒）
+    private final long maxEjectionMs;
+    //同一服务最多摘除的实例比例，0~1
+    private final double maxEjectionPercent;
+
+    public static OutlierDetectionConfig from(KRpcConfig config) {
+        return OutlierDetectionConfig.builder()
+                .consecutiveErrors(config.getOutlierConsecutiveErrors() != null ? config.getOutlierConsecutiveErrors() : 5)
+                .slowCallMs(config.getOutlierSlowCallMs() != null ? config.getOutlierSlowCallMs() : 1000)
+                .baseEjectionMs(config.getOutlierBaseEjectionMs() != null ? config.getOutlierBaseEjectionMs() : 30_000)
+                .maxEjectionMs(config.getOutlierMaxEjectionMs() != null ? config.getOutlierMaxEjectionMs() : 300_000)
+                .maxEjectionPercent(config.getOutlierMaxEjectionPercent() != null ? config.getOutlierMaxEjectionPercent() : 0.5)
+                .build();
+    }
+}
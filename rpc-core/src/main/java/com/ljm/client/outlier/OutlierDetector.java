@@ -0,0 +1,199 @@
+package com.ljm.client.outlier;
+
+import com.ljm.RpcApplication;
+import com.ljm.client.servicecenter.CallOutcome;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @ClassName OutlierDetector
+ * @Description 被动的异常实例检测
+ * 根据每次调用的结果和耗时统计每个服务地址的连续失败次数，达到阈值后把该地址暂时从负载均衡的候选列表中摘除，
+ * 其余健康实例继续承接流量；摘除时长随重复摘除成倍增加，长时间正常后重新计数
+ * 同一服务被摘除的实例不超过一定比例，避免所有实例同时异常时把服务整个摘空
+ * @Author ljm
+ */
+@Slf4j
+public class OutlierDetector {
+    private final OutlierDetectionConfig config;
+    private final long slowCallNanos;
+    //地址 -> 调用统计
+    private final Map<String, HostStats> stats = new ConcurrentHashMap<>();
+    //当前被摘除的地址 -> 恢复时间，不可变，变化时整体替换
+    private volatile Map<String, Long> ejected = Collections.emptyMap();
+    //最早的恢复时间，到期前不需要检查
+    private volatile long nextRecoveryAt = Long.MAX_VALUE;
+    //服务名 -> 上一次过滤的结果，地址列表和摘除集合都没变时直接复用，一致性哈希环也不必重建
+    private final Map<String, Filtered> filtered = new ConcurrentHashMap<>();
+
+    public OutlierDetector() {
+        this(OutlierDetectionConfig.from(RpcApplication.getRpcConfig()));
+    }
+
+    public OutlierDetector(OutlierDetectionConfig config) {
+        this.config = config;
+        this.slowCallNanos = TimeUnit.MILLISECONDS.toNanos(config.getSlowCallMs());
+    }
+
+    /**
+     * 上报一次调用的结果，失败或耗时超过阈值都记为异常
+     * 服务端过载或限流拒绝的请求没有执行，实例本身是健康的，既不计为异常也不打断连续异常的计数；
+     * 否则整个集群过载、或某个调用方触发限流时，健康的实例也会被成批摘除，流量压到剩下的实例上
+     */
+    public void onRequestComplete(String address, long latencyNanos, CallOutcome outcome) {
+        if (config.getConsecutiveErrors() <= 0 || outcome == CallOutcome.REJECTED) {
+            return;
+        }
+        HostStats hostStats = stats.get(address);
+        if (hostStats == null) {
+            hostStats = stats.computeIfAbsent(address, k -> new HostStats());
+        }
+        boolean error = !outcome.isSuccess() || (slowCallNanos > 0 && latencyNanos >= slowCallNanos);
+        if (!error) {
+            //正常情况下计数已经是0，避免每次调用都写共享变量
+            if (hostStats.consecutiveErrors.get() != 0) {
+                hostStats.consecutiveErrors.set(0);
+            }
+            return;
+        }
+        if (hostStats.consecutiveErrors.incrementAndGet() >= config.getConsecutiveErrors()) {
+            eject(address, hostStats);
+        }
+    }
+
+    /**
+     * 过滤掉被摘除的地址
+     * 没有实例被摘除时原样返回；摘除比例超过上限时，恢复时间最早的实例仍保留在候选列表中
+     */
+    public List<String> filter(String serviceName, List<String> addresses) {
+        Map<String, Long> current = currentEjected();
+        if (current.isEmpty()) {
+            return addresses;
+        }
+        Filtered last = filtered.get(serviceName);
+        if (last != null && last.source == addresses && last.ejected == current) {
+            return last.result;
+        }
+        List<String> result = filter(addresses, current);
+        filtered.put(serviceName, new Filtered(addresses, current, result));
+        return result;
+    }
+
+    //地址下线时清除统计
+    public void remove(String address) {
+        stats.remove(address);
+        if (ejected.containsKey(address)) {
+            synchronized (this) {
+                Map<String, Long> map = new HashMap<>(ejected);
+                map.remove(address);
+                publish(map);
+            }
+        }
+    }
+
+    public boolean isEjected(String address) {
+        return currentEjected().containsKey(address);
+    }
+
+    private List<String> filter(List<String> addresses, Map<String, Long> current) {
+        List<String> ejectedHere = new ArrayList<>();
+        for (String address : addresses) {
+            if (current.containsKey(address)) {
+                ejectedHere.add(address);
+            }
+        }
+        if (ejectedHere.isEmpty()) {
+            return addresses;
+        }
+        int maxEjected = (int) (addresses.size() * config.getMaxEjectionPercent());
+        if (maxEjected <= 0) {
+            return addresses;
+        }
+        if (ejectedHere.size() > maxEjected) {
+            //超过上限时只摘除恢复时间最晚的几个
+            ejectedHere.sort((a, b) -> Long.compare(current.get(b), current.get(a)));
+            ejectedHere = ejectedHere.subList(0, maxEjected);
+        }
+        List<String> result = new ArrayList<>(addresses);
+        result.removeAll(ejectedHere);
+        return Collections.unmodifiableList(result);
+    }
+
+    private synchronized void eject(String address, HostStats hostStats) {
+        if (ejected.containsKey(address)) {
+            //摘除前发出的请求陆续失败，不重复摘除
+            return;
+        }
+        hostStats.consecutiveErrors.set(0);
+        long now = System.currentTimeMillis();
+        //上次恢复后已经正常运行了足够长的时间，重新计数
+        if (now - hostStats.lastEjectedUntil > config.getMaxEjectionMs()) {
+            hostStats.ejectionCount = 0;
+        }
+        int times = ++hostStats.ejectionCount;
+        long duration = Math.min(config.getBaseEjectionMs() << Math.min(times - 1, 20), config.getMaxEjectionMs());
+        hostStats.lastEjectedUntil = now + duration;
+
+        Map<String, Long> map = new HashMap<>(ejected);
+        map.put(address, now + duration);
+        publish(map);
+        log.warn("服务地址 {} 连续 {} 次调用异常，摘除 {} ms（第 {} 次）", address, config.getConsecutiveErrors(), duration, times);
+    }
+
+    private Map<String, Long> currentEjected() {
+        if (System.currentTimeMillis() >= nextRecoveryAt) {
+            recover();
+        }
+        return ejected;
+    }
+
+    //恢复到期的地址
+    private synchronized void recover() {
+        long now = System.currentTimeMillis();
+        if (now < nextRecoveryAt) {
+            return;
+        }
+        Map<String, Long> map = new HashMap<>(ejected);
+        map.entrySet().removeIf(entry -> {
+            if (entry.getValue() <= now) {
+                log.info("服务地址 {} 摘除到期，恢复接收请求", entry.getKey());
+                return true;
+            }
+            return false;
+        });
+        publish(map);
+    }
+
+    private void publish(Map<String, Long> map) {
+        ejected = map.isEmpty() ? Collections.emptyMap() : Collections.unmodifiableMap(map);
+        nextRecoveryAt = map.values().stream().mapToLong(Long::longValue).min().orElse(Long.MAX_VALUE);
+    }
+
+    //单个地址的统计
+    private static class HostStats {
+        private final AtomicInteger consecutiveErrors = new AtomicInteger();
+        //以下字段只在eject中读写，由锁保护
+        private int ejectionCount;
+        private long lastEjectedUntil;
+    }
+
+    private static class Filtered {
+        private final List<String> source;
+        private final Map<String, Long> ejected;
+        private final List<String> result;
+
+        Filtered(List<String> source, Map<String, Long> ejected, List<String> result) {
+            this.source = source;
+            this.ejected = ejected;
+            this.result = result;
+        }
+    }
+}
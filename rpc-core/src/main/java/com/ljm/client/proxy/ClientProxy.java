@@ -1,21 +1,34 @@
 package com.ljm.client.proxy;
 
+import com.ljm.RpcApplication;
+import com.ljm.client.cache.ServiceChangeListener;
 import com.ljm.client.circuitbreaker.CircuitBreaker;
+import com.ljm.client.circuitbreaker.CircuitBreakerOpenException;
 import com.ljm.client.circuitbreaker.CircuitBreakerProvider;
-import com.ljm.client.retry.GuavaRetry;
+import com.ljm.client.context.RpcContext;
+import com.ljm.client.retry.FailoverRetry;
 import com.ljm.client.rpcclient.RpcClient;
 import com.ljm.client.rpcclient.impl.NettyRpcClient;
+import com.ljm.client.servicecenter.CallOutcome;
 import com.ljm.client.servicecenter.ServiceCenter;
 import com.ljm.client.servicecenter.ZKServiceCenter;
-import com.ljm.message.RequestType;
+import com.ljm.config.RpcConstant;
 import com.ljm.message.RpcRequest;
 import com.ljm.message.RpcResponse;
+import com.ljm.stub.StubNaming;
 import lombok.extern.slf4j.Slf4j;
 
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
 import java.net.InetSocketAddress;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
 
 /**
  * @ClassName ClientProxy
@@ -31,84 +44,212 @@ public class ClientProxy implements InvocationHandler {
     private RpcClient rpcClient;
     private ServiceCenter serviceCenter;
     private CircuitBreakerProvider circuitBreakerProvider;
+    //失败时换实例重试，进程内所有代理共用一个重试预算
+    private final FailoverRetry retry;
+    //服务接口 -> 该接口每个方法的调用元数据，第一次调用时解析
+    //同一个父接口方法可能属于多个服务接口，按服务接口分开缓存
+    private final Map<Class<?>, Map<Method, MethodDescriptor>> descriptors = new ConcurrentHashMap<>();
+    //每个服务地址一个客户端，连接本身由NettyRpcClient共享
+    private final Map<InetSocketAddress, RpcClient> rpcClients = new ConcurrentHashMap<>();
+    private final Function<InetSocketAddress, RpcClient> rpcClientFactory;
+    //配置文件或默认的超时时间
+    private final long defaultTimeout;
 
     public ClientProxy() throws InterruptedException {
-        serviceCenter = new ZKServiceCenter();
-        circuitBreakerProvider = new CircuitBreakerProvider();
+        this(new ZKServiceCenter(), NettyRpcClient::new);
     }
 
-    //jdk动态代理，每一次代理对象调用方法，都会经过此方法增强
+    ClientProxy(ServiceCenter serviceCenter, Function<InetSocketAddress, RpcClient> rpcClientFactory) {
+        this(serviceCenter, rpcClientFactory, new FailoverRetry());
+    }
+
+    ClientProxy(ServiceCenter serviceCenter, Function<InetSocketAddress, RpcClient> rpcClientFactory, FailoverRetry retry) {
+        this.serviceCenter = serviceCenter;
+        this.rpcClientFactory = rpcClientFactory;
+        this.circuitBreakerProvider = new CircuitBreakerProvider();
+        this.retry = retry;
+        Long configTimeout = RpcApplication.getRpcConfig().getTimeout();
+        this.defaultTimeout = configTimeout != null ? configTimeout : RpcConstant.DEFAULT_TIMEOUT;
+        //提供者下线后清理与该地址相关的状态
+        serviceCenter.addServiceChangeListener(new ServiceChangeListener() {
+            @Override
+            public void onInstanceAdded(String serviceName, String address) {
+            }
+
+            @Override
+            public void onInstanceRemoved(String serviceName, String address) {
+                circuitBreakerProvider.removeAddress(serviceName, address);
+                //只移除按地址缓存的客户端对象，不调用close：连接和EventLoop由所有客户端共享
+                //该地址仍提供其他服务时，下次调用会重新创建，开销只是一个对象
+                rpcClients.keySet().removeIf(serviceAddress ->
+                        address.equals(serviceAddress.getHostString() + ":" + serviceAddress.getPort()));
+            }
+        });
+    }
+
+    //直接作为InvocationHandler使用时不知道代理的是哪个接口，按方法的声明接口调用；getProxy 创建的代理带有服务接口
     @Override
     public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
-        //构建request
-        RpcRequest request = RpcRequest.builder()
-                .requestType(RequestType.NORMAL)
-                .interfaceName(method.getDeclaringClass().getName())
-                .methodName(method.getName())
-                .params(args).paramsType(method.getParameterTypes()).build();
-        //获取熔断器
-        CircuitBreaker circuitBreaker = circuitBreakerProvider.getCircuitBreaker(method.getName());
-        //判断熔断器是否允许请求经过
-        if (!circuitBreaker.allowRequest()) {
-            log.warn("熔断器开启，请求被拒绝: {}", request);
-            //这里可以针对熔断做特殊处理，返回特殊值
-            return null;
+        return invoke(method.getDeclaringClass(), method, args);
+    }
+
+    //jdk动态代理或生成的桩类，每一次代理对象调用方法，都会经过此方法增强
+    private Object invoke(Class<?> service, Method method, Object[] args) {
+        MethodDescriptor descriptor = getDescriptor(service, method);
+        //构建request，签名随请求传给客户端，用于查找握手得到的方法id
+        RpcRequest request = new RpcRequest();
+        request.setInterfaceName(descriptor.getInterfaceName());
+        request.setMethodName(descriptor.getMethodName());
+        request.setParams(args);
+        request.setParamsType(descriptor.getParamsType());
+        request.setTimeout(getTimeout(descriptor));
+        request.setMethodSignature(descriptor.getSignature());
+        String methodSignature = descriptor.getSignature();
+        retry.onRequest();
+        Object hashKey = descriptor.getHashKey(args);
+        InetSocketAddress serviceAddress = serviceCenter.serviceDiscovery(request, hashKey);
+        if (serviceAddress == null) {
+            log.error("服务发现失败，没有可用的服务提供者: {}", methodSignature);
+            return descriptor.isAsync() ? CompletableFuture.completedFuture(null) : null;
         }
-        //数据传输
-        RpcResponse response;
-        //为保持幂等性，只对白名单上的服务进行重试
-        // 如果启用重试机制，先检查是否需要重试
-        String methodSignature = getMethodSignature(request.getInterfaceName(), method);
-        log.info("方法签名: " + methodSignature);
-        InetSocketAddress serviceAddress = serviceCenter.serviceDiscovery(request);
-        rpcClient = new NettyRpcClient(serviceAddress);
-        if (serviceCenter.checkRetry(serviceAddress, methodSignature)) {
-            //调用retry框架进行重试操作
-            try {
-                log.info("尝试重试调用服务: {}", methodSignature);
-                response = new GuavaRetry().sendServiceWithRetry(request, rpcClient);
-            } catch (Exception e) {
-                log.error("重试调用失败: {}", methodSignature, e);
-                //记录失败次数，上报给熔断器
-                circuitBreaker.recordFailure();
-                throw e;  // 将异常抛给调用者
-            }
+        //为保持幂等性，只对白名单上的服务进行重试；白名单来自该提供者发布的数据，查的是本地内存
+        boolean retryable = serviceCenter.checkRetry(descriptor.getInterfaceName(), serviceAddress, methodSignature);
+        CompletableFuture<RpcResponse> responseFuture;
+        if (retryable) {
+            //失败后换一个实例重试，已经失败过的实例不再选择，换到的实例也要声明该方法可重试
+            responseFuture = retry.execute(request, serviceAddress, address -> call(request, address), tried -> {
+                InetSocketAddress next = serviceCenter.serviceDiscovery(request, hashKey, tried);
+                return serviceCenter.checkRetry(descriptor.getInterfaceName(), next, methodSignature) ? next : null;
+            });
         } else {
-            //只调用一次
-            response = rpcClient.sendRequest(request);
+            //不可重试的请求：被熔断的实例上请求还没有发出，换到熔断器放行的实例是安全的；都被熔断时直接返回
+            InetSocketAddress allowed = selectAllowed(request, hashKey, serviceAddress);
+            if (allowed == null) {
+                log.warn("熔断器开启，请求被拒绝: {} -> {}", methodSignature, serviceAddress);
+                //这里可以针对熔断做特殊处理，返回特殊值
+                return descriptor.isAsync() ? CompletableFuture.completedFuture(null) : null;
+            }
+            responseFuture = send(request, allowed);
         }
-        //记录response的状态，上报给熔断器
-        if (response != null) {
-            if (response.getCode() == 200) {
-                circuitBreaker.recordSuccess();
-            } else if (response.getCode() == 500) {
-                circuitBreaker.recordFailure();
+        //返回值为CompletableFuture的方法走异步调用，不阻塞调用线程，响应到达时在Netty线程里完成
+        if (descriptor.isAsync()) {
+            return responseFuture.thenApply(response -> handleResponse(request, response));
+        }
+        //同步调用阻塞等待结果，重试的等待不占用调用线程以外的线程
+        RpcResponse response;
+        try {
+            response = responseFuture.get();
+        } catch (InterruptedException e) {
+            log.error("请求被中断: {}", methodSignature);
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            log.error("调用服务失败: {}", methodSignature, e.getCause());
+            return null;
+        }
+        return handleResponse(request, response);
+    }
+
+    //从选中的地址开始，跳过熔断器开启的实例重新选择，没有放行的实例时返回null
+    private InetSocketAddress selectAllowed(RpcRequest request, Object hashKey, InetSocketAddress serviceAddress) {
+        Set<InetSocketAddress> rejected = null;
+        while (serviceAddress != null) {
+            //负载均衡在候选地址都被排除时仍会选回已拒绝的地址
+            if (rejected != null && rejected.contains(serviceAddress)) {
+                return null;
+            }
+            if (circuitBreakerProvider.getCircuitBreaker(request.getMethodSignature(), serviceAddress).allowRequest()) {
+                return serviceAddress;
+            }
+            log.debug("熔断器开启，换一个实例: {} -> {}", request.getMethodSignature(), serviceAddress);
+            if (rejected == null) {
+                rejected = new HashSet<>();
             }
-            log.info("收到响应: {} 状态码: {}", request.getInterfaceName(), response.getCode());
+            rejected.add(serviceAddress);
+            serviceAddress = serviceCenter.serviceDiscovery(request, hashKey, rejected);
         }
+        return null;
+    }
 
-        return response != null ? response.getData() : null;
+    //一次尝试：经过该地址上的熔断器后发送，被熔断时请求不发出，重试会立即换到其他实例
+    private CompletableFuture<RpcResponse> call(RpcRequest request, InetSocketAddress serviceAddress) {
+        //获取熔断器，每个方法在每个服务提供者上各有一个
+        CircuitBreaker circuitBreaker = circuitBreakerProvider.getCircuitBreaker(request.getMethodSignature(), serviceAddress);
+        if (!circuitBreaker.allowRequest()) {
+            log.warn("熔断器开启，请求被拒绝: {} -> {}", request.getMethodSignature(), serviceAddress);
+            return CompletableFuture.failedFuture(new CircuitBreakerOpenException("熔断器开启，请求被拒绝"));
+        }
+        return send(request, serviceAddress, circuitBreaker);
     }
 
-    public <T> T getProxy(Class<T> clazz) {
-        Object o = Proxy.newProxyInstance(clazz.getClassLoader(), new Class[]{clazz}, this);
-        return (T) o;
+    private CompletableFuture<RpcResponse> send(RpcRequest request, InetSocketAddress serviceAddress) {
+        return send(request, serviceAddress, circuitBreakerProvider.getCircuitBreaker(request.getMethodSignature(), serviceAddress));
     }
 
-    // 根据接口名字和方法获取方法签名
-    private String getMethodSignature(String interfaceName, Method method) {
-        StringBuilder sb = new StringBuilder();
-        sb.append(interfaceName).append("#").append(method.getName()).append("(");
-        Class<?>[] parameterTypes = method.getParameterTypes();
-        for (int i = 0; i < parameterTypes.length; i++) {
-            sb.append(parameterTypes[i].getName());
-            if (i < parameterTypes.length - 1) {
-                sb.append(",");
-            } else{
-                sb.append(")");
+    //发送到指定地址，在途请求数和耗时上报给负载均衡，结果和耗时上报给熔断器
+    private CompletableFuture<RpcResponse> send(RpcRequest request, InetSocketAddress serviceAddress, CircuitBreaker circuitBreaker) {
+        RpcClient rpcClient = getRpcClient(serviceAddress);
+        this.rpcClient = rpcClient;
+        serviceCenter.onRequestStart(serviceAddress);
+        long start = System.nanoTime();
+        return rpcClient.sendRequestAsync(request).whenComplete((response, e) -> {
+            long duration = System.nanoTime() - start;
+            CallOutcome outcome = CallOutcome.of(response, e);
+            serviceCenter.onRequestComplete(serviceAddress, duration, outcome);
+            //服务端拒绝执行的请求不计入熔断统计
+            if (outcome == CallOutcome.SUCCESS) {
+                circuitBreaker.recordSuccess(duration);
+            } else if (outcome == CallOutcome.FAILURE) {
+                circuitBreaker.recordFailure(duration);
             }
+        });
+    }
+
+    //返回结果数据
+    private Object handleResponse(RpcRequest request, RpcResponse response) {
+        if (response != null) {
+            log.debug("收到响应: {} 状态码: {}", request.getInterfaceName(), response.getCode());
         }
-        return sb.toString();
+        return response != null ? response.getData() : null;
+    }
+
+    private MethodDescriptor getDescriptor(Class<?> service, Method method) {
+        Map<Method, MethodDescriptor> serviceDescriptors = descriptors.get(service);
+        if (serviceDescriptors == null) {
+            serviceDescriptors = descriptors.computeIfAbsent(service, key -> new ConcurrentHashMap<>());
+        }
+        MethodDescriptor descriptor = serviceDescriptors.get(method);
+        if (descriptor == null) {
+            descriptor = serviceDescriptors.computeIfAbsent(method, m -> new MethodDescriptor(service, m, defaultTimeout));
+        }
+        return descriptor;
+    }
+
+    private RpcClient getRpcClient(InetSocketAddress serviceAddress) {
+        RpcClient client = rpcClients.get(serviceAddress);
+        return client != null ? client : rpcClients.computeIfAbsent(serviceAddress, rpcClientFactory);
+    }
+
+    //超时时间优先级：RpcContext > 方法上的@RpcTimeout > 接口上的@RpcTimeout > 配置文件 > 默认值
+    private long getTimeout(MethodDescriptor descriptor) {
+        Long contextTimeout = RpcContext.consumeTimeout();
+        return contextTimeout != null ? contextTimeout : descriptor.getTimeout();
+    }
+
+    //优先使用注解处理器为 @RpcService 接口生成的桩类，没有时退回JDK动态代理
+    //代理把服务接口带给 invoke，父接口中的方法也按该接口的签名发送
+    public <T> T getProxy(Class<T> clazz) {
+        InvocationHandler handler = (proxy, method, args) -> invoke(clazz, method, args);
+        try {
+            Class<?> stubClass = Class.forName(StubNaming.getStubClassName(clazz.getName()), true, clazz.getClassLoader());
+            return clazz.cast(stubClass.getConstructor(InvocationHandler.class).newInstance(handler));
+        } catch (ClassNotFoundException e) {
+            log.debug("接口 {} 没有生成的桩类，使用动态代理", clazz.getName());
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            log.warn("接口 {} 的桩类不可用，使用动态代理: {}", clazz.getName(), e.toString());
+        }
+        Object o = Proxy.newProxyInstance(clazz.getClassLoader(), new Class[]{clazz}, handler);
+        return (T) o;
     }
 
     //关闭创建的资源
@@ -0,0 +1,69 @@
+package com.ljm.client.proxy;
+
+import com.ljm.annotation.HashKey;
+import com.ljm.annotation.RpcTimeout;
+import com.ljm.utils.MethodSignatureUtil;
+import lombok.Getter;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * @ClassName MethodDescriptor
+ * @Description 接口方法的调用元数据，每个Method只解析一次
+ * 签名、参数类型、超时注解、@HashKey参数位置、返回值类型都在第一次调用时确定，之后每次调用直接读取
+ * 可重试、方法id和熔断器与具体的服务提供者有关，不在这里缓存，调用时按地址从内存中查找
+ * 接口名和签名取被代理的服务接口而不是方法的声明类：父接口中的方法也按服务接口注册和调用
+ * @Author ljm
+ */
+@Getter
+class MethodDescriptor {
+    private final String interfaceName;
+    private final String methodName;
+    private final Class<?>[] paramsType;
+    //接口名#方法名(参数类型)
+    private final String signature;
+    //标注了@HashKey的参数下标，没有标注时为-1
+    private final int hashKeyIndex;
+    //注解或配置得到的超时时间（毫秒）
+    private final long timeout;
+    //返回值为CompletableFuture的方法走异步调用
+    private final boolean async;
+
+    MethodDescriptor(Class<?> service, Method method, long defaultTimeout) {
+        this.interfaceName = service.getName();
+        this.methodName = method.getName();
+        this.paramsType = method.getParameterTypes();
+        this.signature = MethodSignatureUtil.getMethodSignature(service, method);
+        this.hashKeyIndex = findHashKeyIndex(method);
+        this.timeout = resolveTimeout(service, method, defaultTimeout);
+        this.async = method.getReturnType() == CompletableFuture.class;
+    }
+
+    //取标注了@HashKey的参数作为一致性哈希的key，没有标注时返回null
+    Object getHashKey(Object[] args) {
+        return hashKeyIndex >= 0 ? args[hashKeyIndex] : null;
+    }
+
+    private static int findHashKeyIndex(Method method) {
+        Annotation[][] parameterAnnotations = method.getParameterAnnotations();
+        for (int i = 0; i < parameterAnnotations.length; i++) {
+            for (Annotation annotation : parameterAnnotations[i]) {
+                if (annotation instanceof HashKey) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    //方法上的@RpcTimeout > 接口上的@RpcTimeout > 配置文件或默认值
+    private static long resolveTimeout(Class<?> service, Method method, long defaultTimeout) {
+        RpcTimeout rpcTimeout = method.getAnnotation(RpcTimeout.class);
+        if (rpcTimeout == null) {
+            rpcTimeout = service.getAnnotation(RpcTimeout.class);
+        }
+        return rpcTimeout != null ? rpcTimeout.value() : defaultTimeout;
+    }
+}
@@ -0,0 +1,201 @@
+package com.ljm.client.retry;
+
+import com.ljm.RpcApplication;
+import com.ljm.client.circuitbreaker.CircuitBreakerOpenException;
+import com.ljm.message.RpcRequest;
+import com.ljm.message.RpcResponse;
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import lombok.extern.slf4j.Slf4j;
+
+import java.net.InetSocketAddress;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * @ClassName FailoverRetry
+ * @Description 重试策略
+ * 出现异常、返回500或503时换一个实例重试：等待时间按指数退避并在0到上限之间随机，避免大量调用方同时重试；
+ * 等待由时间轮调度，不占用调用线程；重试次数受客户端全局的重试预算限制，
+ * 且所有尝试加起来不超过调用的超时时间
+ * 因熔断器开启而没有发出的尝试不算一次重试：立即换实例，不等待也不消耗预算
+ * @Author ljm
+ */
+@Slf4j
+public class FailoverRetry {
+    //重试等待与请求超时一样使用时间轮，精度10ms足够
+    private static final HashedWheelTimer TIMER =
+            new HashedWheelTimer(new DefaultThreadFactory("rpc-retry", true), 10, TimeUnit.MILLISECONDS, 512);
+
+    private final RetryConfig config;
+    private final RetryBudget budget;
+
+    //使用进程内共用的重试预算
+    public FailoverRetry() {
+        this(RetryConfig.from(RpcApplication.getRpcConfig()), RetryBudget.shared());
+    }
+
+    public FailoverRetry(RetryConfig config, RetryBudget budget) {
+        this.config = config;
+        this.budget = budget;
+    }
+
+    //使用独立的重试预算
+    FailoverRetry(RetryConfig config) {
+        this(config, new RetryBudget(config.getBudgetRatio(), config.getMinRetriesPerSecond()));
+    }
+
+    RetryBudget getBudget() {
+        return budget;
+    }
+
+    //每个请求调用一次（不论是否可重试），为重试预算存入额度
+    public void onRequest() {
+        budget.deposit();
+    }
+
+    /**
+     * 发送请求，失败时换实例重试
+     * @param address  第一次尝试的地址
+     * @param attempt  向给定地址发送一次请求，请求没有发出时以 {@link CircuitBreakerOpenException} 结束
+     * @param reselect 根据已经失败过的地址重新选择实例，返回null表示没有可用的实例
+     * @return 成功的响应，或所有尝试结束后最后一次的失败响应
+     */
+    public CompletableFuture<RpcResponse> execute(RpcRequest request, InetSocketAddress address,
+                                                  Function<InetSocketAddress, CompletableFuture<RpcResponse>> attempt,
+                                                  Function<Set<InetSocketAddress>, InetSocketAddress> reselect) {
+        Call call = new Call(request, attempt, reselect);
+        send(call, address);
+        return call.result;
+    }
+
+    private void send(Call call, InetSocketAddress address) {
+        call.attempts++;
+        CompletableFuture<RpcResponse> future;
+        try {
+            future = call.attempt.apply(address);
+        } catch (Throwable e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+        future.whenComplete((response, e) -> onAttemptComplete(call, address, response, e));
+    }
+
+    private void onAttemptComplete(Call call, InetSocketAddress address, RpcResponse response, Throwable e) {
+        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+        if (cause instanceof CircuitBreakerOpenException) {
+            onNotSent(call, address);
+            return;
+        }
+        if (response != null) {
+            call.lastResponse = response;
+        }
+        //500为执行失败，503为服务端过载没有执行，都换实例重试
+        if (e == null && response != null && response.getCode() != 500 && response.getCode() != 503) {
+            call.result.complete(response);
+            return;
+        }
+        String methodSignature = call.request.getMethodSignature();
+        if (call.attempts >= config.getMaxAttempts()) {
+            log.error("重试失败: 请求 {} 已尝试 {} 次", methodSignature, call.attempts, e);
+            finish(call, response);
+            return;
+        }
+        long backoff = backoff(call.attempts);
+        if (call.deadline > 0 && TimeUnit.NANOSECONDS.toMillis(call.deadline - System.nanoTime()) <= backoff) {
+            log.warn("请求 {} 剩余时间不足，不再重试", methodSignature);
+            finish(call, response);
+            return;
+        }
+        if (!budget.tryAcquire()) {
+            log.warn("重试预算已用完，请求 {} 不再重试", methodSignature);
+            finish(call, response);
+            return;
+        }
+        call.tried.add(address);
+        log.info("请求 {} 在 {} 上失败，{} ms 后进行第 {} 次重试", methodSignature, address, backoff, call.attempts);
+        TIMER.newTimeout(t -> retry(call), backoff, TimeUnit.MILLISECONDS);
+    }
+
+    //请求没有发出，立即换一个还没有尝试过的实例；都尝试过时结束
+    private void onNotSent(Call call, InetSocketAddress address) {
+        call.attempts--;
+        call.tried.add(address);
+        InetSocketAddress next;
+        try {
+            next = call.reselect.apply(call.tried);
+        } catch (Throwable e) {
+            call.result.completeExceptionally(e);
+            return;
+        }
+        if (next == null || call.tried.contains(next)) {
+            log.warn("请求 {} 没有熔断器放行的服务实例", call.request.getMethodSignature());
+            finish(call, call.lastResponse != null ? call.lastResponse : RpcResponse.fail("熔断器开启，请求被拒绝"));
+            return;
+        }
+        send(call, next);
+    }
+
+    //在时间轮线程里选择新的实例并发送，发送本身是异步的
+    private void retry(Call call) {
+        try {
+            InetSocketAddress next = call.reselect.apply(call.tried);
+            if (next == null) {
+                log.warn("请求 {} 没有可重试的服务实例", call.request.getMethodSignature());
+                finish(call, call.lastResponse);
+                return;
+            }
+            if (call.deadline > 0) {
+                long remaining = TimeUnit.NANOSECONDS.toMillis(call.deadline - System.nanoTime());
+                if (remaining <= 0) {
+                    finish(call, null);
+                    return;
+                }
+                //后续尝试只能使用剩余的时间
+                call.request.setTimeout(remaining);
+            }
+            send(call, next);
+        } catch (Throwable e) {
+            call.result.completeExceptionally(e);
+        }
+    }
+
+    //第n次重试前的等待时间：在 0 ~ min(上限, 基准*2^(n-1)) 之间均匀随机
+    long backoff(int retries) {
+        long cap = Math.min(config.getMaxBackoffMs(), config.getBaseBackoffMs() << Math.min(retries - 1, 20));
+        return cap > 0 ? ThreadLocalRandom.current().nextLong(cap + 1) : 0;
+    }
+
+    private static void finish(Call call, RpcResponse lastResponse) {
+        call.result.complete(lastResponse != null ? lastResponse : RpcResponse.fail("重试失败，所有重试尝试已结束"));
+    }
+
+    //一次调用的重试状态，各次尝试依次进行，不会被并发访问
+    private static class Call {
+        private final RpcRequest request;
+        private final Function<InetSocketAddress, CompletableFuture<RpcResponse>> attempt;
+        private final Function<Set<InetSocketAddress>, InetSocketAddress> reselect;
+        private final CompletableFuture<RpcResponse> result = new CompletableFuture<>();
+        //已经失败过的地址
+        private final Set<InetSocketAddress> tried = new HashSet<>();
+        //所有尝试的截止时间（nanoTime），为0表示不限
+        private final long deadline;
+        //已发出的尝试次数
+        private int attempts;
+        //最近一次收到的响应，所有尝试结束时返回
+        private RpcResponse lastResponse;
+
+        Call(RpcRequest request, Function<InetSocketAddress, CompletableFuture<RpcResponse>> attempt,
+             Function<Set<InetSocketAddress>, InetSocketAddress> reselect) {
+            this.request = request;
+            this.attempt = attempt;
+            this.reselect = reselect;
+            this.deadline = request.getTimeout() > 0
+                    ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(request.getTimeout()) : 0;
+        }
+    }
+}
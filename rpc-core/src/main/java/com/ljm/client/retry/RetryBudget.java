@@ -0,0 +1,112 @@
+package com.ljm.client.retry;
+
+import com.ljm.RpcApplication;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * @ClassName RetryBudget
+ * @Description 客户端全局的重试预算
+ * 每个请求存入 ratio 次重试的额度，每次重试取出一次，额度不足时不再重试，
+ * 这样即使下游大面积失败，重试带来的额外流量也不超过正常请求量的一定比例，不会把故障放大
+ * 请求量很小时另有每秒固定的保底名额，保证偶发的失败仍能重试
+ * 客户端进程内共用 {@link #shared()} 返回的同一个预算，多个代理的重试加起来仍受同一个比例和保底名额限制
+ * @Author ljm
+ */
+public class RetryBudget {
+    //额度按千分之一次计，避免浮点运算
+    private static final long SCALE = 1000;
+    //长时间正常运行后最多积累的重试次数，故障开始时不会一下子放出大量重试
+    private static final long MAX_RETRIES = 100;
+
+    private final long depositPerRequest;
+    private final long maxBalance = MAX_RETRIES * SCALE;
+    private final int minRetriesPerSecond;
+    //毫秒时钟，测试时可替换
+    private final LongSupplier clock;
+    private final AtomicLong balance = new AtomicLong();
+    //保底名额所属的秒和剩余数量
+    private final AtomicLong reserveSecond = new AtomicLong(-1);
+    private final AtomicInteger reserve = new AtomicInteger();
+
+    //进程内共用的预算，第一次使用时按配置创建
+    private static volatile RetryBudget shared;
+
+    public RetryBudget(double ratio, int minRetriesPerSecond) {
+        this(ratio, minRetriesPerSecond, System::currentTimeMillis);
+    }
+
+    RetryBudget(double ratio, int minRetriesPerSecond, LongSupplier clock) {
+        this.depositPerRequest = (long) (ratio * SCALE);
+        this.minRetriesPerSecond = minRetriesPerSecond;
+        this.clock = clock;
+    }
+
+    public static RetryBudget shared() {
+        RetryBudget budget = shared;
+        if (budget == null) {
+            synchronized (RetryBudget.class) {
+                budget = shared;
+                if (budget == null) {
+                    RetryConfig config = RetryConfig.from(RpcApplication.getRpcConfig());
+                    budget = new RetryBudget(config.getBudgetRatio(), config.getMinRetriesPerSecond());
+                    shared = budget;
+                }
+            }
+        }
+        return budget;
+    }
+
+    //每个请求调用一次，存入额度
+    public void deposit() {
+        if (depositPerRequest <= 0) {
+            return;
+        }
+        long current;
+        do {
+            current = balance.get();
+            //额度已满时只读不写，避免每次请求都竞争同一个变量
+            if (current >= maxBalance) {
+                return;
+            }
+        } while (!balance.compareAndSet(current, Math.min(current + depositPerRequest, maxBalance)));
+    }
+
+    //重试前调用，返回false表示额度已用完，不应重试
+    public boolean tryAcquire() {
+        return withdraw() || acquireReserve();
+    }
+
+    private boolean withdraw() {
+        long current;
+        do {
+            current = balance.get();
+            if (current < SCALE) {
+                return false;
+            }
+        } while (!balance.compareAndSet(current, current - SCALE));
+        return true;
+    }
+
+    private boolean acquireReserve() {
+        if (minRetriesPerSecond <= 0) {
+            return false;
+        }
+        long second = clock.getAsLong() / 1000;
+        long last = reserveSecond.get();
+        //进入新的一秒时只有一个线程重置保底名额
+        if (last != second && reserveSecond.compareAndSet(last, second)) {
+            reserve.set(minRetriesPerSecond);
+        }
+        int current;
+        do {
+            current = reserve.get();
+            if (current <= 0) {
+                return false;
+            }
+        } while (!reserve.compareAndSet(current, current - 1));
+        return true;
+    }
+}
@@ -0,0 +1,41 @@
+package com.ljm.client.retry;
+
+import com.ljm.config.KRpcConfig;
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * @ClassName RetryConfig
+ * @Description 重试参数，未配置的项使用默认值
+ * 配置示例：
+ * rpc.retryMaxAttempts=3
+ * rpc.retryBaseBackoffMs=50
+ * rpc.retryMaxBackoffMs=1000
+ * rpc.retryBudgetRatio=0.1
+ * rpc.retryMinPerSecond=10
+ * @Author ljm
+ */
+@Getter
+@Builder
+public class RetryConfig {
+    //每次调用最多尝试的次数，包括第一次
+    private final int maxAttempts;
+    //第n次重试前最多等待 baseBackoffMs * 2^(n-1) 毫秒，实际等待时间在0到该值之间随机
+    private final long baseBackoffMs;
+    //单次等待时间的上限（毫秒）
+    private final long maxBackoffMs;
+    //重试次数不超过请求数的这个比例，0~1
+    private final double budgetRatio;
+    //请求量很小时比例给出的名额太少，每秒至少允许这么多次重试
+    private final int minRetriesPerSecond;
+
+    public static RetryConfig from(KRpcConfig config) {
+        return RetryConfig.builder()
+                .maxAttempts(config.getRetryMaxAttempts() != null ? config.getRetryMaxAttempts() : 3)
+                .baseBackoffMs(config.getRetryBaseBackoffMs() != null ? config.getRetryBaseBackoffMs() : 50)
+                .maxBackoffMs(config.getRetryMaxBackoffMs() != null ? config.getRetryMaxBackoffMs() : 1000)
+                .budgetRatio(config.getRetryBudgetRatio() != null ? config.getRetryBudgetRatio() : 0.1)
+                .minRetriesPerSecond(config.getRetryMinPerSecond() != null ? config.getRetryMinPerSecond() : 10)
+                .build();
+    }
+}
@@ -4,6 +4,8 @@ package com.ljm.client.rpcclient;
 import com.ljm.message.RpcRequest;
 import com.ljm.message.RpcResponse;
 
+import java.util.concurrent.CompletableFuture;
+
 /**
  * @InterfaceName RpcClient
  * @Description 定义底层通信方法
@@ -14,5 +16,12 @@ import com.ljm.message.RpcResponse;
 
 public interface RpcClient {
     RpcResponse sendRequest(RpcRequest request);
+
+    //异步发送，不阻塞调用线程，响应到达时完成future
+    //默认实现退化为同步调用，支持异步的客户端应覆盖
+    default CompletableFuture<RpcResponse> sendRequestAsync(RpcRequest request) {
+        return CompletableFuture.completedFuture(sendRequest(request));
+    }
+
     void close();
 }
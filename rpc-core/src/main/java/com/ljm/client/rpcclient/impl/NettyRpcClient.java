@@ -1,20 +1,31 @@
 package com.ljm.client.rpcclient.impl;
 
 
+import com.ljm.RpcApplication;
+import com.ljm.client.netty.ConnectionManager;
+import com.ljm.client.netty.MethodDictionary;
 import com.ljm.client.netty.NettyClientInitializer;
+import com.ljm.client.netty.PendingRequests;
 import com.ljm.client.rpcclient.RpcClient;
+import com.ljm.message.RequestType;
 import com.ljm.message.RpcRequest;
 import com.ljm.message.RpcResponse;
+import com.ljm.transport.Transport;
+import com.ljm.transport.TransportConfig;
+import com.ljm.utils.MethodSignatureUtil;
 import io.netty.bootstrap.Bootstrap;
 import io.netty.channel.Channel;
-import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.EventLoopGroup;
-import io.netty.channel.nio.NioEventLoopGroup;
-import io.netty.channel.socket.nio.NioSocketChannel;
-import io.netty.util.AttributeKey;
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timeout;
+import io.netty.util.concurrent.DefaultThreadFactory;
 import lombok.extern.slf4j.Slf4j;
 
 import java.net.InetSocketAddress;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * @ClassName NettyRpcClient
@@ -28,6 +39,11 @@ public class NettyRpcClient implements RpcClient {
 
     private static final Bootstrap bootstrap;
     private static final EventLoopGroup eventLoopGroup;
+    //所有NettyRpcClient共享的长连接
+    private static final ConnectionManager connectionManager;
+    //请求超时检测，时间轮每10ms推进一格，大量请求的超时任务开销是常数级的
+    private static final HashedWheelTimer TIMER =
+            new HashedWheelTimer(new DefaultThreadFactory("rpc-timeout", true), 10, TimeUnit.MILLISECONDS, 512);
 
     private final InetSocketAddress address;
 
@@ -35,57 +51,127 @@ public class NettyRpcClient implements RpcClient {
         this.address = serviceAddress;
     }
 
-    //netty客户端初始化
+    //netty客户端初始化，传输实现和socket参数与服务端使用同一组配置
     static {
-        eventLoopGroup = new NioEventLoopGroup();
+        TransportConfig transportConfig = TransportConfig.from(RpcApplication.getRpcConfig());
+        Transport transport = Transport.select(transportConfig);
+        eventLoopGroup = transport.newEventLoopGroup(transportConfig.getClientIoThreads(), "rpc-client-io");
         bootstrap = new Bootstrap();
-        bootstrap.group(eventLoopGroup).channel(NioSocketChannel.class)
-                .handler(new NettyClientInitializer());
+        NettyClientInitializer initializer = new NettyClientInitializer();
+        bootstrap.group(eventLoopGroup).handler(initializer);
+        transport.configure(bootstrap, transportConfig);
+        log.info("Netty客户端使用 {} 传输", transport);
+        connectionManager = new ConnectionManager(bootstrap, initializer.getSerializer().isSelfDescribing());
     }
 
     @Override
     public RpcResponse sendRequest(RpcRequest request) {
-        //从注册中心获取host,post
-        if (address == null) {
-            log.error("服务发现失败，返回的地址为 null");
-            return RpcResponse.fail("服务发现失败，地址为 null");
-        }
-        String host = address.getHostName();
-        int port = address.getPort();
         try {
-            // 连接到远程服务
-            ChannelFuture channelFuture = bootstrap.connect(host, port).sync();
-            Channel channel = channelFuture.channel();
-            // 发送数据
-            channel.writeAndFlush(request);
-            //sync()堵塞获取结果
-            channel.closeFuture().sync();
-            // 阻塞的获得结果，通过给channel设计别名，获取特定名字下的channel中的内容（这个在hanlder中设置）
-            // AttributeKey是，线程隔离的，不会有线程安全问题。
-            // 当前场景下选择堵塞获取结果
-            // 其它场景也可以选择添加监听器的方式来异步获取结果 channelFuture.addListener...
-            AttributeKey<RpcResponse> key = AttributeKey.valueOf("RPCResponse");
-            RpcResponse response = channel.attr(key).get();
+            // 阻塞等待该请求的响应
+            RpcResponse response = sendRequestAsync(request).get();
             if (response == null) {
                 log.error("服务响应为空，可能是请求失败或超时");
                 return RpcResponse.fail("服务响应为空");
             }
 
-            log.info("收到响应: {}", response);
+            log.debug("收到响应: {}", response);
             return response;
         } catch (InterruptedException e) {
             log.error("请求被中断，发送请求失败: {}", e.getMessage(), e);
             Thread.currentThread().interrupt();
         } catch (Exception e) {
             log.error("发送请求时发生异常: {}", e.getMessage(), e);
-        } finally {
-            //
         }
         return RpcResponse.fail("请求失败");
     }
 
+    @Override
+    public CompletableFuture<RpcResponse> sendRequestAsync(RpcRequest request) {
+        //从注册中心获取host,post
+        if (address == null) {
+            log.error("服务发现失败，返回的地址为 null");
+            return CompletableFuture.completedFuture(RpcResponse.fail("服务发现失败，地址为 null"));
+        }
+        //超时从发起调用时开始计算，建立连接的时间也算在内
+        long start = System.nanoTime();
+        // 复用到该地址的长连接，不存在时才建立；连接建立后在Netty线程里继续发送
+        return connectionManager.getChannel(address).thenCompose(channel -> {
+            long remaining = remainingTimeout(request, start);
+            if (remaining < 0) {
+                return CompletableFuture.failedFuture(new TimeoutException("建立连接超时: " + request.getTimeout() + "ms"));
+            }
+            PendingRequests pendingRequests = channel.attr(PendingRequests.KEY).get();
+            // 为请求分配id并登记，响应到达时按id匹配，同一连接上的请求可以乱序完成
+            long requestId = PendingRequests.nextRequestId();
+            request.setRequestId(requestId);
+            CompletableFuture<RpcResponse> responseFuture = pendingRequests.register(requestId);
+            //超时后移除登记并结束等待，之后到达的响应会被丢弃
+            if (remaining > 0) {
+                Timeout timeout = TIMER.newTimeout(t -> {
+                    if (pendingRequests.remove(requestId) != null) {
+                        responseFuture.completeExceptionally(new TimeoutException(
+                                "请求超时: " + request.getTimeout() + "ms, requestId: " + requestId));
+                    }
+                }, remaining, TimeUnit.MILLISECONDS);
+                responseFuture.whenComplete((response, e) -> timeout.cancel());
+            }
+            RpcRequest message = toMessage(channel, request, remaining);
+            message.setRequestId(requestId);
+            // 发送数据，发送失败时立即结束等待
+            channel.writeAndFlush(message).addListener((ChannelFutureListener) future -> {
+                if (!future.isSuccess()) {
+                    pendingRequests.remove(requestId);
+                    responseFuture.completeExceptionally(future.cause());
+                }
+            });
+            return responseFuture;
+        });
+    }
+
+    //剩余超时时间（毫秒）：0表示不限制，负数表示已经超时
+    private long remainingTimeout(RpcRequest request, long start) {
+        if (request.getTimeout() <= 0) {
+            return 0;
+        }
+        long remaining = request.getTimeout() - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        return remaining > 0 ? remaining : -1;
+    }
+
+    /**
+     * 构造实际发送的消息，携带剩余超时时间
+     * 原请求可能被重试复用，因此总是发送副本
+     * 连接已握手且服务端有该方法时，只发送方法id和参数
+     */
+    private RpcRequest toMessage(Channel channel, RpcRequest request, long remaining) {
+        MethodDictionary dictionary = channel.attr(MethodDictionary.KEY).get();
+        int methodId = 0;
+        if (dictionary != null && request.getRequestType() == RequestType.NORMAL) {
+            String signature = request.getMethodSignature() != null ? request.getMethodSignature()
+                    : MethodSignatureUtil.getMethodSignature(request.getInterfaceName(), request.getMethodName(), request.getParamsType());
+            methodId = dictionary.getMethodId(signature);
+        }
+        if (methodId > 0) {
+            return RpcRequest.builder()
+                    .requestType(RequestType.NORMAL)
+                    .methodId(methodId)
+                    .params(request.getParams())
+                    .timeout(remaining)
+                    .build();
+        }
+        return RpcRequest.builder()
+                .requestType(request.getRequestType())
+                .interfaceName(request.getInterfaceName())
+                .methodName(request.getMethodName())
+                .params(request.getParams())
+                .paramsType(request.getParamsType())
+                .timeout(remaining)
+                .build();
+    }
+
     // 优雅关闭 Netty 资源
     public void close() {
+        connectionManager.close();
+        TIMER.stop();
         try {
             if (eventLoopGroup != null) {
                 eventLoopGroup.shutdownGracefully().sync();
@@ -0,0 +1,33 @@
+package com.ljm.client.servicecenter;
+
+import com.ljm.message.RpcResponse;
+
+/**
+ * @ClassName CallOutcome
+ * @Description 一次调用的结果
+ * 服务端因过载或限流拒绝（503）的请求并没有执行，说明实例忙而不是故障，
+ * 与真正的失败分开上报：负载均衡仍据此少选该实例，异常实例检测不计入
+ * @Author ljm
+ */
+public enum CallOutcome {
+    //调用成功
+    SUCCESS,
+    //服务端拒绝执行（过载、限流），请求未被处理
+    REJECTED,
+    //调用失败：异常、超时或服务端执行出错
+    FAILURE;
+
+    public boolean isSuccess() {
+        return this == SUCCESS;
+    }
+
+    public static CallOutcome of(RpcResponse response, Throwable e) {
+        if (e != null || response == null) {
+            return FAILURE;
+        }
+        if (response.getCode() == 200) {
+            return SUCCESS;
+        }
+        return response.getCode() == 503 ? REJECTED : FAILURE;
+    }
+}
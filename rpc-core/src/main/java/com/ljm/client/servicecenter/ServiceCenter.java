@@ -1,9 +1,11 @@
 package com.ljm.client.servicecenter;
 
 
+import com.ljm.client.cache.ServiceChangeListener;
 import com.ljm.message.RpcRequest;
 
 import java.net.InetSocketAddress;
+import java.util.Set;
 
 /**
  * @InterfaceName ServiceCenter
@@ -17,9 +19,36 @@ public interface ServiceCenter {
     //服务发现：根据服务名查找地址
     InetSocketAddress serviceDiscovery(RpcRequest request);
 
+    //服务发现：hashKey 来自方法上标注了 @HashKey 的参数，一致性哈希据此把相同key路由到同一节点
+    default InetSocketAddress serviceDiscovery(RpcRequest request, Object hashKey) {
+        return serviceDiscovery(request);
+    }
+
+    //重试时的服务发现：尽量避开 excluded 中已经失败过的地址，不支持的实现沿用普通的服务发现
+    default InetSocketAddress serviceDiscovery(RpcRequest request, Object hashKey, Set<InetSocketAddress> excluded) {
+        return serviceDiscovery(request, hashKey);
+    }
+
     //判断是否可重试
     boolean checkRetry(InetSocketAddress serviceAddress, String methodSignature);
 
+    //已知服务名时使用，免去从签名中解析服务名
+    default boolean checkRetry(String serviceName, InetSocketAddress serviceAddress, String methodSignature) {
+        return checkRetry(serviceAddress, methodSignature);
+    }
+
+    //请求发往该地址前调用，转交给负载均衡统计
+    default void onRequestStart(InetSocketAddress serviceAddress) {
+    }
+
+    //请求结束后调用，上报耗时和调用结果
+    default void onRequestComplete(InetSocketAddress serviceAddress, long latencyNanos, CallOutcome outcome) {
+    }
+
+    //监听服务提供者的上下线，不支持的实现忽略
+    default void addServiceChangeListener(ServiceChangeListener listener) {
+    }
+
     //关闭客户端
     void close();
 }
@@ -1,21 +1,29 @@
 package com.ljm.client.servicecenter;
 
+import com.ljm.RpcApplication;
+import com.ljm.client.cache.RegistrySnapshotStore;
+import com.ljm.client.cache.RegistrySnapshotStore.RegistryData;
 import com.ljm.client.cache.ServiceCache;
+import com.ljm.client.cache.ServiceChangeListener;
+import com.ljm.client.cache.ServiceSnapshot;
+import com.ljm.client.outlier.OutlierDetector;
 import com.ljm.client.servicecenter.ZKWatcher.watchZK;
 import com.ljm.client.servicecenter.balacne.LoadBalance;
-import com.ljm.client.servicecenter.balacne.impl.ConsistencyHashBalance;
 import com.ljm.message.RpcRequest;
+import com.ljm.utils.ServiceMetadataUtil;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.curator.RetryPolicy;
 import org.apache.curator.framework.CuratorFramework;
 import org.apache.curator.framework.CuratorFrameworkFactory;
 import org.apache.curator.retry.ExponentialBackoffRetry;
-import org.springframework.util.CollectionUtils;
 
 import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
-import java.util.concurrent.CopyOnWriteArraySet;
 
 /**
  * @ClassName ZKServiceCenter
@@ -28,11 +36,19 @@ public class ZKServiceCenter implements ServiceCenter {
     private CuratorFramework client;
     //zookeeper根路径节点
     private static final String ROOT_PATH = "MyRPC";
-    private static final String RETRY = "CanRetry";//重试白名单
+    //zookeeper地址
+    private static final String REGISTRY_ADDRESS = "127.0.0.1:2181";
     //serviceCache
     private ServiceCache cache;
+    //按服务监听注册中心
+    private watchZK watcher;
+    //本地快照文件
+    private RegistrySnapshotStore snapshotStore;
 
-    private final LoadBalance loadBalance = new ConsistencyHashBalance();
+    //负载均衡策略，由配置项 rpc.loadBalance 指定
+    private final LoadBalance loadBalance = LoadBalance.getLoadBalance(RpcApplication.getRpcConfig().getLoadBalance());
+    //异常实例检测，连续调用异常的地址暂时不参与负载均衡
+    private final OutlierDetector outlierDetector = new OutlierDetector();
 
     //负责zookeeper客户端的初始化，并与zookeeper服务端进行连接
     public ZKServiceCenter() throws InterruptedException {
@@ -42,81 +58,160 @@ public class ZKServiceCenter implements ServiceCenter {
         // sessionTimeoutMs 会话超时时间，单位毫秒
         // zk还会根据minSessionTimeout与maxSessionTimeout两个参数重新调整最后的超时值。默认分别为tickTime 的2倍和20倍
         // 使用心跳监听状态
-        this.client = CuratorFrameworkFactory.builder().connectString("127.0.0.1:2181")
+        this.client = CuratorFrameworkFactory.builder().connectString(REGISTRY_ADDRESS)
                 .sessionTimeoutMs(40000).retryPolicy(policy).namespace(ROOT_PATH).build();
         this.client.start();
         log.info("Zookeeper 连接成功");
         //初始化本地缓存
         cache = new ServiceCache();
-        //加入zookeeper事件监听器
-        watchZK watcher = new watchZK(client, cache);
-        //监听启动
-        watcher.watchToUpdate(ROOT_PATH);
+        snapshotStore = new RegistrySnapshotStore(getSnapshotFile(), REGISTRY_ADDRESS + "/" + ROOT_PATH,
+                () -> new RegistryData(cache.getAll()));
+        //提供者上下线时通知负载均衡，并更新本地快照文件
+        cache.addListener(new ServiceChangeListener() {
+            @Override
+            public void onInstanceAdded(String serviceName, String address) {
+                loadBalance.addNode(address);
+                snapshotStore.requestSave();
+            }
+
+            @Override
+            public void onInstanceRemoved(String serviceName, String address) {
+                //负载均衡和离群检测按地址统计，该地址仍在提供其他服务时保留
+                if (!cache.containsAddress(address)) {
+                    loadBalance.delNode(address);
+                    outlierDetector.remove(address);
+                }
+                snapshotStore.requestSave();
+            }
+
+            @Override
+            public void onInstanceUpdated(String serviceName, String address) {
+                snapshotStore.requestSave();
+            }
+        });
+        //先用快照文件中的数据，第一次调用不必等待zookeeper；开始监听后以注册中心为准
+        RegistryData registryData = snapshotStore.load();
+        registryData.getServices().forEach((serviceName, addresses) ->
+                addresses.forEach((address, retryableMethods) -> cache.addServiceToCache(serviceName, address, retryableMethods)));
+        //zookeeper事件监听器，服务第一次被调用时才开始监听
+        watcher = new watchZK(client, cache);
     }
 
     //根据服务名（接口名）返回地址
     @Override
     public InetSocketAddress serviceDiscovery(RpcRequest request) {
+        return serviceDiscovery(request, null);
+    }
+
+    @Override
+    public InetSocketAddress serviceDiscovery(RpcRequest request, Object hashKey) {
+        return serviceDiscovery(request, hashKey, Collections.emptySet());
+    }
+
+    @Override
+    public InetSocketAddress serviceDiscovery(RpcRequest request, Object hashKey, Set<InetSocketAddress> excluded) {
         String serviceName = request.getInterfaceName();
         try {
+            //确保该服务处于监听中
+            watcher.watch(serviceName);
             //先从本地缓存中找
-            List<String> addressList = cache.getServiceListFromCache(serviceName);
+            ServiceSnapshot snapshot = cache.getSnapshot(serviceName);
             //如果找不到，再去zookeeper中找
-            if (CollectionUtils.isEmpty(addressList)) {
-                addressList = client.getChildren().forPath("/" + serviceName);//不存在返回空列表
-                // 如果本地缓存中没有该服务名的地址列表，则添加
-                List<String> cachedAddresses = cache.getServiceListFromCache(serviceName);
-                if (cachedAddresses == null || cachedAddresses.isEmpty()) {
-                    // 假设 addServiceToCache 方法可以处理单个地址
-                    for (String address : addressList) {
-                        cache.addServiceToCache(serviceName, address);
-                    }
+            if (snapshot.isEmpty()) {
+                List<String> addressList = client.getChildren().forPath("/" + serviceName);//不存在返回空列表
+                // 已存在的地址会被忽略，与监听线程并发写入也不会重复
+                for (String address : addressList) {
+                    cache.addServiceToCache(serviceName, address, getRetryableMethods(serviceName, address));
                 }
+                snapshot = cache.getSnapshot(serviceName);
             }
-            if (addressList.isEmpty()) {
+            if (snapshot.isEmpty()) {
                 log.warn("未找到服务：{}", serviceName);
                 return null;
             }
-            // 负载均衡得到地址
-            String address = loadBalance.balance(addressList);
-            return parseAddress(address);
+            // 去掉被摘除的异常实例后负载均衡得到地址，快照中已经是解析好的地址
+            List<String> candidates = outlierDetector.filter(serviceName, snapshot.getAddresses());
+            String address = excluded.isEmpty()
+                    ? loadBalance.balance(serviceName, candidates, hashKey)
+                    : loadBalance.balance(serviceName, candidates, hashKey, getBalanceKeys(excluded));
+            return snapshot.getSocketAddress(address);
         } catch (Exception e) {
             log.error("服务发现失败，服务名：{}，异常：{}", serviceName, e);
         }
         return null;
     }
-    /*——————————————————————————————————————————————————————————————————————————*/
-    //todo：缓存一致性待改进
-    //保证线程安全使用CopyOnWriteArraySet
-    private Set<String> retryServiceCache = new CopyOnWriteArraySet<>();
-    //写一个白名单缓存，优化性能
+    //可重试的方法由各提供者写在自己的地址节点上，监听时一并缓存，这里只查内存
     @Override
     public boolean checkRetry(InetSocketAddress serviceAddress, String methodSignature) {
-        if (retryServiceCache.isEmpty()) {
-            try {
-                CuratorFramework rootClient = client.usingNamespace(RETRY);//连接白名单节点
-                List<String> retryableMethods = rootClient.getChildren().forPath("/" + getServiceAddress(serviceAddress));
-                retryServiceCache.addAll(retryableMethods);
-            } catch (Exception e) {
-                log.error("检查重试失败，方法签名：{}", methodSignature, e);
-            }
+        //签名格式为 接口名#方法名(参数类型)，接口名即服务名
+        return checkRetry(methodSignature.substring(0, methodSignature.indexOf('#')), serviceAddress, methodSignature);
+    }
+
+    @Override
+    public boolean checkRetry(String serviceName, InetSocketAddress serviceAddress, String methodSignature) {
+        return serviceAddress != null && cache.getSnapshot(serviceName).isRetryable(serviceAddress, methodSignature);
+    }
+
+    @Override
+    public void onRequestStart(InetSocketAddress serviceAddress) {
+        if (serviceAddress != null) {
+            loadBalance.onRequestStart(getBalanceKey(serviceAddress));
+        }
+    }
+
+    @Override
+    public void onRequestComplete(InetSocketAddress serviceAddress, long latencyNanos, CallOutcome outcome) {
+        if (serviceAddress != null) {
+            String key = getBalanceKey(serviceAddress);
+            //被拒绝的请求也让负载均衡少选该实例，但不计入异常实例检测
+            loadBalance.onRequestComplete(key, latencyNanos, outcome.isSuccess());
+            outlierDetector.onRequestComplete(key, latencyNanos, outcome);
         }
-        return retryServiceCache.contains(methodSignature);
     }
-    /*——————————————————————————————————————————————————————————————————————————*/
+
+    @Override
+    public void addServiceChangeListener(ServiceChangeListener listener) {
+        cache.addListener(listener);
+    }
+
     @Override
     public void close() {
+        watcher.close();
+        snapshotStore.close();
         client.close();
     }
 
-    // 将InetSocketAddress解析为格式为ip:port的字符串
-    private String getServiceAddress(InetSocketAddress serverAddress){
-        return serverAddress.getHostName() + ":" + serverAddress.getPort();
+    //快照文件路径：配置项 rpc.registrySnapshotFile，默认 ~/.krpc/registry-<注册中心地址>.snapshot
+    //同一用户下连接不同注册中心的进程使用不同的文件
+    private Path getSnapshotFile() {
+        String configured = RpcApplication.getRpcConfig().getRegistrySnapshotFile();
+        if (configured != null && !configured.isBlank()) {
+            return Paths.get(configured);
+        }
+        String registry = (REGISTRY_ADDRESS + "_" + ROOT_PATH).replaceAll("[^A-Za-z0-9.-]", "_");
+        return Paths.get(System.getProperty("user.home"), ".krpc", "registry-" + registry + ".snapshot");
+    }
+
+    //读取地址节点上发布的可重试方法，节点已不存在时返回null
+    private Set<String> getRetryableMethods(String serviceName, String address) {
+        try {
+            return ServiceMetadataUtil.decodeRetryableMethods(client.getData().forPath("/" + serviceName + "/" + address));
+        } catch (Exception e) {
+            log.warn("读取服务{}地址{}的节点数据失败: {}", serviceName, address, e.toString());
+            return null;
+        }
+    }
+
+    private Set<String> getBalanceKeys(Set<InetSocketAddress> addresses) {
+        Set<String> keys = new HashSet<>();
+        for (InetSocketAddress address : addresses) {
+            keys.add(getBalanceKey(address));
+        }
+        return keys;
     }
 
-    // 字符串解析为地址
-    private InetSocketAddress parseAddress(String address) {
-        String[] result = address.split(":");
-        return new InetSocketAddress(result[0], Integer.parseInt(result[1]));
+    // 与注册中心中的地址字符串保持一致，不触发反向域名解析
+    private String getBalanceKey(InetSocketAddress serverAddress) {
+        return serverAddress.getHostString() + ":" + serverAddress.getPort();
     }
 }
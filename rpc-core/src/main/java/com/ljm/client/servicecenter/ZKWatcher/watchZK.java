@@ -2,41 +2,85 @@ package com.ljm.client.servicecenter.ZKWatcher;
 
 
 import com.ljm.client.cache.ServiceCache;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import com.ljm.utils.ServiceMetadataUtil;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.curator.framework.CuratorFramework;
 import org.apache.curator.framework.recipes.cache.ChildData;
 import org.apache.curator.framework.recipes.cache.CuratorCache;
 import org.apache.curator.framework.recipes.cache.CuratorCacheListener;
 
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
 
 /**
  * @ClassName watchZK
  * @Description 节点监听
+ * 只监听消费者实际调用过的服务：第一次服务发现时为该服务建立监听，长时间未使用的服务释放监听和本地缓存
+ * 注册中心中其他服务、重试白名单节点的变化不会推送到本消费者
  * @Author ljm
  * @LastChangeDate 2025-7-02 10:37
  * @Version v5.0
  */
 @Slf4j
 public class watchZK {
+    //服务超过该时间未被调用则释放监听
+    private static final long IDLE_TIMEOUT_MS = TimeUnit.MINUTES.toMillis(10);
+    //空闲检查间隔
+    private static final long CHECK_INTERVAL_MS = TimeUnit.MINUTES.toMillis(1);
+
     // curator 提供的zookeeper客户端
     private CuratorFramework client;
     //本地缓存
     ServiceCache cache;
+    //服务名->该服务的监听
+    private final Map<String, ServiceWatch> watches = new ConcurrentHashMap<>();
+    //定时释放空闲的监听
+    private final ScheduledExecutorService evictor =
+            Executors.newSingleThreadScheduledExecutor(new DefaultThreadFactory("zk-watch-evictor", true));
 
 
     public watchZK(CuratorFramework client, ServiceCache cache) {
         this.client = client;
         this.cache = cache;
+        evictor.scheduleWithFixedDelay(this::evictIdle, CHECK_INTERVAL_MS, CHECK_INTERVAL_MS, TimeUnit.MILLISECONDS);
     }
 
     /**
-     * 监听当前节点和子节点的 更新，创建，删除
+     * 确保服务处于监听中，并刷新最近使用时间
+     * 每次服务发现都会调用，已监听时只是一次map查找
      *
-     * @param path
+     * @param serviceName 服务名
      */
-    public void watchToUpdate(String path) throws InterruptedException {
+    public void watch(String serviceName) {
+        ServiceWatch watch = watches.get(serviceName);
+        if (watch == null) {
+            watch = watches.computeIfAbsent(serviceName, this::startWatch);
+        }
+        watch.lastAccess = System.currentTimeMillis();
+    }
+
+    //关闭所有监听
+    public void close() {
+        evictor.shutdownNow();
+        for (ServiceWatch watch : watches.values()) {
+            watch.curatorCache.close();
+        }
+        watches.clear();
+    }
+
+    /**
+     * 监听服务节点下子节点的 更新，创建，删除
+     */
+    private ServiceWatch startWatch(String serviceName) {
         //curatorCache是curaotr提供的一个用于监听节点变化的api
-        CuratorCache curatorCache = CuratorCache.build(client, "/");
+        CuratorCache curatorCache = CuratorCache.build(client, "/" + serviceName);
         //注册监听器
         curatorCache.listenable().addListener(new CuratorCacheListener() {
             @Override
@@ -46,17 +90,16 @@ public class watchZK {
                 // 第三个参数：节点更新后的状态、数据
                 // 创建节点时：节点刚被创建，不存在 更新前节点 ，所以第二个参数为 null
                 // 删除节点时：节点被删除，不存在 更新后节点 ，所以第三个参数为 null
-                // 节点创建时没有赋予值 create /curator/app1 只创建节点，在这种情况下，更新前节点的 data 为 null，获取不到更新前节点的数据
                 switch (type.name()) {
                     case "NODE_CREATED": // 监听器第一次执行时节点存在也会触发此事件
-                        // /MyRPC/UserService/127.0.0.1:8888
+                        // /UserService/127.0.0.1:8888
                         String[] pathList = pasrePath(childData1);
                         if (pathList.length <= 2) break;
                         else {
-                            String serviceName = pathList[1];
                             String address = pathList[2];
-                            //将新注册的服务加入到本地缓存中
-                            cache.addServiceToCache(serviceName, address);
+                            //将新注册的服务及其可重试方法加入到本地缓存中
+                            cache.addServiceToCache(serviceName, address,
+                                    ServiceMetadataUtil.decodeRetryableMethods(childData1.getData()));
                             log.info("节点创建：服务名称 {} 地址 {}", serviceName, address);
                         }
                         break;
@@ -68,16 +111,18 @@ public class watchZK {
                         }
                         String[] oldPathList = pasrePath(childData);
                         String[] newPathList = pasrePath(childData1);
-                        cache.replaceServiceAddress(oldPathList[1], oldPathList[2], newPathList[2]);
-                        log.info("节点更新：服务名称 {} 地址从 {} 更新为 {}", oldPathList[1], oldPathList[2], newPathList[2]);
+                        if (oldPathList.length <= 2 || newPathList.length <= 2) break;
+                        cache.replaceServiceAddress(serviceName, oldPathList[2], newPathList[2]);
+                        //节点数据是提供者发布的可重试方法
+                        cache.addServiceToCache(serviceName, newPathList[2],
+                                ServiceMetadataUtil.decodeRetryableMethods(childData1.getData()));
+                        log.info("节点更新：服务名称 {} 地址从 {} 更新为 {}", serviceName, oldPathList[2], newPathList[2]);
                         break;
                     case "NODE_DELETED": // 节点删除
                         String[] pathList_d = pasrePath(childData);
                         if (pathList_d.length <= 2) break;
                         else {
-                            String serviceName = pathList_d[1];
                             String address = pathList_d[2];
-                            //将新注册的服务加入到本地缓存中
                             cache.delete(serviceName, address);
                             log.info("节点删除：服务名称 {} 地址 {}", serviceName, address);
                         }
@@ -86,9 +131,39 @@ public class watchZK {
                         break;
                 }
             }
+
+            //首次同步完成：本地缓存里可能有从快照文件加载、但已经下线的地址，以注册中心为准清理
+            @Override
+            public void initialized() {
+                Set<String> liveAddresses = new HashSet<>();
+                curatorCache.stream().forEach(data -> {
+                    String[] pathList = pasrePath(data);
+                    if (pathList.length > 2) {
+                        liveAddresses.add(pathList[2]);
+                    }
+                });
+                cache.retainAddresses(serviceName, liveAddresses);
+                log.info("服务 {} 监听初始化完成，当前提供者数量: {}", serviceName, liveAddresses.size());
+            }
         });
         //开启监听
         curatorCache.start();
+        log.info("开始监听服务 {}", serviceName);
+        return new ServiceWatch(curatorCache);
+    }
+
+    //释放长时间未调用的服务：关闭监听并清除本地缓存，下次调用时重新拉取并监听
+    //清除缓存时各地址按下线通知监听器，负载均衡、熔断器、离群检测和客户端随之释放该服务的状态
+    private void evictIdle() {
+        long now = System.currentTimeMillis();
+        for (Map.Entry<String, ServiceWatch> entry : watches.entrySet()) {
+            ServiceWatch watch = entry.getValue();
+            if (now - watch.lastAccess > IDLE_TIMEOUT_MS && watches.remove(entry.getKey(), watch)) {
+                watch.curatorCache.close();
+                cache.removeService(entry.getKey());
+                log.info("服务 {} 长时间未使用，已释放监听", entry.getKey());
+            }
+        }
     }
 
     //解析节点对应地址
@@ -103,4 +178,14 @@ public class watchZK {
         //按照格式 ，读取
         return path.split("/");
     }
+
+    //单个服务的监听及最近使用时间
+    private static class ServiceWatch {
+        private final CuratorCache curatorCache;
+        private volatile long lastAccess = System.currentTimeMillis();
+
+        ServiceWatch(CuratorCache curatorCache) {
+            this.curatorCache = curatorCache;
+        }
+    }
 }
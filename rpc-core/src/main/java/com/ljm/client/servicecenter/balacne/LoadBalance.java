@@ -1,7 +1,14 @@
 package com.ljm.client.servicecenter.balacne;
 
 
+import com.ljm.client.servicecenter.balacne.impl.ConsistencyHashBalance;
+import com.ljm.client.servicecenter.balacne.impl.P2CEwmaLoadBalance;
+import com.ljm.client.servicecenter.balacne.impl.RandomLoadBalance;
+import com.ljm.client.servicecenter.balacne.impl.RoundLoadBalance;
+
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 
 /**
  * @InterfaceName LoadBalance
@@ -14,7 +21,47 @@ import java.util.List;
 public interface LoadBalance {
     String balance(List<String> addressList);
 
+    //带服务名和哈希key的选择，不关心这两个参数的实现沿用 balance(addressList)
+    default String balance(String serviceName, List<String> addressList, Object hashKey) {
+        return balance(addressList);
+    }
+
+    //重试换实例时使用：跳过已经失败过的地址再选择，地址全部失败过时仍在完整列表中选择
+    default String balance(String serviceName, List<String> addressList, Object hashKey, Set<String> excluded) {
+        if (excluded.isEmpty()) {
+            return balance(serviceName, addressList, hashKey);
+        }
+        List<String> rest = new ArrayList<>(addressList);
+        rest.removeAll(excluded);
+        return balance(serviceName, rest.isEmpty() ? addressList : rest, hashKey);
+    }
+
     void addNode(String node);
 
     void delNode(String node);
+
+    //请求发往该地址前调用，感知节点状态的负载均衡据此统计在途请求数
+    default void onRequestStart(String address) {
+    }
+
+    //请求结束后调用，上报耗时和是否成功
+    default void onRequestComplete(String address, long latencyNanos, boolean success) {
+    }
+
+    //根据配置名称获取负载均衡实现，未知名称使用一致性哈希
+    static LoadBalance getLoadBalance(String name) {
+        if (name == null) {
+            return new ConsistencyHashBalance();
+        }
+        switch (name) {
+            case "Random":
+                return new RandomLoadBalance();
+            case "Round":
+                return new RoundLoadBalance();
+            case "P2CEwma":
+                return new P2CEwmaLoadBalance();
+            default:
+                return new ConsistencyHashBalance();
+        }
+    }
 }
@@ -7,10 +7,17 @@ package com.ljm.client.servicecenter.balacne.impl;
  * @Author ljm
  */
 
+import com.ljm.RpcApplication;
 import com.ljm.client.servicecenter.balacne.LoadBalance;
 import lombok.extern.slf4j.Slf4j;
 
-import java.util.*;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * 一致性哈希算法本质上也是一种取模算法。只不过普通取模算法是按服务器数量取模，而一致性哈希算法是对固定值2^32取模，
@@ -20,97 +27,85 @@ import java.util.*;
  * 3. 将服务发来的数据请求使用哈希算法算出对应的哈希值；
  * 4. 将计算的哈希值映射到哈希环上，同时沿圆环顺时针方向查找，遇到的第一台服务器就是所对应的处理请求服务器。
  * 5. 当增加或者删除一台服务器时，受影响的数据仅仅是新添加或删除的服务器到其环空间中前一台的服务器（也就是顺着逆时针方向遇到的第一台服务器）之间的数据，其他都不会受到影响。
+ *
+ * 实现：每个服务一个不可变的哈希环（有序int数组 + 对应的真实节点数组），成员变化时整体重建后替换
+ * 查找只做一次二分查找，不加锁；哈希key取自方法上标注了 @HashKey 的参数，相同key总是落到同一节点
  */
 @Slf4j
 public class ConsistencyHashBalance implements LoadBalance {
 
-    // 虚拟节点的个数
-    private static final int VIRTUAL_NUM = 5;
+    // 默认每个真实节点的虚拟节点个数，可通过 rpc.virtualNodes 配置
+    private static final int DEFAULT_VIRTUAL_NUM = 160;
 
-    // 虚拟节点分配，key是hash值，value是虚拟节点服务器名称
-    private SortedMap<Integer, String> shards = new TreeMap<Integer,String>();
+    private final int virtualNum;
 
-    // 真实节点列表
-    private List<String> realNodes = new LinkedList<>();
+    // 服务名->该服务当前的哈希环
+    private final Map<String, Ring> rings = new ConcurrentHashMap<>();
 
-    // 获取虚拟节点的个数
-    public static int getVirtualNum() {
-        return VIRTUAL_NUM;
+    public ConsistencyHashBalance() {
+        Integer configured = RpcApplication.getRpcConfig().getVirtualNodes();
+        this.virtualNum = configured != null && configured > 0 ? configured : DEFAULT_VIRTUAL_NUM;
     }
 
-    // 初始化虚拟节点
-    public void init(List<String> serviceList) {
-        for (String server : serviceList) {
-            realNodes.add(server);
-            log.info("真实节点[{}] 被添加", server);
-            for (int i = 0; i < VIRTUAL_NUM; i++) {
-                String virtualNode = server + "&&VN" + i;
-                int hash = getHash(virtualNode);
-                shards.put(hash, virtualNode);
-                log.info("虚拟节点[{}] hash:{}，被添加", virtualNode, hash);
-            }
+    public ConsistencyHashBalance(int virtualNum) {
+        this.virtualNum = virtualNum;
+    }
+
+    @Override
+    public String balance(List<String> addressList) {
+        return balance("", addressList, null);
+    }
+
+    @Override
+    public String balance(String serviceName, List<String> addressList, Object hashKey) {
+        // 如果 addressList 为空或 null，抛出 IllegalArgumentException
+        if (addressList == null || addressList.isEmpty()) {
+            throw new IllegalArgumentException("Address list cannot be null or empty");
         }
+        //没有指定哈希key时随机落点，相当于按虚拟节点分布的随机负载均衡
+        return getRing(serviceName, addressList).get(getHash(hashKey));
     }
 
     /**
-     * 获取被分配的节点名
-     *
-     * @param node 请求的节点（通常是请求的唯一标识符）
-     * @return 负责该请求的真实节点名称
+     * 重试时沿哈希环顺时针找下一个没有失败过的节点，与该节点下线后这个key会落到的节点相同
+     * 仍使用完整地址列表的哈希环，不会因为排除了部分地址而重建
      */
-    public synchronized String getServer(String node, List<String> serviceList) {
-        if (shards.isEmpty()) {
-            init(serviceList);  // 初始化，如果shards为空
+    @Override
+    public String balance(String serviceName, List<String> addressList, Object hashKey, Set<String> excluded) {
+        if (addressList == null || addressList.isEmpty()) {
+            throw new IllegalArgumentException("Address list cannot be null or empty");
         }
+        return getRing(serviceName, addressList).get(getHash(hashKey), excluded);
+    }
 
-        int hash = getHash(node);
-        Integer key = null;
-
-        SortedMap<Integer, String> subMap = shards.tailMap(hash);
-        if (subMap.isEmpty()) {
-            key = shards.firstKey();  // 如果没有大于该hash的节点，则返回最小的hash值
-        } else {
-            key = subMap.firstKey();
+    private Ring getRing(String serviceName, List<String> addressList) {
+        Ring ring = rings.get(serviceName);
+        //服务提供者上下线后重建哈希环，并发重建时后完成的覆盖先完成的，结果相同
+        if (ring == null || !ring.hasSameMembers(addressList)) {
+            ring = new Ring(addressList, virtualNum);
+            rings.put(serviceName, ring);
+            log.info("服务 {} 的哈希环已重建，真实节点: {}，虚拟节点: {}", serviceName, addressList.size(), ring.hashes.length);
         }
+        return ring;
+    }
 
-        String virtualNode = shards.get(key);
-        return virtualNode.substring(0, virtualNode.indexOf("&&"));
+    static int getHash(Object hashKey) {
+        return hashKey != null ? getHash(hashKey.toString()) : ThreadLocalRandom.current().nextInt(Integer.MAX_VALUE);
     }
 
-    /**
-     * 添加节点
-     *
-     * @param node 新加入的节点
-     */
+    @Override
     public void addNode(String node) {
-        if (!realNodes.contains(node)) {
-            realNodes.add(node);
-            log.info("真实节点[{}] 上线添加", node);
-            for (int i = 0; i < VIRTUAL_NUM; i++) {
-                String virtualNode = node + "&&VN" + i;
-                int hash = getHash(virtualNode);
-                shards.put(hash, virtualNode);
-                log.info("虚拟节点[{}] hash:{}，被添加", virtualNode, hash);
-            }
-        }
+        //哈希环在服务地址列表变化时自动重建
+        log.info("真实节点[{}] 上线添加", node);
     }
 
-    /**
-     * 删除节点
-     *
-     * @param node 被移除的节点
-     */
+    @Override
     public void delNode(String node) {
-        if (realNodes.contains(node)) {
-            realNodes.remove(node);
-            log.info("真实节点[{}] 下线移除", node);
-            for (int i = 0; i < VIRTUAL_NUM; i++) {
-                String virtualNode = node + "&&VN" + i;
-                int hash = getHash(virtualNode);
-                shards.remove(hash);
-                log.info("虚拟节点[{}] hash:{}，被移除", virtualNode, hash);
-            }
-        }
+        log.info("真实节点[{}] 下线移除", node);
+    }
+
+    public int getVirtualNum() {
+        return virtualNum;
     }
 
     /**
@@ -132,220 +127,86 @@ public class ConsistencyHashBalance implements LoadBalance {
         return hash;
     }
 
-    @Override
-    public String balance(List<String> addressList) {
-        // 如果 addressList 为空或 null，抛出 IllegalArgumentException
-        if (addressList == null || addressList.isEmpty()) {
-            throw new IllegalArgumentException("Address list cannot be null or empty");
-        }
-
-        // 使用UUID作为请求的唯一标识符来进行一致性哈希
-        String random = UUID.randomUUID().toString();
-        return getServer(random, addressList);
-    }
-    public SortedMap<Integer, String> getShards() {
-        return shards;
-    }
-
-    public List<String> getRealNodes() {
-        return realNodes;
-    }
     @Override
     public String toString() {
         return "ConsistencyHash";
     }
-}
-
-
-
-
-
-//todo 以下代码并发时存在空指针异常，待优化
-/*import com.ljm.client.servicecenter.balacne.LoadBalance;
-import lombok.extern.slf4j.Slf4j;
-
-import java.util.*;
-import java.util.concurrent.ConcurrentSkipListMap;
-import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
-
-@Slf4j
-public class ConsistencyHashBalance implements LoadBalance {
-
-    // 虚拟节点的目的是提高负载均衡的均匀性
-    private static final int VIRTUAL_NUM = 5;
-
-    // 虚拟节点分配，key是hash值，value是虚拟节点服务器名称,使用线程安全的map   跳表支持有序，且范围查询方便
-    private final ConcurrentSkipListMap<Integer, String> virtualnodes = new ConcurrentSkipListMap<>();
-
-    // 真实节点列表
-    private final List<String> realNodes = new CopyOnWriteArrayList<>();
-    //读写锁
-    private final ReadWriteLock lock = new ReentrantReadWriteLock();
-
-    // 获取虚拟节点的个数
-    public static int getVirtualNum() {
-        return VIRTUAL_NUM;
-    }
-
-    // 初始化虚拟节点
-    public void init(List<String> serviceList) {
-        if (serviceList == null || serviceList.isEmpty()) {
-         return;
-        }
-        //上锁
-        lock.writeLock().lock();
-        try {
-            //清空现有节点
-            virtualnodes.clear();
-            realNodes.clear();
 
-            for (String server : serviceList) {
-                realNodes.add(server);
-                log.info("真实节点[{}] 被添加", server);
-                for (int i = 0; i < VIRTUAL_NUM; i++) {
-                    String virtualNode = server + "&&VN" + i;
-                    int hash = getHash(virtualNode);
-                    virtualnodes.put(hash, virtualNode);
-                    log.info("虚拟节点[{}] hash:{}，被添加", virtualNode, hash);
+    //不可变的哈希环，构建完成后只读，可以被多个线程同时查找
+    static class Ring {
+        //虚拟节点的hash，升序
+        private final int[] hashes;
+        //与hashes一一对应的真实节点
+        private final String[] nodes;
+        //真实节点集合，用于判断成员是否变化
+        private final Set<String> members;
+        //构建时使用的地址列表；服务缓存的快照不可变，同一个列表对象说明成员没有变化
+        private final List<String> source;
+
+        Ring(List<String> addressList, int virtualNum) {
+            source = addressList;
+            members = new HashSet<>(addressList);
+            long[] entries = new long[members.size() * virtualNum];
+            String[] memberArray = members.toArray(new String[0]);
+            //成员排序，同一组成员不论列表顺序如何都得到相同的环
+            Arrays.sort(memberArray);
+            int n = 0;
+            for (int m = 0; m < memberArray.length; m++) {
+                for (int i = 0; i < virtualNum; i++) {
+                    int hash = getHash(memberArray[m] + "&&VN" + i);
+                    //高32位存hash用于排序，低32位存节点下标
+                    entries[n++] = ((long) hash << 32) | m;
                 }
             }
-        } finally {
-            //释放锁
-           lock.writeLock().unlock();
-        }
-    }
-     *//**
- * 获取被分配的节点名
- *
- * @param node 请求的节点（通常是请求的唯一标识符）
- * @return 负责该请求的真实节点名称
- *//*
-
-    public String getServer(String node, List<String> serviceList) {
-        if (virtualnodes.isEmpty()) {
-            log.warn("虚拟节点列表为空，请先初始化");
-            return null;
-        }
-
-        int hash = getHash(node);
-        // 找到大于等于给定hash的最大键值对，如果没有则返回null
-        Map.Entry<Integer, String> entry = virtualnodes.ceilingEntry(hash);
-        if(entry == null) {
-            // 如果没有找到，返回第一个节点（哈希闭环）
-            entry = virtualnodes.firstEntry();
-        }
-        String virtualnode = entry.getValue();
-        return virtualnode.substring(0, virtualnode.indexOf("&&"));
-    }
-
-    *//**
- * 添加节点
- *
- * @param node 新加入的节点
- *//*
-
-    public void addNode(String node) {
-        if (node == null || realNodes.contains(node)) {
-            return;
-        }
-
-        lock.writeLock().lock();
-        try {
-            realNodes.add(node);
-            log.info("真实节点[{}] 上线添加", node);
-            for (int i = 0; i < VIRTUAL_NUM; i++) {
-                String virtualNode = node + "&&VN" + i;
-                int hash = getHash(virtualNode);
-                virtualnodes.put(hash, virtualNode);
-                log.info("虚拟节点[{}] hash:{}，被添加", virtualNode, hash);
+            Arrays.sort(entries);
+            hashes = new int[n];
+            nodes = new String[n];
+            for (int i = 0; i < n; i++) {
+                hashes[i] = (int) (entries[i] >>> 32);
+                nodes[i] = memberArray[(int) entries[i]];
             }
-        } finally {
-            lock.writeLock().unlock();
-        }
-    }
-     *//**
- * 删除节点
- *
- * @param node 被移除的节点
- *//*
-
-    public void delNode(String node) {
-        if (node == null || !realNodes.contains(node)) {
-            return;
         }
 
-        lock.writeLock().lock();
-        try {
-            realNodes.remove(node);
-            log.info("真实节点[{}] 下线移除", node);
-            for (int i = 0; i < VIRTUAL_NUM; i++) {
-                String virtualNode = node + "&&VN" + i;
-                int hash = getHash(virtualNode);
-                virtualnodes.remove(hash);
-                log.info("虚拟节点[{}] hash:{}，被移除", virtualNode, hash);
+        boolean hasSameMembers(List<String> addressList) {
+            if (addressList == source) {
+                return true;
             }
-        } finally {
-            lock.writeLock().unlock();
+            if (addressList.size() != members.size()) {
+                return false;
+            }
+            for (String address : addressList) {
+                if (!members.contains(address)) {
+                    return false;
+                }
+            }
+            return true;
         }
-    }
-    *//*
- * FNV1_32_HASH算法
- *//*
 
-    private static int getHash(String str) {
-        final int p = 16777619;
-        int hash = (int) 2166136261L;
-        for (int i = 0; i < str.length(); i++)
-            hash = (hash ^ str.charAt(i)) * p;
-        hash += hash << 13;
-        hash ^= hash >> 7;
-        hash += hash << 3;
-        hash ^= hash >> 17;
-        hash += hash << 5;
-        // 如果算出来的值为负数则取其绝对值
-        if (hash < 0)
-            hash = Math.abs(hash);
-        return hash;
-    }
-
-    @Override
-    public String balance(List<String> addressList) {
-        // 如果 addressList 为空或 null，抛出 IllegalArgumentException
-        if (addressList == null || addressList.isEmpty()) {
-            throw new IllegalArgumentException("Address list cannot be null or empty");
-        }
-        // 先使用读锁检查是否需要刷新
-        lock.readLock().lock();
-        boolean needRefresh;
-        try {
-            // 优化：通过比较大小和包含关系来判断，避免创建HashSet
-            needRefresh = realNodes.size() != addressList.size() ||
-                    !addressList.containsAll(realNodes) ||
-                    !realNodes.containsAll(addressList);
-        } finally {
-            lock.readLock().unlock();
+        //顺时针找到第一个hash不小于给定值的虚拟节点，越过末尾则回到环首
+        String get(int hash) {
+            int index = Arrays.binarySearch(hashes, hash);
+            if (index < 0) {
+                index = -index - 1;
+            }
+            if (index == hashes.length) {
+                index = 0;
+            }
+            return nodes[index];
         }
 
-
-        if (needRefresh) {
-            init(addressList);
+        //从落点开始顺时针跳过被排除的节点，全部被排除时返回落点对应的节点
+        String get(int hash, Set<String> excluded) {
+            int index = Arrays.binarySearch(hashes, hash);
+            if (index < 0) {
+                index = -index - 1;
+            }
+            for (int i = 0; i < nodes.length; i++) {
+                String node = nodes[(index + i) % nodes.length];
+                if (!excluded.contains(node)) {
+                    return node;
+                }
+            }
+            return get(hash);
         }
-        // 使用UUID作为请求的唯一标识符来进行一致性哈希
-        // 真实生产环境需要用客户端ip进行映射
-        String random = UUID.randomUUID().toString();
-        return getServer(random, addressList);
-    }
-    public SortedMap<Integer, String> getVirtualnodes() {
-        return virtualnodes;
     }
-
-    public List<String> getRealNodes() {
-        return realNodes;
-    }
-    @Override
-    public String toString() {
-        return "ConsistencyHash";
-    }
-}*/
+}
@@ -0,0 +1,152 @@
+package com.ljm.client.servicecenter.balacne.impl;
+
+
+import com.ljm.client.servicecenter.balacne.LoadBalance;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongSupplier;
+
+/**
+ * @ClassName P2CEwmaLoadBalance
+ * @Description 两次随机选择 + 延迟EWMA
+ * 每个地址统计在途请求数和响应耗时的指数加权平均，每次随机挑两个地址，选代价低的一个
+ * 代价 = (EWMA耗时 + 1) * (在途请求数 + 1)，慢节点和积压请求多的节点自然分到更少流量
+ * 只比较两个候选，避免所有客户端同时涌向同一个"最好"的节点
+ * 每个节点的EWMA和观测时间作为一个不可变快照发布，选择时只读一次引用，不加锁
+ * @Author ljm
+ */
+@Slf4j
+public class P2CEwmaLoadBalance implements LoadBalance {
+    //EWMA衰减时间常数：距离上次观测越久，旧值权重越小
+    private static final double DECAY_NANOS = TimeUnit.SECONDS.toNanos(10);
+    //失败请求按至少1秒的耗时计入，让出错的节点快速降权，之后随时间衰减恢复
+    private static final long FAILURE_PENALTY_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    //key: ip:port
+    private final Map<String, NodeStats> stats = new ConcurrentHashMap<>();
+    private final LongSupplier clock;
+
+    public P2CEwmaLoadBalance() {
+        this(System::nanoTime);
+    }
+
+    P2CEwmaLoadBalance(LongSupplier clock) {
+        this.clock = clock;
+    }
+
+    @Override
+    public String balance(List<String> addressList) {
+        if (addressList == null || addressList.isEmpty()) {
+            throw new IllegalArgumentException("Address list cannot be null or empty");
+        }
+        int size = addressList.size();
+        if (size == 1) {
+            return addressList.get(0);
+        }
+        //随机挑选两个不同的地址
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(size);
+        int second = random.nextInt(size - 1);
+        if (second >= first) {
+            second++;
+        }
+        String a = addressList.get(first);
+        String b = addressList.get(second);
+        String selected = getStats(a).cost() <= getStats(b).cost() ? a : b;
+        log.debug("负载均衡在 {} 和 {} 中选择了: {}", a, b, selected);
+        return selected;
+    }
+
+    @Override
+    public void onRequestStart(String address) {
+        getStats(address).inflight.incrementAndGet();
+    }
+
+    @Override
+    public void onRequestComplete(String address, long latencyNanos, boolean success) {
+        //节点已移除时不再记录，避免为下线的地址重新创建统计数据
+        NodeStats nodeStats = stats.get(address);
+        if (nodeStats == null) {
+            return;
+        }
+        nodeStats.inflight.decrementAndGet();
+        nodeStats.observe(success ? latencyNanos : Math.max(latencyNanos, FAILURE_PENALTY_NANOS));
+    }
+
+    @Override
+    public void addNode(String node) {
+        //统计数据在第一次使用时创建
+        log.info("节点 {} 已加入负载均衡", node);
+    }
+
+    @Override
+    public void delNode(String node) {
+        stats.remove(node);
+        log.info("节点 {} 已从负载均衡中移除", node);
+    }
+
+    private NodeStats getStats(String address) {
+        return stats.computeIfAbsent(address, key -> new NodeStats(clock));
+    }
+
+    @Override
+    public String toString() {
+        return "P2CEwma";
+    }
+
+    //单个节点的统计数据
+    private static class NodeStats {
+        private final AtomicInteger inflight = new AtomicInteger();
+        private final LongSupplier clock;
+        //最近一次观测后的EWMA，新节点为0，在途请求数决定其代价
+        private final AtomicReference<Ewma> ewma;
+
+        NodeStats(LongSupplier clock) {
+            this.clock = clock;
+            this.ewma = new AtomicReference<>(new Ewma(0, clock.getAsLong()));
+        }
+
+        //读取时也按时间衰减：被降权后长时间没被选中的节点，代价会逐渐回落，重新获得试探流量
+        double cost() {
+            Ewma current = ewma.get();
+            double latency = current.value * Math.exp(-(clock.getAsLong() - current.updatedAt) / DECAY_NANOS);
+            return (latency + 1) * (Math.max(inflight.get(), 0) + 1);
+        }
+
+        //耗时变大时直接取新值，尽快避开变慢的节点；变小时按时间衰减慢慢恢复
+        void observe(long latencyNanos) {
+            long now = clock.getAsLong();
+            while (true) {
+                Ewma current = ewma.get();
+                double value;
+                if (latencyNanos > current.value) {
+                    value = latencyNanos;
+                } else {
+                    double weight = Math.exp(-(now - current.updatedAt) / DECAY_NANOS);
+                    value = current.value * weight + latencyNanos * (1 - weight);
+                }
+                if (ewma.compareAndSet(current, new Ewma(value, now))) {
+                    return;
+                }
+            }
+        }
+    }
+
+    //耗时EWMA（纳秒）及其更新时间，不可变
+    private static class Ewma {
+        private final double value;
+        private final long updatedAt;
+
+        Ewma(double value, long updatedAt) {
+            this.value = value;
+            this.updatedAt = updatedAt;
+        }
+    }
+}
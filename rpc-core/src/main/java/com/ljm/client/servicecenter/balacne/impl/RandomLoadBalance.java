@@ -29,7 +29,7 @@ public class RandomLoadBalance implements LoadBalance {
         }
 
         int choose = random.nextInt(addressList.size());
-        log.info("负载均衡选择了第 {} 号服务器，地址是：{}", choose, addressList.get(choose));
+        log.debug("负载均衡选择了第 {} 号服务器，地址是：{}", choose, addressList.get(choose));
         return addressList.get(choose);  // 返回选择的服务器地址
     }
 
@@ -46,4 +46,9 @@ public class RandomLoadBalance implements LoadBalance {
         addressList.remove(node);
         log.info("节点 {} 已从负载均衡中移除", node);
     }
+
+    @Override
+    public String toString() {
+        return "Random";
+    }
 }
@@ -33,7 +33,7 @@ public class RoundLoadBalance implements LoadBalance {
         int currentChoose = choose.getAndUpdate(i -> (i + 1) % addressList.size());
 
         String selectedServer = addressList.get(currentChoose);
-        log.info("负载均衡选择了服务器: {}", selectedServer);
+        log.debug("负载均衡选择了服务器: {}", selectedServer);
         return selectedServer;  // 返回被选择的服务器地址
     }
 
@@ -50,4 +50,9 @@ public class RoundLoadBalance implements LoadBalance {
         addressList.remove(node);
         log.info("节点 {} 已从负载均衡中移除", node);
     }
+
+    @Override
+    public String toString() {
+        return "Round";
+    }
 }
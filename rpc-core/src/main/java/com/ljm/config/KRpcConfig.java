@@ -46,5 +46,90 @@ public class KRpcConfig {
     private String serializer;
     //负载均衡
     private String loadBalance ;
+    //一致性哈希每个节点的虚拟节点数
+    private Integer virtualNodes;
+    //注册中心本地快照文件路径
+    private String registrySnapshotFile;
+    //调用超时时间（毫秒）
+    private Long timeout;
+    //业务线程数，为0时服务方法直接在IO线程执行
+    private Integer businessThreads;
+    //业务线程池队列长度
+    private Integer businessQueueSize;
+    //舱壁配置：接口名:线程数:队列长度，多个接口用逗号分隔
+    private String bulkheads;
+    //熔断统计窗口（毫秒）
+    private Long breakerWindowMs;
+    //熔断判断的最少请求数
+    private Integer breakerMinRequests;
+    //熔断的失败率阈值，0~1
+    private Double breakerFailureRate;
+    //慢调用耗时阈值（毫秒）
+    private Long breakerSlowCallMs;
+    //熔断的慢调用比例阈值，0~1
+    private Double breakerSlowCallRate;
+    //熔断开启持续时间（毫秒）
+    private Long breakerOpenMs;
+    //半开状态的探测请求数
+    private Integer breakerHalfOpenCalls;
+    //连续失败多少次摘除实例，0表示关闭
+    private Integer outlierConsecutiveErrors;
+    //异常检测的慢调用阈值（毫秒）
+    private Long outlierSlowCallMs;
+    //首次摘除时长（毫秒）
+    private Long outlierBaseEjectionMs;
+    //最长摘除时长（毫秒）
+    private Long outlierMaxEjectionMs;
+    //同一服务最多摘除的实例比例，0~1
+    private Double outlierMaxEjectionPercent;
+    //每次调用最多尝试次数（含第一次）
+    private Integer retryMaxAttempts;
+    //重试退避的基准时间（毫秒），每次重试翻倍
+    private Long retryBaseBackoffMs;
+    //重试退避的最长时间（毫秒）
+    private Long retryMaxBackoffMs;
+    //重试预算：重试次数占请求数的比例，0~1
+    private Double retryBudgetRatio;
+    //重试预算之外每秒至少允许的重试次数
+    private Integer retryMinPerSecond;
+    //每个接口的初始并发上限
+    private Integer concurrencyInitialLimit;
+    //并发上限的最小值
+    private Integer concurrencyMinLimit;
+    //并发上限的最大值
+    private Integer concurrencyMaxLimit;
+    //可容忍的延迟升高倍数，超过后开始收缩并发上限
+    private Double concurrencyRttTolerance;
+    //QPS限流规则：目标:每秒请求数[:突发容量]，目标为接口名或方法签名，多个规则用分号分隔
+    private String rateLimits;
+    //QPS限流算法：TokenBucket 或 SlidingWindow
+    private String rateLimitAlgorithm;
+    //是否对每个调用方分别限流
+    private Boolean rateLimitPerCaller;
+    //业务线程池排队延迟的目标值（毫秒），持续超过时判定为过载
+    private Long queueTargetMs;
+    //判定过载的观察周期（毫秒）
+    private Long queueIntervalMs;
+    //请求最长排队时间（毫秒），0表示只按请求的超时时间丢弃
+    private Long maxQueueTimeMs;
+    //合并flush：最多合并多少次flush后立即发送，0表示每条消息单独flush
+    private Integer flushBatchSize;
+    //网络传输实现：auto（Linux上优先epoll）、epoll、nio
+    private String transport;
+    //服务端IO线程数，0表示使用Netty默认值（CPU核数*2）
+    private Integer serverIoThreads;
+    //客户端IO线程数，0表示使用Netty默认值
+    private Integer clientIoThreads;
+    //是否开启TCP_NODELAY
+    private Boolean tcpNoDelay;
+    //服务端等待accept的连接队列长度
+    private Integer soBacklog;
+    //是否开启SO_REUSEPORT，在同一端口上绑定多个监听通道（仅epoll）
+    private Boolean reusePort;
+    //开启SO_REUSEPORT时的监听通道数
+    private Integer acceptors;
+    //写缓冲区低水位（字节）
+    private Integer writeBufferLowWaterMark;
+    //写缓冲区高水位（字节）
+    private Integer writeBufferHighWaterMark;
 }
-
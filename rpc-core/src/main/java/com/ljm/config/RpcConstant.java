@@ -17,4 +17,10 @@ public interface RpcConstant {
     //默认的服务版本号
     String DEFAULT_VERSION_DEFAULT = "1.0.0";
 
+    //默认的调用超时时间（毫秒）
+    long DEFAULT_TIMEOUT = 5000;
+
+    //默认最多合并多少次flush后立即发送
+    int DEFAULT_FLUSH_BATCH_SIZE = 256;
+
 }
\ No newline at end of file
@@ -0,0 +1,158 @@
+package com.ljm.server.bulkhead;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * @ClassName AdmissionQueue
+ * @Description 业务线程池的任务队列，出队时丢弃已经没有意义的请求
+ * 1. 已超过调用方截止时间或排队超过最长排队时间的请求直接丢弃，不再占用业务线程
+ * 2. CoDel：一个观察周期内的最小排队延迟都超过目标值，说明队列不是短暂的突发而是持续积压，判定为过载；
+ *    过载时改为后进先出，优先处理刚到达、还来得及返回的请求，排队超过两倍目标值的旧请求从队头丢弃，快速失败
+ * 只有实现了 DeadlineTask 的任务会被丢弃，其他任务照常执行
+ * @Author ljm
+ */
+@Slf4j
+public class AdmissionQueue extends LinkedBlockingDeque<Runnable> {
+    private final String name;
+    private final long targetNanos;
+    private final long intervalNanos;
+    private final long maxQueueNanos;
+    //过载时排队超过该值的请求被丢弃
+    private final long sloughNanos;
+    //判断排队时间用的时钟（纳秒），与任务的到达时间、截止时间一致；测试时可替换
+    private final LongSupplier clock;
+
+    //以下状态在出队时更新，由this保护
+    private long intervalEnd;
+    private long minDelay = Long.MAX_VALUE;
+    private volatile boolean overloaded;
+
+    public AdmissionQueue(String name, int capacity, AdmissionQueueConfig config) {
+        this(name, capacity, config, System::nanoTime);
+    }
+
+    AdmissionQueue(String name, int capacity, AdmissionQueueConfig config, LongSupplier clock) {
+        super(capacity);
+        this.name = name;
+        this.clock = clock;
+        this.targetNanos = TimeUnit.MILLISECONDS.toNanos(config.getTargetMs());
+        this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(config.getIntervalMs());
+        this.maxQueueNanos = TimeUnit.MILLISECONDS.toNanos(config.getMaxQueueTimeMs());
+        this.sloughNanos = targetNanos * 2;
+        this.intervalEnd = clock.getAsLong() + intervalNanos;
+    }
+
+    @Override
+    public Runnable take() throws InterruptedException {
+        while (true) {
+            if (overloaded) {
+                checkBacklog();
+            }
+            Runnable task = overloaded ? takeLast() : takeFirst();
+            if (admit(task)) {
+                return task;
+            }
+        }
+    }
+
+    @Override
+    public Runnable poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (true) {
+            if (overloaded) {
+                checkBacklog();
+            }
+            long remaining = deadline - System.nanoTime();
+            Runnable task = overloaded ? pollLast(remaining, TimeUnit.NANOSECONDS) : pollFirst(remaining, TimeUnit.NANOSECONDS);
+            if (task == null || admit(task)) {
+                return task;
+            }
+        }
+    }
+
+    public boolean isOverloaded() {
+        return overloaded;
+    }
+
+    //队列已经排空说明积压结束，立即恢复先进先出；否则丢弃队头排队过久的请求
+    private void checkBacklog() {
+        if (isEmpty()) {
+            onEmpty();
+        } else {
+            dropStaleHead();
+        }
+    }
+
+    private synchronized void onEmpty() {
+        if (overloaded) {
+            overloaded = false;
+            log.info("线程池 {} 积压已清空，切换为先进先出", name);
+        }
+        minDelay = Long.MAX_VALUE;
+        intervalEnd = clock.getAsLong() + intervalNanos;
+    }
+
+    //后进先出时队头是最旧的请求，过载期间不会轮到它们，提前丢弃
+    private void dropStaleHead() {
+        Runnable head;
+        while ((head = peekFirst()) instanceof DeadlineTask
+                && clock.getAsLong() - ((DeadlineTask) head).getArrivedAt() > sloughNanos) {
+            //其他线程可能已经取走了这个任务
+            if (removeFirstOccurrence(head)) {
+                ((DeadlineTask) head).drop(isExpired((DeadlineTask) head, clock.getAsLong()));
+            }
+        }
+    }
+
+    //判断出队的任务是否还需要执行，不需要时丢弃
+    private boolean admit(Runnable task) {
+        if (!(task instanceof DeadlineTask)) {
+            return true;
+        }
+        DeadlineTask deadlineTask = (DeadlineTask) task;
+        long now = clock.getAsLong();
+        long delay = now - deadlineTask.getArrivedAt();
+        boolean overloadedNow = onDequeue(delay, now);
+        if (isExpired(deadlineTask, now)) {
+            log.debug("请求排队 {}ms 后已超过截止时间，丢弃", TimeUnit.NANOSECONDS.toMillis(delay));
+            deadlineTask.drop(true);
+            return false;
+        }
+        if ((maxQueueNanos > 0 && delay > maxQueueNanos) || (overloadedNow && delay > sloughNanos)) {
+            log.debug("请求排队时间过长（{}ms），丢弃", TimeUnit.NANOSECONDS.toMillis(delay));
+            deadlineTask.drop(false);
+            return false;
+        }
+        return true;
+    }
+
+    private static boolean isExpired(DeadlineTask task, long now) {
+        return task.getDeadline() != 0 && now - task.getDeadline() >= 0;
+    }
+
+    //统计每个观察周期内的最小排队延迟，周期结束时据此切换过载状态
+    private synchronized boolean onDequeue(long delay, long now) {
+        if (now - intervalEnd >= 0) {
+            boolean wasOverloaded = overloaded;
+            overloaded = minDelay != Long.MAX_VALUE && minDelay > targetNanos;
+            if (overloaded != wasOverloaded) {
+                if (overloaded) {
+                    log.warn("线程池 {} 持续积压，最小排队延迟 {}ms，切换为后进先出并丢弃排队过久的请求",
+                            name, TimeUnit.NANOSECONDS.toMillis(minDelay));
+                } else {
+                    log.info("线程池 {} 排队恢复正常，切换为先进先出", name);
+                }
+            }
+            minDelay = Long.MAX_VALUE;
+            intervalEnd = now + intervalNanos;
+        }
+        if (delay < minDelay) {
+            minDelay = delay;
+        }
+        return overloaded;
+    }
+}
@@ -0,0 +1,33 @@
+package com.ljm.server.bulkhead;
+
+import com.ljm.config.KRpcConfig;
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * @ClassName AdmissionQueueConfig
+ * @Description 业务线程池排队参数，未配置的项使用默认值
+ * 配置示例：
+ * rpc.queueTargetMs=5
+ * rpc.queueIntervalMs=100
+ * rpc.maxQueueTimeMs=0
+ * @Author ljm
+ */
+@Getter
+@Builder
+public class AdmissionQueueConfig {
+    //一个观察周期内的最小排队延迟超过该值（毫秒）判定为过载，过载时排队超过两倍该值的请求被丢弃
+    private final long targetMs;
+    //观察周期（毫秒）
+    private final long intervalMs;
+    //最长排队时间（毫秒），为0表示不限制，只按请求的截止时间丢弃
+    private final long maxQueueTimeMs;
+
+    public static AdmissionQueueConfig from(KRpcConfig config) {
+        return AdmissionQueueConfig.builder()
+                .targetMs(config.getQueueTargetMs() != null ? config.getQueueTargetMs() : 5)
+                .intervalMs(config.getQueueIntervalMs() != null ? config.getQueueIntervalMs() : 100)
+                .maxQueueTimeMs(config.getMaxQueueTimeMs() != null ? config.getMaxQueueTimeMs() : 0)
+                .build();
+    }
+}
@@ -0,0 +1,109 @@
+package com.ljm.server.bulkhead;
+
+import com.ljm.RpcApplication;
+import com.ljm.config.KRpcConfig;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @ClassName BulkheadProvider
+ * @Description 业务线程池与服务舱壁
+ * 服务方法在业务线程池中执行，不占用Netty的IO线程，慢方法不会拖住同一EventLoop上的其他连接和心跳
+ * 配置了舱壁的接口使用独立的有界线程池，池满时立即拒绝，不会挤占其他接口的线程
+ * 线程池的队列出队时丢弃已超时或排队过久的请求，持续积压时改为后进先出，见 AdmissionQueue
+ * 配置示例：
+ * rpc.businessThreads=16
+ * rpc.businessQueueSize=1024
+ * rpc.bulkheads=com.ljm.service.UserService:8:64,com.ljm.service.OrderService:4:32
+ * @Author ljm
+ */
+@Slf4j
+public class BulkheadProvider {
+    private static final int DEFAULT_BUSINESS_THREADS = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+    private static final int DEFAULT_QUEUE_SIZE = 1024;
+
+    //所有未配置舱壁的接口共用的业务线程池，为null表示直接在IO线程执行
+    private final ExecutorService businessExecutor;
+    //接口全限定名->该接口独占的舱壁线程池
+    private final Map<String, ExecutorService> bulkheads = new ConcurrentHashMap<>();
+    private final AdmissionQueueConfig queueConfig;
+
+    public BulkheadProvider() {
+        this(RpcApplication.getRpcConfig());
+    }
+
+    public BulkheadProvider(KRpcConfig config) {
+        queueConfig = AdmissionQueueConfig.from(config);
+        int threads = config.getBusinessThreads() != null ? config.getBusinessThreads() : DEFAULT_BUSINESS_THREADS;
+        int queueSize = config.getBusinessQueueSize() != null ? config.getBusinessQueueSize() : DEFAULT_QUEUE_SIZE;
+        if (threads > 0) {
+            businessExecutor = newExecutor("rpc-business", threads, queueSize);
+            log.info("业务线程池已创建，线程数: {}，队列长度: {}", threads, queueSize);
+        } else {
+            businessExecutor = null;
+            log.info("未启用业务线程池，服务方法在IO线程中执行");
+        }
+        parseBulkheads(config.getBulkheads());
+    }
+
+    /**
+     * 获取执行该接口方法的线程池
+     * 线程池已满时 execute 会抛出 RejectedExecutionException，调用方应快速失败
+     */
+    public Executor getExecutor(String interfaceName) {
+        ExecutorService bulkhead = bulkheads.get(interfaceName);
+        if (bulkhead != null) {
+            return bulkhead;
+        }
+        return businessExecutor != null ? businessExecutor : Runnable::run;
+    }
+
+    public void shutdown() {
+        if (businessExecutor != null) {
+            businessExecutor.shutdown();
+        }
+        bulkheads.values().forEach(ExecutorService::shutdown);
+    }
+
+    //格式：接口名:线程数:队列长度，多个接口用逗号分隔
+    private void parseBulkheads(String spec) {
+        if (spec == null || spec.isBlank()) {
+            return;
+        }
+        for (String item : spec.split(",")) {
+            if (item.isBlank()) {
+                continue;
+            }
+            String[] parts = item.trim().split(":");
+            if (parts.length != 3) {
+                log.error("舱壁配置格式错误，应为 接口名:线程数:队列长度，实际为: {}", item);
+                continue;
+            }
+            try {
+                String interfaceName = parts[0].trim();
+                int threads = Integer.parseInt(parts[1].trim());
+                int queueSize = Integer.parseInt(parts[2].trim());
+                String poolName = "rpc-bulkhead-" + interfaceName.substring(interfaceName.lastIndexOf('.') + 1);
+                bulkheads.put(interfaceName, newExecutor(poolName, threads, queueSize));
+                log.info("为接口 [{}] 创建舱壁线程池，线程数: {}，队列长度: {}", interfaceName, threads, queueSize);
+            } catch (IllegalArgumentException e) {
+                log.error("舱壁配置错误: {}，{}", item, e.getMessage());
+            }
+        }
+    }
+
+    //固定大小、有界队列，队列满时抛出RejectedExecutionException
+    private ExecutorService newExecutor(String poolName, int threads, int queueSize) {
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new AdmissionQueue(poolName, Math.max(1, queueSize), queueConfig),
+                new DefaultThreadFactory(poolName, true),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+}
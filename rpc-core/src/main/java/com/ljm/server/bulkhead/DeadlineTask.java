@@ -0,0 +1,17 @@
+package com.ljm.server.bulkhead;
+
+/**
+ * @InterfaceName DeadlineTask
+ * @Description 带到达时间和截止时间的任务，排队过久时由队列丢弃而不是执行
+ * @Author ljm
+ */
+public interface DeadlineTask extends Runnable {
+    //到达服务端的时间（System.nanoTime）
+    long getArrivedAt();
+
+    //截止时间（System.nanoTime），为0表示调用方没有设置超时
+    long getDeadline();
+
+    //任务被丢弃时在出队的线程中调用，应快速返回失败结果；expired 为true表示已超过截止时间，否则是过载时排队过久
+    void drop(boolean expired);
+}
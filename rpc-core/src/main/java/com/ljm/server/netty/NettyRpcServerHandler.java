@@ -4,26 +4,44 @@ package com.ljm.server.netty;
 import com.ljm.message.RequestType;
 import com.ljm.message.RpcRequest;
 import com.ljm.message.RpcResponse;
+import com.ljm.server.bulkhead.DeadlineTask;
+import com.ljm.server.provider.ServiceMethod;
 import com.ljm.server.provider.ServiceProvider;
-import com.ljm.server.rateLimit.RateLimit;
+import com.ljm.server.rateLimit.ConcurrencyLimit;
+import com.ljm.server.rateLimit.RateLimitRule;
+import com.ljm.server.rateLimit.provider.RateLimitProvider;
+import com.ljm.utils.MethodSignatureUtil;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
-import lombok.AllArgsConstructor;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @ClassName NettyRpcServerHandler
  * @Description 消息入站处理
  * @Author ljm
  */
-@AllArgsConstructor  // 使用 Lombok 自动生成构造器
+@RequiredArgsConstructor  // 使用 Lombok 自动生成构造器
 @Slf4j
 public class NettyRpcServerHandler extends SimpleChannelInboundHandler<RpcRequest> {
 
     private final ServiceProvider serviceProvider;  // 确保通过构造器注入 ServiceProvider
+    //调用方标识（对端IP），每个连接一个处理器实例，连接建立时取一次
+    private String caller;
+
+    @Override
+    public void channelActive(ChannelHandlerContext ctx) throws Exception {
+        SocketAddress remoteAddress = ctx.channel().remoteAddress();
+        caller = remoteAddress instanceof InetSocketAddress
+                ? ((InetSocketAddress) remoteAddress).getHostString() : String.valueOf(remoteAddress);
+        super.channelActive(ctx);
+    }
 
     @Override
     protected void channelRead0(ChannelHandlerContext ctx, RpcRequest request) throws Exception {
@@ -35,11 +53,24 @@ public class NettyRpcServerHandler extends SimpleChannelInboundHandler<RpcReques
             log.info("接收到来自客户端的心跳包，无需处理");
              return;
         }
-        if(request.getRequestType() == RequestType.NORMAL) {
-            RpcResponse response = getResponse(request);
+        if (request.getRequestType() == RequestType.HANDSHAKE) {
+            //下发方法id字典，之后客户端只需发送方法id和参数
+            RpcResponse response = RpcResponse.sussess(serviceProvider.getMethodDictionary());
+            response.setRequestId(request.getRequestId());
             ctx.writeAndFlush(response);
+            return;
+        }
+        if(request.getRequestType() == RequestType.NORMAL) {
+            //记录收到请求的时间，配合请求携带的剩余超时时间判断是否过期
+            long receivedAt = System.nanoTime();
+            //服务方法可能返回CompletableFuture，结果完成后再写回，不阻塞IO线程
+            getResponse(request, receivedAt).thenAccept(response -> {
+                //带回请求id，客户端据此在复用的连接上匹配响应
+                response.setRequestId(request.getRequestId());
+                ctx.writeAndFlush(response);
                     /*//消息响应后关闭连接
                     .addListener(ChannelFutureListener.CLOSE);*/
+            });
         }
     }
 
@@ -49,29 +80,131 @@ public class NettyRpcServerHandler extends SimpleChannelInboundHandler<RpcReques
         ctx.close();
     }
 
-    private RpcResponse getResponse(RpcRequest rpcRequest) {
+    private CompletableFuture<RpcResponse> getResponse(RpcRequest rpcRequest, long receivedAt) {
+        //精简请求只带方法id，完整请求按签名查找，两者都直接命中注册时建好的调用表
+        ServiceMethod serviceMethod;
+        if (rpcRequest.getMethodId() > 0) {
+            serviceMethod = serviceProvider.getServiceMethod(rpcRequest.getMethodId());
+        } else {
+            serviceMethod = serviceProvider.getServiceMethod(MethodSignatureUtil.getMethodSignature(
+                    rpcRequest.getInterfaceName(), rpcRequest.getMethodName(), rpcRequest.getParamsType()));
+        }
+        if (serviceMethod == null) {
+            log.error("找不到服务方法，接口: {}, 方法: {}, 方法id: {}",
+                    rpcRequest.getInterfaceName(), rpcRequest.getMethodName(), rpcRequest.getMethodId());
+            return CompletableFuture.completedFuture(RpcResponse.fail("方法执行错误"));
+        }
         //得到服务名
-        String interfaceName = rpcRequest.getInterfaceName();
+        String interfaceName = serviceMethod.getInterfaceName();
+
+        //配置了QPS限流规则的接口或方法，超出配额时拒绝
+        RateLimitProvider rateLimitProvider = serviceProvider.getRateLimitProvider();
+        RateLimitRule rejectedBy = rateLimitProvider.checkRateLimit(interfaceName, serviceMethod.getSignature(), caller);
+        if (rejectedBy != null) {
+            log.warn("服务限流，规则: {}，调用方: {}", rejectedBy.getTarget(), caller);
+            return CompletableFuture.completedFuture(RpcResponse.overloaded("服务限流，" + rejectedBy.getTarget() + " 当前无法处理请求。请稍后再试。"));
+        }
 
-        //接口限流
-        RateLimit rateLimit = serviceProvider.getRateLimitProvider().getRateLimit(interfaceName);
-        if (!rateLimit.getToken()) {
-            //如果获取令牌失败，进行限流降级，快速返回结果
-            log.warn("服务限流，接口: {}", interfaceName);
-            return RpcResponse.fail("服务限流，接口 " + interfaceName + " 当前无法处理请求。请稍后再试。");
+        //接口的自适应并发限制，处理中的请求达到上限时直接拒绝，调用方可以换实例重试
+        ConcurrencyLimit concurrencyLimit = rateLimitProvider.getConcurrencyLimit(interfaceName);
+        if (!concurrencyLimit.tryAcquire()) {
+            log.warn("服务过载，接口: {}，并发上限: {}", interfaceName, concurrencyLimit.getLimit());
+            return CompletableFuture.completedFuture(RpcResponse.overloaded("服务过载，接口 " + interfaceName + " 当前无法处理请求。请稍后再试。"));
         }
 
-        //得到服务端相应服务实现类
-        Object service = serviceProvider.getService(interfaceName);
-        //反射调用方法   动态方法调用
-        Method method;
+        //在业务线程池或该接口的舱壁中执行，IO线程只负责编解码
+        CompletableFuture<RpcResponse> responseFuture = new CompletableFuture<>();
         try {
-            method = service.getClass().getMethod(rpcRequest.getMethodName(), rpcRequest.getParamsType());
-            Object invoke = method.invoke(service, rpcRequest.getParams());
-            return RpcResponse.sussess(invoke);
-        } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
-            log.error("方法执行错误，接口: {}, 方法: {}", interfaceName, rpcRequest.getMethodName(), e);
-            return RpcResponse.fail("方法执行错误");
+            serviceProvider.getBulkheadProvider().getExecutor(interfaceName)
+                    .execute(new RequestTask(serviceMethod.getSignature(), receivedAt, rpcRequest.getTimeout(), responseFuture,
+                            () -> invoke(serviceMethod, rpcRequest, receivedAt, responseFuture)));
+        } catch (RejectedExecutionException e) {
+            //线程池已满，快速失败，不在IO线程上排队等待
+            concurrencyLimit.cancel();
+            log.warn("服务繁忙，线程池已满，接口: {}", interfaceName);
+            return CompletableFuture.completedFuture(RpcResponse.overloaded("服务繁忙，接口 " + interfaceName + " 当前无法处理请求。请稍后再试。"));
+        }
+        //排队和执行的总耗时用于调整并发上限
+        responseFuture.whenComplete((response, e) -> concurrencyLimit.release(System.nanoTime() - receivedAt));
+        return responseFuture;
+    }
+
+    private void invoke(ServiceMethod serviceMethod, RpcRequest rpcRequest, long receivedAt,
+                        CompletableFuture<RpcResponse> responseFuture) {
+        //在线程池中排队期间调用方可能已经超时放弃，此时不再执行业务方法
+        if (isExpired(rpcRequest, receivedAt)) {
+            log.warn("请求已超时，放弃执行，方法: {}, 超时时间: {}ms", serviceMethod.getSignature(), rpcRequest.getTimeout());
+            responseFuture.complete(RpcResponse.fail("请求已超时"));
+            return;
         }
+        try {
+            Object invoke = serviceMethod.invoke(rpcRequest.getParams());
+            //异步服务：等结果完成后再构造响应
+            if (invoke instanceof CompletableFuture) {
+                ((CompletableFuture<?>) invoke).whenComplete((data, e) -> {
+                    if (e != null) {
+                        log.error("异步方法执行错误，方法: {}", serviceMethod.getSignature(), e);
+                        responseFuture.complete(RpcResponse.fail("方法执行错误"));
+                    } else {
+                        responseFuture.complete(RpcResponse.sussess(data));
+                    }
+                });
+                return;
+            }
+            responseFuture.complete(RpcResponse.sussess(invoke));
+        } catch (Throwable e) {
+            log.error("方法执行错误，方法: {}", serviceMethod.getSignature(), e);
+            responseFuture.complete(RpcResponse.fail("方法执行错误"));
+        }
+    }
+
+    /**
+     * 在业务线程池中排队的请求，队列据到达时间和截止时间决定执行还是丢弃
+     * 被丢弃时直接返回失败响应：超过截止时间的调用方已经放弃，过载丢弃的返回503，调用方可以换实例重试
+     */
+    static class RequestTask implements DeadlineTask {
+        private final String signature;
+        private final long receivedAt;
+        //调用方的超时时间（毫秒），为0表示不限制
+        private final long timeout;
+        private final CompletableFuture<RpcResponse> responseFuture;
+        //执行业务方法并完成 responseFuture
+        private final Runnable invocation;
+
+        RequestTask(String signature, long receivedAt, long timeout,
+                    CompletableFuture<RpcResponse> responseFuture, Runnable invocation) {
+            this.signature = signature;
+            this.receivedAt = receivedAt;
+            this.timeout = timeout;
+            this.responseFuture = responseFuture;
+            this.invocation = invocation;
+        }
+
+        @Override
+        public void run() {
+            invocation.run();
+        }
+
+        @Override
+        public long getArrivedAt() {
+            return receivedAt;
+        }
+
+        @Override
+        public long getDeadline() {
+            return timeout > 0 ? receivedAt + TimeUnit.MILLISECONDS.toNanos(timeout) : 0;
+        }
+
+        @Override
+        public void drop(boolean expired) {
+            responseFuture.complete(expired ? RpcResponse.fail("请求已超时")
+                    : RpcResponse.overloaded("服务过载，请求排队时间过长，方法 " + signature));
+        }
+    }
+
+    //timeout为0表示调用方没有设置超时
+    private boolean isExpired(RpcRequest rpcRequest, long receivedAt) {
+        return rpcRequest.getTimeout() > 0
+                && System.nanoTime() - receivedAt >= TimeUnit.MILLISECONDS.toNanos(rpcRequest.getTimeout());
     }
 }
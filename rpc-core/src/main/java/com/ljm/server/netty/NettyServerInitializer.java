@@ -1,6 +1,8 @@
 package com.ljm.server.netty;
 
 
+import com.ljm.RpcApplication;
+import com.ljm.config.RpcConstant;
 import com.ljm.serializer.mycode.MyDecoder;
 import com.ljm.serializer.mycode.MyEncoder;
 import com.ljm.serializer.myserializer.Serializer;
@@ -8,6 +10,7 @@ import com.ljm.server.provider.ServiceProvider;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelPipeline;
 import io.netty.channel.socket.SocketChannel;
+import io.netty.handler.flush.FlushConsolidationHandler;
 import io.netty.handler.timeout.IdleStateHandler;
 import lombok.AllArgsConstructor;
 
@@ -28,12 +31,19 @@ public class NettyServerInitializer extends ChannelInitializer<SocketChannel> {
     @Override
     protected void initChannel(SocketChannel ch) throws Exception {
         ChannelPipeline pipeline = ch.pipeline();
+        //合并flush：一次读循环中产生的响应在读完后一起发送，业务线程写回的响应由IO线程合并后发送，多条消息一次系统调用
+        Integer flushBatchSize = RpcApplication.getRpcConfig().getFlushBatchSize();
+        int batchSize = flushBatchSize != null ? flushBatchSize : RpcConstant.DEFAULT_FLUSH_BATCH_SIZE;
+        if (batchSize > 0) {
+            pipeline.addLast(new FlushConsolidationHandler(batchSize, true));
+        }
+        //心跳检测，放在解码器之前才能感知到所有读事件；前面的FlushConsolidationHandler只拦截flush，读事件原样传到这里
+        //客户端长连接复用，空闲时靠客户端心跳保活，所以只检测读空闲，不再因写空闲断开连接
+        pipeline.addLast(new IdleStateHandler(12,0,0, TimeUnit.SECONDS));
+        pipeline.addLast(new HeartBeatHandler());
         //使用自定义的编/解码器
         pipeline.addLast(new MyEncoder(Serializer.getSerializerByCode(3)));
         pipeline.addLast(new MyDecoder());
         pipeline.addLast(new NettyRpcServerHandler(serviceProvider));
-        //心跳检测
-        pipeline.addLast(new IdleStateHandler(12,20,0, TimeUnit.SECONDS));
-        pipeline.addLast(new HeartBeatHandler());
     }
 }
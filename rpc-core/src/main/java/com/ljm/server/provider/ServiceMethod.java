@@ -0,0 +1,72 @@
+package com.ljm.server.provider;
+
+import com.ljm.stub.ServiceSkeleton;
+import lombok.Getter;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+
+/**
+ * @ClassName ServiceMethod
+ * @Description 服务端可调用的方法，握手时按方法签名分配id
+ * 注册时把方法解析成绑定了服务实例的MethodHandle，调用时不再做反射查找和访问检查
+ * 接口有编译期生成的骨架类时，改为通过骨架按下标直接调用
+ * @Author ljm
+ */
+@Getter
+public class ServiceMethod {
+    //统一的调用形式：(Object[] 参数) -> Object 返回值
+    private static final MethodType INVOKER_TYPE = MethodType.methodType(Object.class, Object[].class);
+
+    private final int id;
+    private final String signature;
+    private final String interfaceName;
+    private final Object service;
+    private final Method method;
+    private final MethodHandle invoker;
+    //生成的骨架类及该方法在骨架中的下标，没有骨架时为null
+    private final ServiceSkeleton skeleton;
+    private final int skeletonIndex;
+
+    public ServiceMethod(int id, String signature, String interfaceName, Object service, Method method) {
+        this(id, signature, interfaceName, service, method, null, -1);
+    }
+
+    public ServiceMethod(int id, String signature, String interfaceName, Object service, Method method,
+                         ServiceSkeleton skeleton, int skeletonIndex) {
+        this.id = id;
+        this.signature = signature;
+        this.interfaceName = interfaceName;
+        this.service = service;
+        this.method = method;
+        this.skeleton = skeleton;
+        this.skeletonIndex = skeletonIndex;
+        this.invoker = skeleton == null ? createInvoker(service, method) : null;
+    }
+
+    /**
+     * 调用服务方法
+     * 与Method.invoke不同，业务异常原样抛出，不会包装成InvocationTargetException
+     */
+    public Object invoke(Object[] args) throws Throwable {
+        if (skeleton != null) {
+            return skeleton.invoke(skeletonIndex, args);
+        }
+        return (Object) invoker.invokeExact(args);
+    }
+
+    private static MethodHandle createInvoker(Object service, Method method) {
+        try {
+            return MethodHandles.publicLookup().unreflect(method)
+                    .bindTo(service)
+                    //展开参数数组，参数个数为0时允许传null
+                    .asSpreader(Object[].class, method.getParameterCount())
+                    //基本类型装箱，void返回null
+                    .asType(INVOKER_TYPE);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("无法访问服务方法: " + method, e);
+        }
+    }
+}
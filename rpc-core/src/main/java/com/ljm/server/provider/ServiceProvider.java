@@ -1,13 +1,23 @@
 package com.ljm.server.provider;
 
 
+import com.ljm.server.bulkhead.BulkheadProvider;
 import com.ljm.server.rateLimit.provider.RateLimitProvider;
 import com.ljm.server.serverRegister.ServiceRegister;
 import com.ljm.server.serverRegister.impl.ZKServiceRegister;
+import com.ljm.stub.ServiceSkeleton;
+import com.ljm.stub.StubNaming;
+import com.ljm.utils.MethodSignatureUtil;
+import lombok.extern.slf4j.Slf4j;
 
+import java.lang.reflect.Method;
 import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 
 /**
@@ -17,9 +27,16 @@ import java.util.Map;
  * @LastChangeDate 2025-7-01
  * @Version v5.0
  */
+@Slf4j
 public class ServiceProvider {
     //本地服务映射表  服务接口全限定类名->服务实现类实例
     private Map<String, Object> interfaceProvider;
+    //方法id表，下标即方法id，0号位不使用
+    private volatile ServiceMethod[] methodTable = new ServiceMethod[1];
+    //方法签名->方法id，握手时下发给客户端
+    private final Map<String, Integer> methodIds = new ConcurrentHashMap<>();
+    //握手响应复用同一份字典快照，注册新服务时重建
+    private volatile HashMap<String, Integer> methodDictionary = new HashMap<>();
 
     private int port;
     private String host;
@@ -27,6 +44,8 @@ public class ServiceProvider {
     private ServiceRegister serviceRegister;
     //限流器
     private RateLimitProvider rateLimitProvider;
+    //业务线程池与舱壁
+    private BulkheadProvider bulkheadProvider;
 
     public ServiceProvider(String host, int port) {
         //需要传入服务端自身的网络地址
@@ -35,6 +54,7 @@ public class ServiceProvider {
         this.interfaceProvider = new HashMap<>();
         this.serviceRegister = new ZKServiceRegister();
         this.rateLimitProvider = new RateLimitProvider();
+        this.bulkheadProvider = new BulkheadProvider();
     }
 
     public void provideServiceInterface(Object service) {
@@ -44,6 +64,8 @@ public class ServiceProvider {
         for (Class<?> clazz : interfaceName) {
             //本机的映射表
             interfaceProvider.put(clazz.getName(), service);
+            //为接口方法分配id
+            registerMethods(clazz, service);
             //在注册中心注册服务
             serviceRegister.register(clazz, new InetSocketAddress(host, port));
         }
@@ -53,7 +75,71 @@ public class ServiceProvider {
         return interfaceProvider.get(interfaceName);
     }
 
+    //按签名排序后依次分配id，同一份代码启动的服务端得到的id一致，便于排查
+    private synchronized void registerMethods(Class<?> clazz, Object service) {
+        Method[] methods = clazz.getMethods();
+        Arrays.sort(methods, Comparator.comparing(m -> MethodSignatureUtil.getMethodSignature(clazz, m)));
+        ServiceMethod[] table = methodTable;
+        ServiceMethod[] newTable = Arrays.copyOf(table, table.length + methods.length);
+        int next = table.length;
+        ServiceSkeleton skeleton = loadSkeleton(clazz, service);
+        List<String> skeletonSignatures = skeleton == null ? List.of() : Arrays.asList(skeleton.getMethodSignatures());
+        for (Method method : methods) {
+            String signature = MethodSignatureUtil.getMethodSignature(clazz, method);
+            if (methodIds.containsKey(signature)) {
+                continue;
+            }
+            //骨架中没有的方法（如静态方法）仍用MethodHandle调用
+            int skeletonIndex = skeletonSignatures.indexOf(signature);
+            newTable[next] = skeletonIndex >= 0
+                    ? new ServiceMethod(next, signature, clazz.getName(), service, method, skeleton, skeletonIndex)
+                    : new ServiceMethod(next, signature, clazz.getName(), service, method);
+            methodIds.put(signature, next);
+            next++;
+        }
+        methodTable = Arrays.copyOf(newTable, next);
+        methodDictionary = new HashMap<>(methodIds);
+    }
+
+    //加载注解处理器为 @RpcService 接口生成的骨架类，不存在时返回null
+    private ServiceSkeleton loadSkeleton(Class<?> clazz, Object service) {
+        try {
+            Class<?> skeletonClass = Class.forName(StubNaming.getSkeletonClassName(clazz.getName()), true, clazz.getClassLoader());
+            ServiceSkeleton skeleton = (ServiceSkeleton) skeletonClass.getConstructor(clazz).newInstance(service);
+            log.info("服务 {} 使用生成的骨架类 {}", clazz.getName(), skeletonClass.getName());
+            return skeleton;
+        } catch (ClassNotFoundException e) {
+            return null;
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            log.warn("服务 {} 的骨架类不可用，改用MethodHandle调用: {}", clazz.getName(), e.toString());
+            return null;
+        }
+    }
+
+    public ServiceMethod getServiceMethod(int methodId) {
+        ServiceMethod[] table = methodTable;
+        if (methodId <= 0 || methodId >= table.length) {
+            return null;
+        }
+        return table[methodId];
+    }
+
+    //完整请求按签名查找方法
+    public ServiceMethod getServiceMethod(String signature) {
+        Integer methodId = methodIds.get(signature);
+        return methodId == null ? null : getServiceMethod(methodId);
+    }
+
+    //方法签名->方法id的字典，调用方不应修改
+    public Map<String, Integer> getMethodDictionary() {
+        return methodDictionary;
+    }
+
     public RateLimitProvider getRateLimitProvider() {
         return rateLimitProvider;
     }
+
+    public BulkheadProvider getBulkheadProvider() {
+        return bulkheadProvider;
+    }
 }
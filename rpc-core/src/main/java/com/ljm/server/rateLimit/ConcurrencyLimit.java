@@ -0,0 +1,19 @@
+package com.ljm.server.rateLimit;
+
+/**
+ * 并发限制：同时处理中的请求数不超过上限
+ * 获取许可成功的请求结束时必须调用 release 或 cancel 归还
+ */
+public interface ConcurrencyLimit {
+    //获取执行许可，处理中的请求已达上限时返回false
+    boolean tryAcquire();
+
+    //请求处理结束，归还许可并上报从获取许可到处理结束的耗时
+    void release(long latencyNanos);
+
+    //请求没有真正执行（如线程池已满），只归还许可，不计入延迟统计
+    void cancel();
+
+    //当前的并发上限
+    int getLimit();
+}
@@ -0,0 +1,37 @@
+package com.ljm.server.rateLimit;
+
+import com.ljm.config.KRpcConfig;
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * @ClassName ConcurrencyLimitConfig
+ * @Description 自适应并发限制参数，未配置的项使用默认值
+ * 配置示例：
+ * rpc.concurrencyInitialLimit=100
+ * rpc.concurrencyMinLimit=10
+ * rpc.concurrencyMaxLimit=1000
+ * rpc.concurrencyRttTolerance=1.5
+ * @Author ljm
+ */
+@Getter
+@Builder
+public class ConcurrencyLimitConfig {
+    //启动时的并发上限，之后根据延迟自动调整
+    private final int initialLimit;
+    //并发上限的下限
+    private final int minLimit;
+    //并发上限的上限
+    private final int maxLimit;
+    //近期延迟不超过长期延迟的这个倍数时认为没有排队，可以继续增大上限
+    private final double rttTolerance;
+
+    public static ConcurrencyLimitConfig from(KRpcConfig config) {
+        return ConcurrencyLimitConfig.builder()
+                .initialLimit(config.getConcurrencyInitialLimit() != null ? config.getConcurrencyInitialLimit() : 100)
+                .minLimit(config.getConcurrencyMinLimit() != null ? config.getConcurrencyMinLimit() : 10)
+                .maxLimit(config.getConcurrencyMaxLimit() != null ? config.getConcurrencyMaxLimit() : 1000)
+                .rttTolerance(config.getConcurrencyRttTolerance() != null ? config.getConcurrencyRttTolerance() : 1.5)
+                .build();
+    }
+}
@@ -6,4 +6,8 @@ package com.ljm.server.rateLimit;
 public interface RateLimit {
     //获取访问许可
     boolean getToken();
+
+    //归还刚取得的许可：请求被后面的规则拒绝、并没有被处理时调用
+    default void refund() {
+    }
 }
@@ -0,0 +1,161 @@
+package com.ljm.server.rateLimit;
+
+import com.ljm.server.rateLimit.impl.SlidingWindowRateLimitImpl;
+import com.ljm.server.rateLimit.impl.TokenBucketRateLimitImpl;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * @ClassName RateLimitRule
+ * @Description 一条QPS限流规则
+ * 目标为接口名时限制整个接口，为方法签名时只限制该方法；
+ * 按调用方限流时每个调用方各有一个限流器，否则所有调用方共用一个
+ * 调用方的限流器空闲一段时间后移除，再次调用时重新创建：空闲这么久后令牌桶已经补满、窗口计数已经归零，效果相同；
+ * 调用方数量达到上限时，新的调用方共用一个限流器，不会因为客户端不断更换地址而无限增长
+ * @Author ljm
+ */
+@Slf4j
+@Getter
+public class RateLimitRule {
+    public static final String TOKEN_BUCKET = "TokenBucket";
+    public static final String SLIDING_WINDOW = "SlidingWindow";
+    //最多单独计数的调用方数
+    static final int MAX_CALLERS = 10_000;
+    //调用方的限流器至少空闲这么久才移除
+    private static final long MIN_IDLE_NANOS = TimeUnit.MINUTES.toNanos(1);
+    //检查空闲调用方的间隔
+    private static final long SWEEP_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(10);
+    //最近使用时间的更新精度，避免每次请求都写
+    private static final long TOUCH_PRECISION_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    //接口名或方法签名
+    private final String target;
+    private final double permitsPerSecond;
+    //令牌桶的突发容量，滑动窗口不使用
+    private final int burst;
+    private final String algorithm;
+    private final boolean perCaller;
+    //所有调用方共用的限流器，按调用方限流时为null
+    private final RateLimit shared;
+    //调用方 -> 该调用方的限流器
+    @Getter(AccessLevel.NONE)
+    private final Map<String, CallerLimit> callers = new ConcurrentHashMap<>();
+    //调用方数量达到上限后，新的调用方共用的限流器
+    @Getter(AccessLevel.NONE)
+    private final RateLimit overflow;
+    @Getter(AccessLevel.NONE)
+    private final int maxCallers;
+    @Getter(AccessLevel.NONE)
+    private final long idleNanos;
+    @Getter(AccessLevel.NONE)
+    private final LongSupplier clock;
+    @Getter(AccessLevel.NONE)
+    private final AtomicLong nextSweepAt;
+
+    public RateLimitRule(String target, double permitsPerSecond, int burst, String algorithm, boolean perCaller) {
+        this(target, permitsPerSecond, burst, algorithm, perCaller, MAX_CALLERS, System::nanoTime);
+    }
+
+    RateLimitRule(String target, double permitsPerSecond, int burst, String algorithm, boolean perCaller,
+                  int maxCallers, LongSupplier clock) {
+        this.target = target;
+        this.permitsPerSecond = permitsPerSecond;
+        this.burst = burst;
+        this.algorithm = algorithm;
+        this.perCaller = perCaller;
+        this.shared = perCaller ? null : newRateLimit();
+        this.overflow = perCaller ? newRateLimit() : null;
+        this.maxCallers = maxCallers;
+        //令牌桶从空到满所需的时间更长时，等它补满后再移除
+        long refillNanos = (long) (TimeUnit.SECONDS.toNanos(1) * (double) burst / permitsPerSecond);
+        this.idleNanos = Math.max(MIN_IDLE_NANOS, refillNanos);
+        this.clock = clock;
+        this.nextSweepAt = new AtomicLong(clock.getAsLong() + SWEEP_INTERVAL_NANOS);
+    }
+
+    //caller 为调用方标识，不按调用方限流时忽略
+    public boolean tryAcquire(String caller) {
+        if (shared != null) {
+            return shared.getToken();
+        }
+        return getCallerLimit(caller).getToken();
+    }
+
+    //归还 tryAcquire 取得的许可
+    public void refund(String caller) {
+        if (shared != null) {
+            shared.refund();
+            return;
+        }
+        CallerLimit callerLimit = callers.get(caller);
+        (callerLimit != null ? callerLimit.rateLimit : overflow).refund();
+    }
+
+    //单独计数的调用方数
+    int getCallerCount() {
+        return callers.size();
+    }
+
+    private RateLimit getCallerLimit(String caller) {
+        long now = clock.getAsLong();
+        if (now - nextSweepAt.get() >= 0) {
+            sweep(now);
+        }
+        CallerLimit callerLimit = callers.get(caller);
+        if (callerLimit == null) {
+            if (callers.size() >= maxCallers) {
+                return overflow;
+            }
+            callerLimit = callers.computeIfAbsent(caller, key -> new CallerLimit(newRateLimit(), now));
+        }
+        if (now - callerLimit.lastUsed > TOUCH_PRECISION_NANOS) {
+            callerLimit.lastUsed = now;
+        }
+        return callerLimit.rateLimit;
+    }
+
+    //移除空闲的调用方，同一时刻只有一个线程执行
+    private void sweep(long now) {
+        long scheduled = nextSweepAt.get();
+        if (!nextSweepAt.compareAndSet(scheduled, now + SWEEP_INTERVAL_NANOS)) {
+            return;
+        }
+        int before = callers.size();
+        callers.values().removeIf(callerLimit -> now - callerLimit.lastUsed > idleNanos);
+        if (before >= maxCallers) {
+            log.warn("限流规则 {} 的调用方数量达到上限 {}，清理空闲调用方后剩余 {}", target, maxCallers, callers.size());
+        }
+    }
+
+    //未知的算法名按令牌桶处理
+    private RateLimit newRateLimit() {
+        if (SLIDING_WINDOW.equals(algorithm)) {
+            return new SlidingWindowRateLimitImpl(Math.max(1, Math.round(permitsPerSecond)), 1000);
+        }
+        return new TokenBucketRateLimitImpl(permitsPerSecond, burst);
+    }
+
+    @Override
+    public String toString() {
+        return target + " " + algorithm + " " + permitsPerSecond + "/s"
+                + (SLIDING_WINDOW.equals(algorithm) ? "" : "，突发容量 " + burst) + (perCaller ? "，按调用方" : "");
+    }
+
+    //一个调用方的限流器及其最近使用时间
+    private static class CallerLimit {
+        private final RateLimit rateLimit;
+        private volatile long lastUsed;
+
+        CallerLimit(RateLimit rateLimit, long lastUsed) {
+            this.rateLimit = rateLimit;
+            this.lastUsed = lastUsed;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.ljm.server.rateLimit.impl;
+
+import com.ljm.server.rateLimit.ConcurrencyLimit;
+import com.ljm.server.rateLimit.ConcurrencyLimitConfig;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * @author ljm
+ * 自适应并发限制
+ * 梯度算法：按时间窗口统计请求的平均耗时（近期延迟），并维护一个变化缓慢的长期平均延迟；
+ * 近期延迟明显高于长期延迟说明请求开始排队，按两者的比值（梯度）收缩并发上限，
+ * 否则每个窗口在当前上限的基础上增加 sqrt(上限) 的排队余量，逐步探测服务的实际处理能力
+ * 获取和归还许可只有原子操作，上限的计算每个窗口由一个线程完成
+ */
+@Slf4j
+public class GradientConcurrencyLimit implements ConcurrencyLimit {
+    //窗口的最短时长和最少样本数，两者都满足才计算一次新的上限
+    private static final long MIN_WINDOW_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final int MIN_WINDOW_SAMPLES = 10;
+    //长期延迟的平滑窗口数和预热窗口数
+    private static final int LONG_WINDOW = 600;
+    private static final int WARMUP_WINDOWS = 10;
+    //新上限的平滑系数，避免抖动
+    private static final double SMOOTHING = 0.2;
+
+    private final String name;
+    private final ConcurrencyLimitConfig config;
+    //上限按浮点数累积，每个窗口的增量可能小于1
+    private volatile double estimatedLimit;
+    private volatile int limit;
+    private final AtomicInteger inflight = new AtomicInteger();
+    private final LongSupplier clock;
+
+    //当前窗口的统计
+    private final AtomicLong windowStart;
+    private final LongAdder rttSum = new LongAdder();
+    private final LongAdder samples = new LongAdder();
+    private final LongAccumulator maxInflight = new LongAccumulator(Math::max, 0);
+
+    //长期平均延迟，只在计算上限时读写
+    private double longRtt;
+    private int windows;
+
+    public GradientConcurrencyLimit(String name, ConcurrencyLimitConfig config) {
+        this(name, config, System::nanoTime);
+    }
+
+    GradientConcurrencyLimit(String name, ConcurrencyLimitConfig config, LongSupplier clock) {
+        this.name = name;
+        this.config = config;
+        this.estimatedLimit = config.getInitialLimit();
+        this.limit = config.getInitialLimit();
+        this.clock = clock;
+        this.windowStart = new AtomicLong(clock.getAsLong());
+    }
+
+    @Override
+    public boolean tryAcquire() {
+        int current;
+        do {
+            current = inflight.get();
+            if (current >= limit) {
+                return false;
+            }
+        } while (!inflight.compareAndSet(current, current + 1));
+        maxInflight.accumulate(current + 1);
+        return true;
+    }
+
+    @Override
+    public void release(long latencyNanos) {
+        inflight.decrementAndGet();
+        rttSum.add(latencyNanos);
+        samples.increment();
+        long start = windowStart.get();
+        long now = clock.getAsLong();
+        //窗口未结束时只做一次比较，不影响调用
+        if (now - start >= MIN_WINDOW_NANOS && samples.sum() >= MIN_WINDOW_SAMPLES
+                && windowStart.compareAndSet(start, now)) {
+            long count = samples.sumThenReset();
+            long sum = rttSum.sumThenReset();
+            int peak = (int) maxInflight.getThenReset();
+            if (count > 0) {
+                update((double) sum / count, peak);
+            }
+        }
+    }
+
+    @Override
+    public void cancel() {
+        inflight.decrementAndGet();
+    }
+
+    @Override
+    public int getLimit() {
+        return limit;
+    }
+
+    private synchronized void update(double shortRtt, int peakInflight) {
+        if (windows < WARMUP_WINDOWS) {
+            windows++;
+            longRtt += (shortRtt - longRtt) / windows;
+        } else {
+            longRtt += (shortRtt - longRtt) * 2 / (LONG_WINDOW + 1);
+        }
+        double current = estimatedLimit;
+        //并发远没有用满时延迟反映不出容量，不调整
+        if (peakInflight < current / 2) {
+            return;
+        }
+        //负载下降后长期延迟偏高，加快向近期延迟回落，避免上限迟迟不收缩
+        if (longRtt / shortRtt > 2) {
+            longRtt *= 0.95;
+        }
+        double gradient = Math.max(0.5, Math.min(1.0, config.getRttTolerance() * longRtt / shortRtt));
+        double newLimit = current * gradient + Math.sqrt(current);
+        newLimit = current * (1 - SMOOTHING) + newLimit * SMOOTHING;
+        newLimit = Math.max(config.getMinLimit(), Math.min(config.getMaxLimit(), newLimit));
+        estimatedLimit = newLimit;
+        int rounded = (int) newLimit;
+        if (rounded != limit) {
+            log.debug("接口 {} 并发上限调整为 {}，近期延迟 {}us，长期延迟 {}us", name, rounded,
+                    (long) shortRtt / 1000, (long) longRtt / 1000);
+            limit = rounded;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "GradientConcurrencyLimit{limit=" + limit + ", min=" + config.getMinLimit() + ", max=" + config.getMaxLimit() + "}";
+    }
+}
@@ -0,0 +1,92 @@
+package com.ljm.server.rateLimit.impl;
+
+import com.ljm.server.rateLimit.RateLimit;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * @author ljm
+ * 服务限流
+ * 滑动窗口计数：保留当前和上一个固定窗口的请求数，按当前窗口已经过去的比例
+ * 估算最近一个窗口长度内的请求数 = 上一窗口计数 * 未过去的比例 + 当前窗口计数，超过上限时拒绝
+ * 只保存两个计数而不是每个请求的时间戳，内存与QPS无关；计数用LongAdder分散多线程竞争，
+ * 并发检查时可能略微超出上限（不超过同时通过检查的线程数）
+ */
+public class SlidingWindowRateLimitImpl implements RateLimit {
+    private final long limit;
+    private final long windowNanos;
+    private final AtomicReference<Window> current;
+    private final LongSupplier clock;
+
+    /**
+     * @param limit    窗口内允许的请求数
+     * @param windowMs 窗口长度（毫秒）
+     */
+    public SlidingWindowRateLimitImpl(long limit, long windowMs) {
+        this(limit, windowMs, System::nanoTime);
+    }
+
+    SlidingWindowRateLimitImpl(long limit, long windowMs, LongSupplier clock) {
+        if (limit <= 0 || windowMs <= 0) {
+            throw new IllegalArgumentException("limit and windowMs must be positive");
+        }
+        this.limit = limit;
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMs);
+        this.clock = clock;
+        this.current = new AtomicReference<>(new Window(clock.getAsLong(), 0));
+    }
+
+    @Override
+    public boolean getToken() {
+        long now = clock.getAsLong();
+        Window window = currentWindow(now);
+        double remaining = 1 - (double) (now - window.start) / windowNanos;
+        if ((long) (window.previous * remaining) + window.count.sum() >= limit) {
+            return false;
+        }
+        window.count.increment();
+        return true;
+    }
+
+    //从当前窗口的计数中减去一次；窗口刚好切换时减在新窗口上，误差只有一次请求
+    @Override
+    public void refund() {
+        current.get().count.decrement();
+    }
+
+    //当前时间所在的窗口，过期时切换到新窗口，只有一个线程能切换成功
+    private Window currentWindow(long now) {
+        while (true) {
+            Window window = current.get();
+            long elapsed = now - window.start;
+            if (elapsed < windowNanos) {
+                return window;
+            }
+            long periods = elapsed / windowNanos;
+            //紧接着的窗口才需要上一窗口的计数，中间空了一个以上窗口时按0计
+            Window next = new Window(window.start + periods * windowNanos, periods == 1 ? window.count.sum() : 0);
+            if (current.compareAndSet(window, next)) {
+                return next;
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "SlidingWindow{" + limit + "/" + TimeUnit.NANOSECONDS.toMillis(windowNanos) + "ms}";
+    }
+
+    private static class Window {
+        private final long start;
+        private final long previous;
+        private final LongAdder count = new LongAdder();
+
+        Window(long start, long previous) {
+            this.start = start;
+            this.previous = previous;
+        }
+    }
+}
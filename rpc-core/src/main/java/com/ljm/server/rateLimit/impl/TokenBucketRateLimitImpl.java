@@ -1,55 +1,135 @@
 package com.ljm.server.rateLimit.impl;
 
 import com.ljm.server.rateLimit.RateLimit;
-import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
 
 /**
  * @author  ljm
  * 服务限流
  * 令牌桶算法
+ * 不单独保存令牌数，而是记录"令牌全部补满"的时间点：取一个令牌就把该时间点推后一个生成间隔，
+ * 推后的距离超过桶容量对应的时间说明令牌已取完；整个状态只有一个long，一次CAS完成取令牌和补充
+ * 被拒绝的请求只读不写，限流生效时不会加剧竞争
+ * 多核机器上高QPS时把桶按CPU数拆成多个分段，速率和容量平均分到各段，每个线程优先在自己的分段上CAS，
+ * 自己的分段取完了再依次尝试其他分段，只有所有分段都没有令牌时才拒绝；总速率和总容量与不分段时相同
  */
-@Slf4j
 public class TokenBucketRateLimitImpl implements RateLimit {
-    // 令牌产生速率（单位：ms）
-    private final int rate;
-    // 桶容量
+    //每个分段独占的long个数，分段之间相隔128字节，避免伪共享
+    private static final int PADDING = 16;
+    //每个分段每秒至少分到的令牌数，速率较低时不分段，避免每段的令牌太少
+    private static final double MIN_PERMITS_PER_STRIPE = 1000;
+
+    // 每生成一个令牌的间隔（纳秒），不分段时的值
+    private final long intervalNanos;
+    // 每个分段生成一个令牌的间隔（纳秒）
+    private final long stripeIntervalNanos;
+    // 每个分段中令牌全部取出时，补满时间点最多领先当前时间多少（纳秒）
+    private final long[] maxAheadNanos;
     private final int capacity;
-    // 当前桶容量
-    private volatile int curCapacity;
-    // 上次请求时间戳
-    private volatile long lastTimestamp;
+    private final int mask;
+    // 每个分段令牌补满的时间点（nanoTime），不晚于当前时间表示该分段是满的
+    private final AtomicLongArray fullAt;
+    private final LongSupplier clock;
+
+    /**
+     * @param permitsPerSecond 每秒生成的令牌数
+     * @param capacity         桶容量，即允许的突发请求数
+     */
+    public TokenBucketRateLimitImpl(double permitsPerSecond, int capacity) {
+        this(permitsPerSecond, capacity, defaultStripes(permitsPerSecond, capacity), System::nanoTime);
+    }
 
-    public TokenBucketRateLimitImpl(int rate, int capacity) {
-        this.rate = rate;
+    TokenBucketRateLimitImpl(double permitsPerSecond, int capacity, int stripes, LongSupplier clock) {
+        if (permitsPerSecond <= 0 || capacity <= 0) {
+            throw new IllegalArgumentException("permitsPerSecond and capacity must be positive");
+        }
+        if (stripes <= 0 || Integer.bitCount(stripes) != 1 || stripes > capacity) {
+            throw new IllegalArgumentException("stripes must be a power of two not greater than capacity");
+        }
+        this.intervalNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond));
+        this.stripeIntervalNanos = intervalNanos * stripes;
         this.capacity = capacity;
-        this.curCapacity = capacity;
-        this.lastTimestamp = System.currentTimeMillis();
+        this.mask = stripes - 1;
+        this.clock = clock;
+        //容量除不尽时余数分给前面的分段
+        this.maxAheadNanos = new long[stripes];
+        for (int i = 0; i < stripes; i++) {
+            maxAheadNanos[i] = stripeIntervalNanos * (capacity / stripes + (i < capacity % stripes ? 1 : 0));
+        }
+        this.fullAt = new AtomicLongArray(stripes * PADDING);
+        long now = clock.getAsLong();
+        for (int i = 0; i < stripes; i++) {
+            fullAt.set(i * PADDING, now);
+        }
+    }
+
+    //分段数：不超过CPU数向上取整的2的幂，且每段的速率和容量都不能太小
+    static int defaultStripes(double permitsPerSecond, int capacity) {
+        int cpus = Runtime.getRuntime().availableProcessors();
+        int stripes = 1;
+        while (stripes < cpus && stripes * 2 <= capacity && permitsPerSecond / (stripes * 2) >= MIN_PERMITS_PER_STRIPE) {
+            stripes *= 2;
+        }
+        return stripes;
     }
 
     @Override
     public boolean getToken() {
-        // 优化：同步仅限于关键部分，减少锁竞争
-        synchronized (this) {
-            // 如果当前桶还有剩余，就直接返回
-            if (curCapacity > 0) {
-                curCapacity--;
+        long now = clock.getAsLong();
+        int home = homeStripe();
+        for (int i = 0; i <= mask; i++) {
+            if (tryAcquire((home + i) & mask, now)) {
                 return true;
             }
+        }
+        return false;
+    }
 
-            long currentTimestamp = System.currentTimeMillis();
-            // 如果距离上一次请求的时间大于 RATE 的时间间隔
-            if (currentTimestamp - lastTimestamp >= rate) {
-                // 计算这段时间内生成的令牌数量
-                int generatedTokens = (int) ((currentTimestamp - lastTimestamp) / rate);
-                if (generatedTokens > 1) {
-                    // 只添加剩余令牌，确保不会超过桶的容量
-                    curCapacity = Math.min(capacity, curCapacity + generatedTokens - 1);
+    //归还一个令牌，放回第一个不满的分段；都满时令牌作废
+    @Override
+    public void refund() {
+        long now = clock.getAsLong();
+        int home = homeStripe();
+        for (int i = 0; i <= mask; i++) {
+            int index = ((home + i) & mask) * PADDING;
+            long current;
+            while ((current = fullAt.get(index)) - now > 0) {
+                if (fullAt.compareAndSet(index, current, current - stripeIntervalNanos)) {
+                    return;
                 }
-                // 更新时间戳
-                lastTimestamp = currentTimestamp;
+            }
+        }
+    }
+
+    private boolean tryAcquire(int stripe, long now) {
+        int index = stripe * PADDING;
+        while (true) {
+            long current = fullAt.get(index);
+            long next = Math.max(current, now) + stripeIntervalNanos;
+            if (next - now > maxAheadNanos[stripe]) {
+                return false;
+            }
+            if (fullAt.compareAndSet(index, current, next)) {
                 return true;
             }
-            return false;  // 如果无法获取令牌，返回 false
         }
     }
+
+    //线程固定对应一个分段，IO线程数不多且各自处理固定的连接，分布足够均匀
+    private int homeStripe() {
+        return mask == 0 ? 0 : (int) Thread.currentThread().getId() & mask;
+    }
+
+    int getStripes() {
+        return mask + 1;
+    }
+
+    @Override
+    public String toString() {
+        return "TokenBucket{" + TimeUnit.SECONDS.toNanos(1) / intervalNanos + "/s, capacity=" + capacity
+                + (mask > 0 ? ", stripes=" + (mask + 1) : "") + "}";
+    }
 }
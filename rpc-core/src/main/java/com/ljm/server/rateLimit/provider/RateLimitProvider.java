@@ -1,28 +1,111 @@
 package com.ljm.server.rateLimit.provider;
 
-import com.ljm.server.rateLimit.RateLimit;
-import com.ljm.server.rateLimit.impl.TokenBucketRateLimitImpl;
+import com.ljm.RpcApplication;
+import com.ljm.config.KRpcConfig;
+import com.ljm.server.rateLimit.ConcurrencyLimit;
+import com.ljm.server.rateLimit.ConcurrencyLimitConfig;
+import com.ljm.server.rateLimit.RateLimitRule;
+import com.ljm.server.rateLimit.impl.GradientConcurrencyLimit;
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * 提供限流器实例
+ * 每个接口一个自适应并发限制，上限根据该接口的处理延迟自动调整，不需要预先估计QPS；
+ * 需要固定配额时另外配置QPS限流规则，可以作用于整个接口或单个方法，并可按调用方分别计数
+ * 配置示例：
+ * rpc.rateLimits=com.ljm.service.UserService:5000;com.ljm.service.UserService#getUserByUserId(java.lang.Integer):1000:2000
+ * rpc.rateLimitAlgorithm=TokenBucket
+ * rpc.rateLimitPerCaller=true
  * @author ljm
  */
 @Slf4j
 public class RateLimitProvider {
-    private final Map<String, RateLimit> rateLimitMap=new ConcurrentHashMap<>();
-
-    // 默认的限流桶容量和令牌生成速率
-    private static final int DEFAULT_CAPACITY = 100;
-    private static final int DEFAULT_RATE = 100;
-    public RateLimit getRateLimit(String interfaceName) {
-        return rateLimitMap.computeIfAbsent(interfaceName, key -> {
-            RateLimit rateLimit = new TokenBucketRateLimitImpl(DEFAULT_RATE, DEFAULT_CAPACITY);
-            log.info("为接口 [{}] 创建了新的限流策略: {}", interfaceName, rateLimit);
-            return rateLimit;
+    private final Map<String, ConcurrencyLimit> concurrencyLimitMap = new ConcurrentHashMap<>();
+    private final ConcurrencyLimitConfig concurrencyLimitConfig;
+    //接口名或方法签名 -> QPS限流规则，启动后不再变化
+    private final Map<String, RateLimitRule> rateLimitRules;
+
+    public RateLimitProvider() {
+        this(RpcApplication.getRpcConfig());
+    }
+
+    public RateLimitProvider(KRpcConfig config) {
+        this.concurrencyLimitConfig = ConcurrencyLimitConfig.from(config);
+        boolean perCaller = Boolean.TRUE.equals(config.getRateLimitPerCaller());
+        String algorithm = config.getRateLimitAlgorithm() != null ? config.getRateLimitAlgorithm() : RateLimitRule.TOKEN_BUCKET;
+        this.rateLimitRules = parseRateLimits(config.getRateLimits(), algorithm, perCaller);
+    }
+
+    public ConcurrencyLimit getConcurrencyLimit(String interfaceName) {
+        ConcurrencyLimit concurrencyLimit = concurrencyLimitMap.get(interfaceName);
+        if (concurrencyLimit != null) {
+            return concurrencyLimit;
+        }
+        return concurrencyLimitMap.computeIfAbsent(interfaceName, key -> {
+            ConcurrencyLimit limit = new GradientConcurrencyLimit(interfaceName, concurrencyLimitConfig);
+            log.info("为接口 [{}] 创建了新的并发限制: {}", interfaceName, limit);
+            return limit;
         });
     }
+
+    /**
+     * 检查QPS限流规则，方法和所属接口上的规则都要通过
+     * @return 拒绝该请求的规则，全部通过时返回null
+     */
+    public RateLimitRule checkRateLimit(String interfaceName, String methodSignature, String caller) {
+        if (rateLimitRules.isEmpty()) {
+            return null;
+        }
+        RateLimitRule methodRule = rateLimitRules.get(methodSignature);
+        if (methodRule != null && !methodRule.tryAcquire(caller)) {
+            return methodRule;
+        }
+        RateLimitRule interfaceRule = rateLimitRules.get(interfaceName);
+        if (interfaceRule != null && !interfaceRule.tryAcquire(caller)) {
+            //请求没有被处理，归还方法规则上已经取得的许可
+            if (methodRule != null) {
+                methodRule.refund(caller);
+            }
+            return interfaceRule;
+        }
+        return null;
+    }
+
+    RateLimitRule getRateLimitRule(String target) {
+        return rateLimitRules.get(target);
+    }
+
+    //格式：目标:每秒请求数[:突发容量]，多个规则用分号分隔（方法签名的参数列表中含有逗号）
+    private static Map<String, RateLimitRule> parseRateLimits(String spec, String algorithm, boolean perCaller) {
+        Map<String, RateLimitRule> rules = new HashMap<>();
+        if (spec == null || spec.isBlank()) {
+            return rules;
+        }
+        for (String item : spec.split(";")) {
+            if (item.isBlank()) {
+                continue;
+            }
+            String[] parts = item.trim().split(":");
+            if (parts.length != 2 && parts.length != 3) {
+                log.error("限流配置格式错误，应为 目标:每秒请求数[:突发容量]，实际为: {}", item);
+                continue;
+            }
+            try {
+                String target = parts[0].trim();
+                double permitsPerSecond = Double.parseDouble(parts[1].trim());
+                //未指定突发容量时允许一秒的请求量
+                int burst = parts.length == 3 ? Integer.parseInt(parts[2].trim()) : (int) Math.max(1, Math.ceil(permitsPerSecond));
+                RateLimitRule rule = new RateLimitRule(target, permitsPerSecond, burst, algorithm, perCaller);
+                rules.put(target, rule);
+                log.info("QPS限流规则: {}", rule);
+            } catch (IllegalArgumentException e) {
+                log.error("限流配置错误: {}，{}", item, e.getMessage());
+            }
+        }
+        return rules;
+    }
 }
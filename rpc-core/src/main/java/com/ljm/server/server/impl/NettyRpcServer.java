@@ -1,65 +1,91 @@
 package com.ljm.server.server.impl;
 
+import com.ljm.RpcApplication;
 import com.ljm.server.netty.NettyServerInitializer;
 import com.ljm.server.provider.ServiceProvider;
 import com.ljm.server.server.RpcServer;
+import com.ljm.transport.Transport;
+import com.ljm.transport.TransportConfig;
 import io.netty.bootstrap.ServerBootstrap;
-import io.netty.channel.ChannelFuture;
-import io.netty.channel.nio.NioEventLoopGroup;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
-import lombok.AllArgsConstructor;
+import io.netty.channel.Channel;
+import io.netty.channel.EventLoopGroup;
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
 /**
  * @ClassName NettyRpcServer
  * @Description Netty服务端
+ * 传输实现（epoll/NIO）、socket参数和线程数由 {@link TransportConfig} 决定；
+ * epoll下开启SO_REUSEPORT时在同一端口上绑定多个监听通道，由内核把新连接分散到各个通道
  * @Author ljm
  * @LastChangeDate 2025-07-01 10:40
  * @Version v5.0
  */
 @Slf4j
-@AllArgsConstructor
 public class NettyRpcServer implements RpcServer {
     private final ServiceProvider serviceProvider;  // 只需要 ServiceProvider
-    private ChannelFuture channelFuture;  // ChannelFuture 在 start 方法内初始化
+    private final TransportConfig transportConfig;
+    //监听通道，在 start 方法内初始化
+    private final List<Channel> serverChannels = new CopyOnWriteArrayList<>();
+
     public NettyRpcServer(ServiceProvider serviceProvider) {
+        this(serviceProvider, TransportConfig.from(RpcApplication.getRpcConfig()));
+    }
+
+    public NettyRpcServer(ServiceProvider serviceProvider, TransportConfig transportConfig) {
         this.serviceProvider = serviceProvider;
+        this.transportConfig = transportConfig;
     }
 
     @Override
     public void start(int port) {
-        //分别用于处理连接请求和处理 I/O 操作
-        NioEventLoopGroup bossGroup = new NioEventLoopGroup();
-        NioEventLoopGroup workGroup = new NioEventLoopGroup();
-        log.info("Netty服务端启动了");
+        Transport transport = Transport.select(transportConfig);
+        int acceptors = transport.getAcceptors(transportConfig);
+        //分别用于处理连接请求和处理 I/O 操作，每个监听通道占用一个boss线程
+        EventLoopGroup bossGroup = transport.newEventLoopGroup(acceptors, "rpc-server-boss");
+        EventLoopGroup workGroup = transport.newEventLoopGroup(transportConfig.getServerIoThreads(), "rpc-server-io");
+        log.info("Netty服务端启动了，传输：{}，监听通道数：{}", transport, acceptors);
 
         try {
             ServerBootstrap serverBootstrap = new ServerBootstrap();
             serverBootstrap.group(bossGroup, workGroup)
-                    .channel(NioServerSocketChannel.class)
                     .childHandler(new NettyServerInitializer(serviceProvider));
+            transport.configure(serverBootstrap, transportConfig);
 
             // 同步阻塞，绑定端口启动服务
-            channelFuture = serverBootstrap.bind(port).sync();
+            for (int i = 0; i < acceptors; i++) {
+                serverChannels.add(serverBootstrap.bind(port).sync().channel());
+            }
             log.info("Netty服务端已绑定端口：{}", port);
 
             // 阻塞，等待服务关闭
-            channelFuture.channel().closeFuture().sync();
+            for (Channel channel : serverChannels) {
+                channel.closeFuture().sync();
+            }
         } catch (InterruptedException e) {
             //重新设置中断标志，防止中断状态丢失
             Thread.currentThread().interrupt();
             log.error("Netty服务端启动中断：{}", e.getMessage(), e);
         } finally {
+            //部分通道绑定失败时，已绑定的也一并关闭
+            for (Channel channel : serverChannels) {
+                channel.close();
+            }
             shutdown(bossGroup, workGroup);  // 集中管理线程组资源
+            serviceProvider.getBulkheadProvider().shutdown();
             log.info("Netty服务端关闭了");
         }
     }
 
     @Override
     public void stop() {
-        if (channelFuture != null) {
+        if (!serverChannels.isEmpty()) {
             try {
-                channelFuture.channel().close().sync();
+                for (Channel channel : serverChannels) {
+                    channel.close().sync();
+                }
                 log.info("Netty服务端主通道已关闭");
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
@@ -70,7 +96,7 @@ public class NettyRpcServer implements RpcServer {
         }
     }
 
-    private void shutdown(NioEventLoopGroup bossGroup, NioEventLoopGroup workGroup) {
+    private void shutdown(EventLoopGroup bossGroup, EventLoopGroup workGroup) {
         if (bossGroup != null) {
             bossGroup.shutdownGracefully().syncUninterruptibly();
         }
@@ -3,6 +3,8 @@ package com.ljm.server.serverRegister.impl;
 
 import com.ljm.annotation.Retryable;
 import com.ljm.server.serverRegister.ServiceRegister;
+import com.ljm.utils.MethodSignatureUtil;
+import com.ljm.utils.ServiceMetadataUtil;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.curator.RetryPolicy;
 import org.apache.curator.framework.CuratorFramework;
@@ -26,7 +28,6 @@ import java.util.List;
 public class ZKServiceRegister implements ServiceRegister {
     private CuratorFramework client;
     private static final String ROOT_PATH = "MyRPC";
-    private static final String RETRY = "CanRetry";
 
     public ZKServiceRegister() {
         RetryPolicy policy = new ExponentialBackoffRetry(1000, 3);
@@ -50,22 +51,19 @@ public class ZKServiceRegister implements ServiceRegister {
                 log.info("服务节点 {} 创建成功", "/" + serviceName);
             }
 
+            //可重试的方法签名写在地址节点的数据里，消费者监听服务时一并拿到
+            List<String> retryableMethods = getRetryableMethod(clazz);
+            log.info("可重试的方法: {}", retryableMethods);
+            byte[] metadata = ServiceMetadataUtil.encodeRetryableMethods(retryableMethods);
             String path = "/" + serviceName + "/" + getServiceAddress(serviceAddress);
             if (client.checkExists().forPath(path) == null) {
                 //临时节点，服务提供者下线时，会自动删除
-                client.create().creatingParentsIfNeeded().withMode(CreateMode.EPHEMERAL).forPath(path);
+                client.create().creatingParentsIfNeeded().withMode(CreateMode.EPHEMERAL).forPath(path, metadata);
                 log.info("服务地址 {} 注册成功", path);
             } else {
-                log.info("服务地址 {} 已经存在，跳过注册", path);
-            }
-
-            // 注册白名单
-            List<String> retryableMethods = getRetryableMethod(clazz);
-            log.info("可重试的方法: {}", retryableMethods);
-            CuratorFramework rootClient = client.usingNamespace(RETRY);
-            for (String retryableMethod : retryableMethods) {
-                //临时节点，服务提供者下线时，会自动删除
-                rootClient.create().creatingParentsIfNeeded().withMode(CreateMode.EPHEMERAL).forPath("/" + getServiceAddress(serviceAddress) + "/" + retryableMethod);
+                //节点已存在时更新数据，消费者会收到节点变更事件
+                client.setData().forPath(path, metadata);
+                log.info("服务地址 {} 已经存在，更新节点数据", path);
             }
         } catch (Exception e) {
             log.error("服务注册失败，服务名：{}，错误信息：{}", serviceName, e.getMessage(), e);
@@ -82,29 +80,15 @@ public class ZKServiceRegister implements ServiceRegister {
     }
 
     // 判断接口中一个方法是否加了Retryable注解
-    private List<String> getRetryableMethod(Class<?> clazz){
+    // 包括父接口中的方法，签名按服务接口计算，与服务端方法表和客户端发出的签名一致
+    static List<String> getRetryableMethod(Class<?> clazz){
         List<String> retryableMethods = new ArrayList<>();
-        for (Method method : clazz.getDeclaredMethods()) {
+        for (Method method : clazz.getMethods()) {
             if (method.isAnnotationPresent(Retryable.class)) {
-                String methodSignature = getMethodSignature(clazz, method);
+                String methodSignature = MethodSignatureUtil.getMethodSignature(clazz, method);
                 retryableMethods.add(methodSignature);
             }
         }
         return retryableMethods;
     }
-
-    private String getMethodSignature(Class<?> clazz, Method method) {
-        StringBuilder sb = new StringBuilder();
-        sb.append(clazz.getName()).append("#").append(method.getName()).append("(");
-        Class<?>[] parameterTypes = method.getParameterTypes();
-        for (int i = 0; i < parameterTypes.length; i++) {
-            sb.append(parameterTypes[i].getName());
-            if (i < parameterTypes.length - 1) {
-                sb.append(",");
-            } else{
-                sb.append(")");
-            }
-        }
-        return sb.toString();
-    }
 }
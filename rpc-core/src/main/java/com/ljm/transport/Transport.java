@@ -0,0 +1,153 @@
+package com.ljm.transport;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.WriteBufferWaterMark;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollChannelOption;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollMode;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * @ClassName Transport
+ * @Description 网络传输实现
+ * Linux上优先使用Netty的原生epoll传输：边缘触发，直接调用系统调用，比JDK NIO少一层Selector封装和垃圾对象；
+ * 原生库不可用（非Linux、架构不支持等）时退回NIO，两者对上层的pipeline完全一致
+ * 客户端和服务端都通过这里创建线程组、选择通道类型并设置socket参数
+ * @Author ljm
+ */
+@Slf4j
+public enum Transport {
+    EPOLL {
+        @Override
+        public EventLoopGroup newEventLoopGroup(int threads, String name) {
+            return new EpollEventLoopGroup(threads, new DefaultThreadFactory(name));
+        }
+
+        @Override
+        public Class<? extends ServerChannel> getServerChannelClass() {
+            return EpollServerSocketChannel.class;
+        }
+
+        @Override
+        public Class<? extends SocketChannel> getChannelClass() {
+            return EpollSocketChannel.class;
+        }
+
+        @Override
+        public boolean supportsReusePort() {
+            return true;
+        }
+
+        @Override
+        void configureServerOptions(ServerBootstrap bootstrap, TransportConfig config) {
+            if (config.isReusePort()) {
+                bootstrap.option(EpollChannelOption.SO_REUSEPORT, true);
+            }
+            bootstrap.childOption(EpollChannelOption.EPOLL_MODE, EpollMode.EDGE_TRIGGERED);
+        }
+
+        @Override
+        void configureClientOptions(Bootstrap bootstrap, TransportConfig config) {
+            bootstrap.option(EpollChannelOption.EPOLL_MODE, EpollMode.EDGE_TRIGGERED);
+        }
+    },
+    NIO {
+        @Override
+        public EventLoopGroup newEventLoopGroup(int threads, String name) {
+            return new NioEventLoopGroup(threads, new DefaultThreadFactory(name));
+        }
+
+        @Override
+        public Class<? extends ServerChannel> getServerChannelClass() {
+            return NioServerSocketChannel.class;
+        }
+
+        @Override
+        public Class<? extends SocketChannel> getChannelClass() {
+            return NioSocketChannel.class;
+        }
+    };
+
+    //threads为0时使用Netty的默认线程数
+    public abstract EventLoopGroup newEventLoopGroup(int threads, String name);
+
+    public abstract Class<? extends ServerChannel> getServerChannelClass();
+
+    public abstract Class<? extends SocketChannel> getChannelClass();
+
+    public boolean supportsReusePort() {
+        return false;
+    }
+
+    void configureServerOptions(ServerBootstrap bootstrap, TransportConfig config) {
+    }
+
+    void configureClientOptions(Bootstrap bootstrap, TransportConfig config) {
+    }
+
+    //设置服务端的监听参数和每个连接的socket参数
+    public ServerBootstrap configure(ServerBootstrap bootstrap, TransportConfig config) {
+        bootstrap.channel(getServerChannelClass())
+                .option(ChannelOption.SO_BACKLOG, config.getSoBacklog())
+                .childOption(ChannelOption.TCP_NODELAY, config.isTcpNoDelay())
+                .childOption(ChannelOption.WRITE_BUFFER_WATER_MARK, getWaterMark(config));
+        configureServerOptions(bootstrap, config);
+        return bootstrap;
+    }
+
+    public Bootstrap configure(Bootstrap bootstrap, TransportConfig config) {
+        bootstrap.channel(getChannelClass())
+                .option(ChannelOption.TCP_NODELAY, config.isTcpNoDelay())
+                .option(ChannelOption.WRITE_BUFFER_WATER_MARK, getWaterMark(config));
+        configureClientOptions(bootstrap, config);
+        return bootstrap;
+    }
+
+    //服务端的监听通道数：只有支持SO_REUSEPORT时才能在同一端口上绑定多个
+    public int getAcceptors(TransportConfig config) {
+        if (!config.isReusePort() || config.getAcceptors() <= 1) {
+            return 1;
+        }
+        if (!supportsReusePort()) {
+            log.warn("{} 传输不支持SO_REUSEPORT，只使用一个监听通道", this);
+            return 1;
+        }
+        return config.getAcceptors();
+    }
+
+    private static WriteBufferWaterMark getWaterMark(TransportConfig config) {
+        return new WriteBufferWaterMark(config.getWriteBufferLowWaterMark(), config.getWriteBufferHighWaterMark());
+    }
+
+    /**
+     * 按配置选择传输实现
+     * auto：epoll可用时使用epoll，否则NIO；epoll：要求使用epoll，不可用时记录原因后退回NIO；nio：总是NIO
+     */
+    public static Transport select(TransportConfig config) {
+        String name = config.getTransport();
+        if ("nio".equalsIgnoreCase(name)) {
+            return NIO;
+        }
+        if (Epoll.isAvailable()) {
+            return EPOLL;
+        }
+        if ("epoll".equalsIgnoreCase(name)) {
+            log.warn("epoll传输不可用，退回NIO: {}", String.valueOf(Epoll.unavailabilityCause()));
+        } else {
+            log.debug("epoll传输不可用，使用NIO: {}", String.valueOf(Epoll.unavailabilityCause()));
+        }
+        return NIO;
+    }
+}
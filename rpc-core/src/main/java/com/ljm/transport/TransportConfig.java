@@ -0,0 +1,53 @@
+package com.ljm.transport;
+
+import com.ljm.config.KRpcConfig;
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * @ClassName TransportConfig
+ * @Description 网络传输参数，未配置的项使用默认值
+ * 配置示例：
+ * rpc.transport=auto
+ * rpc.serverIoThreads=0
+ * rpc.clientIoThreads=0
+ * rpc.tcpNoDelay=true
+ * rpc.soBacklog=1024
+ * rpc.reusePort=true
+ * rpc.acceptors=4
+ * rpc.writeBufferLowWaterMark=32768
+ * rpc.writeBufferHighWaterMark=65536
+ * @Author ljm
+ */
+@Getter
+@Builder
+public class TransportConfig {
+    //auto、epoll 或 nio
+    private final String transport;
+    //IO线程数，0表示使用Netty默认值
+    private final int serverIoThreads;
+    private final int clientIoThreads;
+    //RPC消息小而频繁，默认关闭Nagle算法
+    private final boolean tcpNoDelay;
+    private final int soBacklog;
+    //在同一端口上绑定多个监听通道，由内核在它们之间分配新连接
+    private final boolean reusePort;
+    private final int acceptors;
+    //待发送数据超过高水位时通道变为不可写，降到低水位以下恢复
+    private final int writeBufferLowWaterMark;
+    private final int writeBufferHighWaterMark;
+
+    public static TransportConfig from(KRpcConfig config) {
+        return TransportConfig.builder()
+                .transport(config.getTransport() != null ? config.getTransport() : "auto")
+                .serverIoThreads(config.getServerIoThreads() != null ? config.getServerIoThreads() : 0)
+                .clientIoThreads(config.getClientIoThreads() != null ? config.getClientIoThreads() : 0)
+                .tcpNoDelay(config.getTcpNoDelay() != null ? config.getTcpNoDelay() : true)
+                .soBacklog(config.getSoBacklog() != null ? config.getSoBacklog() : 1024)
+                .reusePort(config.getReusePort() != null ? config.getReusePort() : false)
+                .acceptors(config.getAcceptors() != null ? config.getAcceptors() : 1)
+                .writeBufferLowWaterMark(config.getWriteBufferLowWaterMark() != null ? config.getWriteBufferLowWaterMark() : 32 * 1024)
+                .writeBufferHighWaterMark(config.getWriteBufferHighWaterMark() != null ? config.getWriteBufferHighWaterMark() : 64 * 1024)
+                .build();
+    }
+}
@@ -0,0 +1,104 @@
+package com.ljm.client.cache;
+
+import com.ljm.client.cache.RegistrySnapshotStore.RegistryData;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RegistrySnapshotStoreTest {
+    private static final String REGISTRY = "127.0.0.1:2181/MyRPC";
+
+    @TempDir
+    Path dir;
+
+    private Map<String, Map<String, Set<String>>> services() {
+        Map<String, Set<String>> addresses = new HashMap<>();
+        addresses.put("127.0.0.1:8001", Set.of("com.ljm.service.UserService#getUserByUserId(java.lang.Integer)"));
+        addresses.put("127.0.0.1:8002", Set.of());
+        Map<String, Map<String, Set<String>>> services = new HashMap<>();
+        services.put("com.ljm.service.UserService", addresses);
+        return services;
+    }
+
+    private Path save(Map<String, Map<String, Set<String>>> services) {
+        Path file = dir.resolve("registry.snapshot");
+        new RegistrySnapshotStore(file, REGISTRY, () -> new RegistryData(services)).saveNow();
+        return file;
+    }
+
+    @Test
+    public void testRoundTrip() {
+        Map<String, Map<String, Set<String>>> services = services();
+        Path file = save(services);
+        assertEquals(services, new RegistrySnapshotStore(file, REGISTRY, () -> RegistryData.EMPTY).load().getServices());
+    }
+
+    @Test
+    public void testMissingFileIsEmpty() {
+        Path file = dir.resolve("missing.snapshot");
+        assertTrue(new RegistrySnapshotStore(file, REGISTRY, () -> RegistryData.EMPTY).load().getServices().isEmpty());
+    }
+
+    @Test
+    public void testTruncatedFileIsIgnored() throws Exception {
+        Path file = save(services());
+        byte[] bytes = Files.readAllBytes(file);
+        RegistrySnapshotStore store = new RegistrySnapshotStore(file, REGISTRY, () -> RegistryData.EMPTY);
+        //任意位置截断都不应抛出异常，也不应读出一部分数据
+        for (int length = 0; length < bytes.length; length++) {
+            Files.write(file, Arrays.copyOf(bytes, length));
+            assertTrue(store.load().getServices().isEmpty(), "truncated at " + length);
+        }
+    }
+
+    @Test
+    public void testCorruptFileIsIgnored() throws Exception {
+        Path file = save(services());
+        byte[] bytes = Files.readAllBytes(file);
+        RegistrySnapshotStore store = new RegistrySnapshotStore(file, REGISTRY, () -> RegistryData.EMPTY);
+
+        byte[] badMagic = bytes.clone();
+        badMagic[0] ^= 0x7F;
+        Files.write(file, badMagic);
+        assertTrue(store.load().getServices().isEmpty());
+
+        //服务数改成很大的值
+        byte[] badCount = bytes.clone();
+        int countOffset = 4 + 4 + 2 + REGISTRY.length() + 8;
+        badCount[countOffset] = 0x7F;
+        Files.write(file, badCount);
+        assertTrue(store.load().getServices().isEmpty());
+
+        byte[] trailing = Arrays.copyOf(bytes, bytes.length + 3);
+        Files.write(file, trailing);
+        assertTrue(store.load().getServices().isEmpty());
+    }
+
+    @Test
+    public void testOtherRegistryIsIgnored() {
+        Path file = save(services());
+        RegistrySnapshotStore store = new RegistrySnapshotStore(file, "10.0.0.1:2181/MyRPC", () -> RegistryData.EMPTY);
+        assertTrue(store.load().getServices().isEmpty());
+    }
+
+    @Test
+    public void testSaveKeepsServicesOfOtherProcesses() {
+        Path file = save(services());
+        Map<String, Map<String, Set<String>>> other = new HashMap<>();
+        other.put("com.ljm.service.BlogService", Map.of("127.0.0.1:9001", Set.of()));
+        new RegistrySnapshotStore(file, REGISTRY, () -> new RegistryData(other)).saveNow();
+
+        Map<String, Map<String, Set<String>>> expected = services();
+        expected.putAll(other);
+        assertEquals(expected, new RegistrySnapshotStore(file, REGISTRY, () -> RegistryData.EMPTY).load().getServices());
+    }
+}
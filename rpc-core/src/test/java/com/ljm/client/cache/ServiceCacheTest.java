@@ -0,0 +1,48 @@
+package com.ljm.client.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ServiceCacheTest {
+    private final ServiceCache cache = new ServiceCache();
+    //收到的下线通知：服务名 地址
+    private final List<String> removed = new CopyOnWriteArrayList<>();
+
+    {
+        cache.addListener(new ServiceChangeListener() {
+            @Override
+            public void onInstanceAdded(String serviceName, String address) {
+            }
+
+            @Override
+            public void onInstanceRemoved(String serviceName, String address) {
+                removed.add(serviceName + " " + address);
+            }
+        });
+    }
+
+    @Test
+    public void testRemoveServiceNotifiesEachAddress() {
+        cache.addServiceToCache("a.Service", "127.0.0.1:8001");
+        cache.addServiceToCache("a.Service", "127.0.0.1:8002");
+        cache.addServiceToCache("b.Service", "127.0.0.1:8001");
+        cache.removeService("a.Service");
+        assertEquals(List.of("a.Service 127.0.0.1:8001", "a.Service 127.0.0.1:8002"), removed.stream().sorted().toList());
+        assertTrue(cache.getServiceListFromCache("a.Service").isEmpty());
+        //地址仍在提供其他服务
+        assertTrue(cache.containsAddress("127.0.0.1:8001"));
+        assertFalse(cache.containsAddress("127.0.0.1:8002"));
+    }
+
+    @Test
+    public void testRemoveUnknownServiceDoesNothing() {
+        cache.removeService("a.Service");
+        assertTrue(removed.isEmpty());
+    }
+}
@@ -0,0 +1,210 @@
+package com.ljm.client.circuitbreaker;
+
+import com.ljm.client.circuitbreaker.CircuitBreaker.CircuitBreakerState;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CircuitBreakerTest {
+    private static final long WINDOW_MS = 10_000;
+    private static final long OPEN_MS = 5_000;
+    private static final int HALF_OPEN_CALLS = 3;
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(200);
+
+    private final AtomicLong now = new AtomicLong(1_000_000);
+    private final CircuitBreaker breaker = new CircuitBreaker("test", CircuitBreakerConfig.builder()
+            .windowMs(WINDOW_MS)
+            .buckets(10)
+            .minRequests(10)
+            .failureRate(0.5)
+            .slowCallMs(100)
+            .slowCallRate(0.5)
+            .openMs(OPEN_MS)
+            .halfOpenCalls(HALF_OPEN_CALLS)
+            .build(), now::get);
+
+    private void record(int successes, int failures) {
+        for (int i = 0; i < successes; i++) {
+            breaker.recordSuccess(FAST);
+        }
+        for (int i = 0; i < failures; i++) {
+            breaker.recordFailure(FAST);
+        }
+    }
+
+    private void trip() {
+        record(0, 10);
+        assertEquals(CircuitBreakerState.OPEN, breaker.getState());
+    }
+
+    private int permits(int attempts) {
+        int allowed = 0;
+        for (int i = 0; i < attempts; i++) {
+            if (breaker.allowRequest()) {
+                allowed++;
+            }
+        }
+        return allowed;
+    }
+
+    @Test
+    public void testTripsOnFailureRate() {
+        record(5, 4);
+        assertEquals(CircuitBreakerState.CLOSED, breaker.getState());
+        record(0, 1);
+        assertEquals(CircuitBreakerState.OPEN, breaker.getState());
+        assertFalse(breaker.allowRequest());
+    }
+
+    @Test
+    public void testStaysClosedBelowFailureRate() {
+        record(6, 4);
+        record(1, 0);
+        assertEquals(CircuitBreakerState.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void testMinRequests() {
+        record(0, 9);
+        assertEquals(CircuitBreakerState.CLOSED, breaker.getState());
+        assertTrue(breaker.allowRequest());
+    }
+
+    @Test
+    public void testTripsOnSlowCallRate() {
+        record(5, 0);
+        for (int i = 0; i < 4; i++) {
+            breaker.recordSuccess(SLOW);
+        }
+        assertEquals(CircuitBreakerState.CLOSED, breaker.getState());
+        breaker.recordSuccess(SLOW);
+        assertEquals(CircuitBreakerState.OPEN, breaker.getState());
+    }
+
+    @Test
+    public void testBucketsExpireOutOfWindow() {
+        record(0, 9);
+        now.addAndGet(WINDOW_MS);
+        //之前的9次失败已经移出窗口，只剩1/10的失败率
+        record(9, 1);
+        assertEquals(CircuitBreakerState.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void testBucketsInsideWindowCount() {
+        record(0, 5);
+        now.addAndGet(WINDOW_MS - 1000);
+        record(4, 1);
+        assertEquals(CircuitBreakerState.OPEN, breaker.getState());
+    }
+
+    @Test
+    public void testOpenRejectsUntilOpenMsElapses() {
+        trip();
+        now.addAndGet(OPEN_MS - 1);
+        assertFalse(breaker.allowRequest());
+        now.addAndGet(1);
+        assertTrue(breaker.allowRequest());
+        assertEquals(CircuitBreakerState.HALF_OPEN, breaker.getState());
+    }
+
+    @Test
+    public void testHalfOpenAllowsExactlyHalfOpenCalls() {
+        trip();
+        now.addAndGet(OPEN_MS);
+        assertEquals(HALF_OPEN_CALLS, permits(HALF_OPEN_CALLS + 5));
+    }
+
+    @Test
+    public void testHalfOpenPermitsUnderContention() throws Exception {
+        trip();
+        now.addAndGet(OPEN_MS);
+        AtomicInteger allowed = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < 1000; i++) {
+                    if (breaker.allowRequest()) {
+                        allowed.incrementAndGet();
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(HALF_OPEN_CALLS, allowed.get());
+    }
+
+    @Test
+    public void testHalfOpenClosesWhenAllProbesSucceed() {
+        trip();
+        now.addAndGet(OPEN_MS);
+        assertEquals(HALF_OPEN_CALLS, permits(HALF_OPEN_CALLS));
+        record(HALF_OPEN_CALLS - 1, 0);
+        assertEquals(CircuitBreakerState.HALF_OPEN, breaker.getState());
+        record(1, 0);
+        assertEquals(CircuitBreakerState.CLOSED, breaker.getState());
+        assertTrue(breaker.allowRequest());
+        //关闭后重新统计，开启前的失败不再计入
+        record(0, 9);
+        assertEquals(CircuitBreakerState.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void testHalfOpenReopensOnOneFailure() {
+        trip();
+        now.addAndGet(OPEN_MS);
+        assertEquals(HALF_OPEN_CALLS, permits(HALF_OPEN_CALLS));
+        record(1, 1);
+        assertEquals(CircuitBreakerState.OPEN, breaker.getState());
+        assertFalse(breaker.allowRequest());
+        //重新开启的时间从这次失败算起
+        now.addAndGet(OPEN_MS);
+        assertTrue(breaker.allowRequest());
+    }
+
+    @Test
+    public void testHalfOpenReopensOnSlowProbe() {
+        trip();
+        now.addAndGet(OPEN_MS);
+        permits(1);
+        breaker.recordSuccess(SLOW);
+        assertEquals(CircuitBreakerState.OPEN, breaker.getState());
+    }
+
+    @Test
+    public void testStuckProbeRoundIsReissued() {
+        trip();
+        now.addAndGet(OPEN_MS);
+        assertEquals(HALF_OPEN_CALLS, permits(HALF_OPEN_CALLS + 1));
+        //探测请求的结果一直没有上报
+        now.addAndGet(OPEN_MS - 1);
+        assertFalse(breaker.allowRequest());
+        now.addAndGet(1);
+        assertEquals(HALF_OPEN_CALLS, permits(HALF_OPEN_CALLS + 1));
+        assertEquals(CircuitBreakerState.HALF_OPEN, breaker.getState());
+        //新一轮探测全部成功后关闭
+        record(HALF_OPEN_CALLS, 0);
+        assertEquals(CircuitBreakerState.CLOSED, breaker.getState());
+    }
+}
@@ -0,0 +1,60 @@
+package com.ljm.client.outlier;
+
+import com.ljm.client.servicecenter.CallOutcome;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class OutlierDetectorTest {
+    private static final String A = "127.0.0.1:8001";
+    private static final String B = "127.0.0.1:8002";
+
+    private final OutlierDetector detector = new OutlierDetector(OutlierDetectionConfig.builder()
+            .consecutiveErrors(5)
+            .slowCallMs(0)
+            .baseEjectionMs(30_000)
+            .maxEjectionMs(300_000)
+            .maxEjectionPercent(0.5)
+            .build());
+
+    @Test
+    public void testConsecutiveFailuresEject() {
+        report(A, CallOutcome.FAILURE, 5);
+        assertTrue(detector.isEjected(A));
+        assertEquals(List.of(B), detector.filter("svc", List.of(A, B)));
+    }
+
+    @Test
+    public void testRejectedCallsDoNotEject() {
+        report(A, CallOutcome.REJECTED, 100);
+        assertFalse(detector.isEjected(A));
+        assertEquals(List.of(A, B), detector.filter("svc", List.of(A, B)));
+    }
+
+    @Test
+    public void testRejectedCallsNeitherCountNorReset() {
+        report(A, CallOutcome.FAILURE, 4);
+        report(A, CallOutcome.REJECTED, 3);
+        assertFalse(detector.isEjected(A));
+        report(A, CallOutcome.FAILURE, 1);
+        assertTrue(detector.isEjected(A));
+    }
+
+    @Test
+    public void testSuccessResetsCount() {
+        report(A, CallOutcome.FAILURE, 4);
+        report(A, CallOutcome.SUCCESS, 1);
+        report(A, CallOutcome.FAILURE, 4);
+        assertFalse(detector.isEjected(A));
+    }
+
+    private void report(String address, CallOutcome outcome, int times) {
+        for (int i = 0; i < times; i++) {
+            detector.onRequestComplete(address, 1_000_000, outcome);
+        }
+    }
+}
@@ -0,0 +1,6 @@
+package com.ljm.client.proxy;
+
+//服务接口的父接口，本身不是服务
+public interface BaseQuery<K> {
+    K find(K key);
+}
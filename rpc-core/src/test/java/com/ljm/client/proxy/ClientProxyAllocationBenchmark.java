@@ -0,0 +1,79 @@
+package com.ljm.client.proxy;
+
+import com.ljm.client.rpcclient.RpcClient;
+import com.ljm.client.servicecenter.ServiceCenter;
+import com.ljm.message.RpcRequest;
+import com.ljm.message.RpcResponse;
+import com.ljm.pojo.User;
+import com.ljm.service.UserService;
+
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * @ClassName ClientProxyAllocationBenchmark
+ * @Description 代理调用路径每次调用在调用线程上分配的字节数和耗时
+ * 服务中心和网络客户端都替换为直接返回的桩，只测ClientProxy自身的开销
+ * 直接运行main方法，不依赖JMH；建议把日志级别调到INFO以上再运行
+ * @Author ljm
+ */
+public class ClientProxyAllocationBenchmark {
+    private static final int WARMUP = 500_000;
+    private static final int ITERATIONS = 2_000_000;
+    //防止JIT把调用当成死代码消除
+    private static long sink;
+
+    public static void main(String[] args) throws Exception {
+        InetSocketAddress address = new InetSocketAddress("127.0.0.1", 9999);
+        RpcResponse response = RpcResponse.sussess(User.builder().id(1).userName("bench").gender(true).build());
+        RpcClient client = new RpcClient() {
+            @Override
+            public RpcResponse sendRequest(RpcRequest request) {
+                return response;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        ServiceCenter serviceCenter = new ServiceCenter() {
+            @Override
+            public InetSocketAddress serviceDiscovery(RpcRequest request) {
+                return address;
+            }
+
+            @Override
+            public boolean checkRetry(InetSocketAddress serviceAddress, String methodSignature) {
+                return false;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        ClientProxy clientProxy = new ClientProxy(serviceCenter, serviceAddress -> client);
+        UserService userService = clientProxy.getProxy(UserService.class);
+        Integer id = 1;
+
+        com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        for (int round = 0; round < 3; round++) {
+            call(userService, id, WARMUP);
+            long bytes = threadMXBean.getThreadAllocatedBytes(threadId);
+            long start = System.nanoTime();
+            call(userService, id, ITERATIONS);
+            long nanos = System.nanoTime() - start;
+            bytes = threadMXBean.getThreadAllocatedBytes(threadId) - bytes;
+            System.out.printf("proxy call  %8.1f ns/op  %6d B/op%n", (double) nanos / ITERATIONS, bytes / ITERATIONS);
+        }
+        System.out.println("sink=" + sink);
+    }
+
+    private static void call(UserService userService, Integer id, int iterations) {
+        for (int i = 0; i < iterations; i++) {
+            User user = userService.getUserByUserId(id);
+            sink += user == null ? 0 : 1;
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package com.ljm.client.proxy;
+
+import com.ljm.client.cache.ServiceChangeListener;
+import com.ljm.client.retry.FailoverRetry;
+import com.ljm.client.retry.RetryBudget;
+import com.ljm.client.retry.RetryConfig;
+import com.ljm.client.rpcclient.RpcClient;
+import com.ljm.client.servicecenter.CallOutcome;
+import com.ljm.client.servicecenter.ServiceCenter;
+import com.ljm.message.RpcRequest;
+import com.ljm.message.RpcResponse;
+import com.ljm.pojo.User;
+import com.ljm.service.UserService;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class ClientProxyTest {
+    private static final InetSocketAddress A = new InetSocketAddress("127.0.0.1", 8001);
+    private static final InetSocketAddress B = new InetSocketAddress("127.0.0.1", 8002);
+    //默认熔断配置下，窗口内请求数达到20且失败率过半时开启
+    private static final int BREAKER_MIN_REQUESTS = 20;
+
+    //记录上报给服务中心的调用结果
+    private final List<CallOutcome> outcomes = new CopyOnWriteArrayList<>();
+    private final List<ServiceChangeListener> listeners = new CopyOnWriteArrayList<>();
+    //每个地址收到的请求数
+    private final Map<InetSocketAddress, AtomicInteger> calls = new ConcurrentHashMap<>();
+    //服务中心是否声明方法可重试
+    private volatile boolean retryable;
+    //每个地址创建的客户端数
+    private final Map<InetSocketAddress, AtomicInteger> clients = new ConcurrentHashMap<>();
+
+    //总是优先选A，A被排除时选B，都被排除时仍选A
+    private final ServiceCenter serviceCenter = new ServiceCenter() {
+        @Override
+        public InetSocketAddress serviceDiscovery(RpcRequest request) {
+            return A;
+        }
+
+        @Override
+        public InetSocketAddress serviceDiscovery(RpcRequest request, Object hashKey, Set<InetSocketAddress> excluded) {
+            return excluded.contains(A) && !excluded.contains(B) ? B : A;
+        }
+
+        @Override
+        public boolean checkRetry(InetSocketAddress serviceAddress, String methodSignature) {
+            return retryable;
+        }
+
+        @Override
+        public void onRequestComplete(InetSocketAddress serviceAddress, long latencyNanos, CallOutcome outcome) {
+            outcomes.add(outcome);
+        }
+
+        @Override
+        public void addServiceChangeListener(ServiceChangeListener listener) {
+            listeners.add(listener);
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+
+    private UserService proxy(Function<InetSocketAddress, RpcResponse> responses) {
+        return proxy(responses, new FailoverRetry());
+    }
+
+    private UserService proxy(Function<InetSocketAddress, RpcResponse> responses, FailoverRetry retry) {
+        ClientProxy clientProxy = new ClientProxy(serviceCenter, address -> {
+            clients.computeIfAbsent(address, k -> new AtomicInteger()).incrementAndGet();
+            return new RpcClient() {
+                @Override
+                public RpcResponse sendRequest(RpcRequest request) {
+                    calls.computeIfAbsent(address, k -> new AtomicInteger()).incrementAndGet();
+                    return responses.apply(address);
+                }
+
+                @Override
+                public void close() {
+                }
+            };
+        }, retry);
+        return clientProxy.getProxy(UserService.class);
+    }
+
+    private int calls(InetSocketAddress address) {
+        AtomicInteger count = calls.get(address);
+        return count == null ? 0 : count.get();
+    }
+
+    @Test
+    public void testOverloadedResponseIsReportedAsRejected() {
+        proxy(address -> RpcResponse.overloaded("服务端过载")).insertUserId(new User());
+        assertEquals(List.of(CallOutcome.REJECTED), outcomes);
+    }
+
+    @Test
+    public void testFailedResponseIsReportedAsFailure() {
+        proxy(address -> RpcResponse.fail("执行失败")).insertUserId(new User());
+        assertEquals(List.of(CallOutcome.FAILURE), outcomes);
+    }
+
+    @Test
+    public void testSuccessfulResponseIsReportedAsSuccess() {
+        proxy(address -> RpcResponse.sussess(1)).insertUserId(new User());
+        assertEquals(List.of(CallOutcome.SUCCESS), outcomes);
+    }
+
+    @Test
+    public void testOpenBreakerSelectsAnotherInstance() {
+        UserService userService = proxy(address -> address.equals(A) ? RpcResponse.fail("执行失败") : RpcResponse.sussess(7));
+        for (int i = 0; i < BREAKER_MIN_REQUESTS; i++) {
+            assertNull(userService.insertUserId(new User()));
+        }
+        //A上的熔断器已开启，不可重试的请求没有发出，换到B
+        assertEquals(7, userService.insertUserId(new User()));
+        assertEquals(BREAKER_MIN_REQUESTS, calls(A));
+        assertEquals(1, calls(B));
+    }
+
+    @Test
+    public void testAllBreakersOpenReturnsNull() {
+        UserService userService = proxy(address -> RpcResponse.fail("执行失败"));
+        for (int i = 0; i < BREAKER_MIN_REQUESTS; i++) {
+            userService.insertUserId(new User());
+        }
+        //A被熔断后请求都落到B，直到B也被熔断
+        for (int i = 0; i < BREAKER_MIN_REQUESTS; i++) {
+            userService.insertUserId(new User());
+        }
+        int sent = calls(A) + calls(B);
+        assertNull(userService.insertUserId(new User()));
+        assertEquals(sent, calls(A) + calls(B));
+    }
+
+    @Test
+    public void testBreakersAreRemovedWithInstance() {
+        UserService userService = proxy(address -> address.equals(A) ? RpcResponse.fail("执行失败") : RpcResponse.sussess(7));
+        for (int i = 0; i < BREAKER_MIN_REQUESTS; i++) {
+            userService.insertUserId(new User());
+        }
+        userService.insertUserId(new User());
+        assertEquals(BREAKER_MIN_REQUESTS, calls(A));
+        //A下线后重新上线，使用新的熔断器
+        listeners.forEach(listener -> listener.onInstanceRemoved(UserService.class.getName(), "127.0.0.1:8001"));
+        userService.insertUserId(new User());
+        assertEquals(BREAKER_MIN_REQUESTS + 1, calls(A));
+    }
+
+    @Test
+    public void testRpcClientIsRemovedWithInstance() {
+        UserService userService = proxy(address -> RpcResponse.sussess(1));
+        userService.insertUserId(new User());
+        userService.insertUserId(new User());
+        assertEquals(1, clients.get(A).get());
+        //其他地址下线不影响A的客户端
+        listeners.forEach(listener -> listener.onInstanceRemoved(UserService.class.getName(), "127.0.0.1:8002"));
+        userService.insertUserId(new User());
+        assertEquals(1, clients.get(A).get());
+        listeners.forEach(listener -> listener.onInstanceRemoved(UserService.class.getName(), "127.0.0.1:8001"));
+        userService.insertUserId(new User());
+        assertEquals(2, clients.get(A).get());
+    }
+
+    @Test
+    public void testProxiesShareRetryBudget() {
+        retryable = true;
+        RetryConfig config = RetryConfig.builder()
+                .maxAttempts(3).baseBackoffMs(0).maxBackoffMs(0).budgetRatio(0.5).minRetriesPerSecond(0).build();
+        RetryBudget budget = new RetryBudget(config.getBudgetRatio(), config.getMinRetriesPerSecond());
+        AtomicBoolean failing = new AtomicBoolean();
+        Function<InetSocketAddress, RpcResponse> responses = address -> failing.get() ? RpcResponse.fail("执行失败") : RpcResponse.sussess(1);
+        UserService first = proxy(responses, new FailoverRetry(config, budget));
+        UserService second = proxy(responses, new FailoverRetry(config, budget));
+        //第一个代理的4次调用存入2次重试的额度
+        for (int i = 0; i < 4; i++) {
+            first.insertUserId(new User());
+        }
+        failing.set(true);
+        calls.clear();
+        //第二个代理用上了第一个代理存入的额度，重试两次；各自的预算只够它存入的半次，不会重试
+        second.insertUserId(new User());
+        assertEquals(3, calls(A) + calls(B));
+        calls.clear();
+        //剩余的额度加上这次存入的半次，还能重试一次
+        first.insertUserId(new User());
+        assertEquals(2, calls(A) + calls(B));
+        calls.clear();
+        //额度用完，只存入了半次，不再重试
+        second.insertUserId(new User());
+        assertEquals(1, calls(A) + calls(B));
+    }
+}
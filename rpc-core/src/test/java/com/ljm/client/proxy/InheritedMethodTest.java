@@ -0,0 +1,122 @@
+package com.ljm.client.proxy;
+
+import com.ljm.client.rpcclient.RpcClient;
+import com.ljm.client.servicecenter.ServiceCenter;
+import com.ljm.message.RpcRequest;
+import com.ljm.message.RpcResponse;
+import com.ljm.stub.ServiceSkeleton;
+import com.ljm.stub.StubNaming;
+import com.ljm.utils.MethodSignatureUtil;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+//父接口中的方法按服务接口的签名从客户端发出，服务端按同一签名找到方法
+public class InheritedMethodTest {
+    private static final InetSocketAddress ADDRESS = new InetSocketAddress("127.0.0.1", 8001);
+
+    //客户端发出的请求
+    private final List<RpcRequest> requests = new CopyOnWriteArrayList<>();
+
+    private final ServiceCenter serviceCenter = new ServiceCenter() {
+        @Override
+        public InetSocketAddress serviceDiscovery(RpcRequest request) {
+            return ADDRESS;
+        }
+
+        @Override
+        public boolean checkRetry(InetSocketAddress serviceAddress, String methodSignature) {
+            return false;
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+
+    private ClientProxy clientProxy(Function<RpcRequest, RpcResponse> server) {
+        return new ClientProxy(serviceCenter, address -> new RpcClient() {
+            @Override
+            public RpcResponse sendRequest(RpcRequest request) {
+                requests.add(request);
+                return server.apply(request);
+            }
+
+            @Override
+            public void close() {
+            }
+        });
+    }
+
+    //与 ServiceProvider.registerMethods 相同：服务接口的 getMethods() 按服务接口计算签名
+    private static Set<String> serverSignatures(Class<?> service) {
+        return Arrays.stream(service.getMethods())
+                .map(method -> MethodSignatureUtil.getMethodSignature(service, method))
+                .collect(Collectors.toSet());
+    }
+
+    @Test
+    public void testInheritedMethodRoundTripsThroughStubAndSkeleton() throws Exception {
+        InheritedService implementation = new InheritedService() {
+            @Override
+            public String echo(String value) {
+                return value;
+            }
+
+            @Override
+            public String find(String key) {
+                return "found " + key;
+            }
+        };
+        ServiceSkeleton skeleton = (ServiceSkeleton) Class.forName(StubNaming.getSkeletonClassName(InheritedService.class.getName()))
+                .getConstructor(InheritedService.class).newInstance(implementation);
+        List<String> skeletonSignatures = Arrays.asList(skeleton.getMethodSignatures());
+        //服务端按请求中的签名找到骨架下标后调用
+        InheritedService service = clientProxy(request -> {
+            try {
+                int index = skeletonSignatures.indexOf(request.getMethodSignature());
+                return RpcResponse.sussess(skeleton.invoke(index, request.getParams()));
+            } catch (Throwable e) {
+                return RpcResponse.fail(e.toString());
+            }
+        }).getProxy(InheritedService.class);
+        assertTrue(service.getClass().getName().endsWith(StubNaming.STUB_SUFFIX));
+
+        assertEquals("found key", service.find("key"));
+        RpcRequest request = requests.get(0);
+        assertEquals(InheritedService.class.getName(), request.getInterfaceName());
+        assertEquals("com.ljm.client.proxy.InheritedService#find(java.lang.Object)", request.getMethodSignature());
+        assertTrue(serverSignatures(InheritedService.class).contains(request.getMethodSignature()));
+        //接口上的@RpcTimeout对父接口中的方法同样生效
+        assertEquals(1234, request.getTimeout());
+    }
+
+    @Test
+    public void testInheritedMethodThroughDynamicProxy() {
+        PlainInheritedService service = clientProxy(request -> RpcResponse.sussess(7)).getProxy(PlainInheritedService.class);
+        assertEquals(7, service.find(1));
+        RpcRequest request = requests.get(0);
+        assertEquals(PlainInheritedService.class.getName(), request.getInterfaceName());
+        assertTrue(serverSignatures(PlainInheritedService.class).contains(request.getMethodSignature()));
+    }
+
+    @Test
+    public void testSameInheritedMethodKeepsEachServiceInterface() throws Exception {
+        ClientProxy clientProxy = clientProxy(request -> RpcResponse.sussess(null));
+        clientProxy.getProxy(InheritedService.class).find("a");
+        clientProxy.getProxy(PlainInheritedService.class).find(1);
+        Method find = BaseQuery.class.getMethod("find", Object.class);
+        assertEquals(MethodSignatureUtil.getMethodSignature(InheritedService.class, find), requests.get(0).getMethodSignature());
+        assertEquals(MethodSignatureUtil.getMethodSignature(PlainInheritedService.class, find), requests.get(1).getMethodSignature());
+    }
+}
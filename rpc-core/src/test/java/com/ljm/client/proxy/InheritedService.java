@@ -0,0 +1,11 @@
+package com.ljm.client.proxy;
+
+import com.ljm.annotation.RpcService;
+import com.ljm.annotation.RpcTimeout;
+
+//有生成的桩类和骨架类
+@RpcService
+@RpcTimeout(1234)
+public interface InheritedService extends BaseQuery<String> {
+    String echo(String value);
+}
@@ -0,0 +1,5 @@
+package com.ljm.client.proxy;
+
+//没有 @RpcService，客户端走JDK动态代理
+public interface PlainInheritedService extends BaseQuery<Integer> {
+}
@@ -0,0 +1,200 @@
+package com.ljm.client.retry;
+
+import com.ljm.client.circuitbreaker.CircuitBreakerOpenException;
+import com.ljm.message.RpcRequest;
+import com.ljm.message.RpcResponse;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FailoverRetryTest {
+    private static final InetSocketAddress A = new InetSocketAddress("127.0.0.1", 8001);
+    private static final InetSocketAddress B = new InetSocketAddress("127.0.0.1", 8002);
+    private static final InetSocketAddress C = new InetSocketAddress("127.0.0.1", 8003);
+    private static final List<InetSocketAddress> ALL = List.of(A, B, C);
+
+    //每次尝试的地址
+    private final List<InetSocketAddress> attempts = new CopyOnWriteArrayList<>();
+    //每次重新选择时传入的已尝试地址
+    private final List<Set<InetSocketAddress>> excludedSets = new CopyOnWriteArrayList<>();
+
+    private static RetryConfig config(int maxAttempts, long baseBackoffMs, double budgetRatio, int minRetriesPerSecond) {
+        return RetryConfig.builder()
+                .maxAttempts(maxAttempts)
+                .baseBackoffMs(baseBackoffMs)
+                .maxBackoffMs(1000)
+                .budgetRatio(budgetRatio)
+                .minRetriesPerSecond(minRetriesPerSecond)
+                .build();
+    }
+
+    private static RpcRequest request(long timeout) {
+        RpcRequest request = new RpcRequest();
+        request.setMethodSignature("com.ljm.service.UserService#getUserByUserId(java.lang.Integer)");
+        request.setTimeout(timeout);
+        return request;
+    }
+
+    //按顺序选择第一个没有尝试过的地址
+    private InetSocketAddress reselect(Set<InetSocketAddress> tried) {
+        excludedSets.add(new HashSet<>(tried));
+        for (InetSocketAddress address : ALL) {
+            if (!tried.contains(address)) {
+                return address;
+            }
+        }
+        return null;
+    }
+
+    private RpcResponse execute(FailoverRetry retry, RpcRequest request,
+                                Function<InetSocketAddress, CompletableFuture<RpcResponse>> attempt) throws Exception {
+        return retry.execute(request, A, address -> {
+            attempts.add(address);
+            return attempt.apply(address);
+        }, this::reselect).get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testBackoffBounds() {
+        FailoverRetry retry = new FailoverRetry(config(3, 50, 0.1, 10));
+        long[] caps = {50, 100, 200, 400, 800, 1000, 1000};
+        for (int retries = 1; retries <= caps.length; retries++) {
+            long max = 0;
+            for (int i = 0; i < 2000; i++) {
+                long backoff = retry.backoff(retries);
+                assertTrue(backoff >= 0 && backoff <= caps[retries - 1], "retries=" + retries + " backoff=" + backoff);
+                max = Math.max(max, backoff);
+            }
+            //均匀随机，上限附近应当能取到
+            assertTrue(max > caps[retries - 1] / 2, "retries=" + retries + " max=" + max);
+        }
+        //次数很大时不溢出
+        assertTrue(retry.backoff(100) <= 1000);
+    }
+
+    @Test
+    public void testSuccessIsNotRetried() throws Exception {
+        FailoverRetry retry = new FailoverRetry(config(3, 0, 0.1, 10));
+        RpcResponse response = execute(retry, request(0), address -> CompletableFuture.completedFuture(RpcResponse.sussess(1)));
+        assertEquals(200, response.getCode());
+        assertEquals(List.of(A), attempts);
+    }
+
+    @Test
+    public void testMaxAttempts() throws Exception {
+        FailoverRetry retry = new FailoverRetry(config(3, 0, 0.1, 10));
+        RpcResponse response = execute(retry, request(0), address -> CompletableFuture.completedFuture(RpcResponse.fail("执行失败")));
+        assertEquals(500, response.getCode());
+        assertEquals(List.of(A, B, C), attempts);
+    }
+
+    @Test
+    public void testFailoverToHealthyInstance() throws Exception {
+        FailoverRetry retry = new FailoverRetry(config(3, 0, 0.1, 10));
+        RpcResponse response = execute(retry, request(0), address -> address.equals(C)
+                ? CompletableFuture.completedFuture(RpcResponse.sussess(1))
+                : CompletableFuture.failedFuture(new RuntimeException("连接失败")));
+        assertEquals(200, response.getCode());
+        assertEquals(List.of(A, B, C), attempts);
+    }
+
+    @Test
+    public void testReselectExcludesTriedAddresses() throws Exception {
+        FailoverRetry retry = new FailoverRetry(config(3, 0, 0.1, 10));
+        execute(retry, request(0), address -> CompletableFuture.completedFuture(RpcResponse.overloaded("过载")));
+        assertEquals(List.of(Set.of(A), Set.of(A, B)), excludedSets);
+    }
+
+    @Test
+    public void testDeadlineStopsRetries() throws Exception {
+        FailoverRetry retry = new FailoverRetry(config(3, 0, 0.1, 10));
+        //第一次尝试失败时已经超过了截止时间
+        RpcResponse response = execute(retry, request(50), address -> {
+            sleep(80);
+            return CompletableFuture.completedFuture(RpcResponse.fail("执行失败"));
+        });
+        assertEquals(500, response.getCode());
+        assertEquals(List.of(A), attempts);
+    }
+
+    @Test
+    public void testLaterAttemptsUseRemainingTime() throws Exception {
+        FailoverRetry retry = new FailoverRetry(config(2, 0, 0.1, 10));
+        RpcRequest request = request(1000);
+        List<Long> timeouts = new ArrayList<>();
+        execute(retry, request, address -> {
+            timeouts.add(request.getTimeout());
+            sleep(100);
+            return CompletableFuture.completedFuture(RpcResponse.fail("执行失败"));
+        });
+        assertEquals(2, timeouts.size());
+        assertEquals(1000, timeouts.get(0));
+        assertTrue(timeouts.get(1) <= 900, "second attempt timeout " + timeouts.get(1));
+    }
+
+    @Test
+    public void testBudgetExhausted() throws Exception {
+        FailoverRetry retry = new FailoverRetry(config(3, 0, 0, 0));
+        retry.onRequest();
+        RpcResponse response = execute(retry, request(0), address -> CompletableFuture.completedFuture(RpcResponse.fail("执行失败")));
+        assertEquals(500, response.getCode());
+        assertEquals(List.of(A), attempts);
+    }
+
+    @Test
+    public void testPerSecondFloorAllowsRetry() throws Exception {
+        FailoverRetry retry = new FailoverRetry(config(2, 0, 0, 1));
+        execute(retry, request(0), address -> CompletableFuture.completedFuture(RpcResponse.fail("执行失败")));
+        assertEquals(List.of(A, B), attempts);
+    }
+
+    @Test
+    public void testOpenBreakerReselectsWithoutBudget() throws Exception {
+        //没有任何重试预算，退避时间很长：熔断的实例上请求没有发出，仍应立即换实例
+        FailoverRetry retry = new FailoverRetry(config(1, 60_000, 0, 0));
+        long start = System.nanoTime();
+        RpcResponse response = execute(retry, request(0), address -> address.equals(C)
+                ? CompletableFuture.completedFuture(RpcResponse.sussess(1))
+                : CompletableFuture.failedFuture(new CircuitBreakerOpenException("熔断器开启")));
+        assertEquals(200, response.getCode());
+        assertEquals(List.of(A, B, C), attempts);
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+    }
+
+    @Test
+    public void testAllBreakersOpen() throws Exception {
+        FailoverRetry retry = new FailoverRetry(config(3, 0, 0.1, 10));
+        RpcResponse response = execute(retry, request(0),
+                address -> CompletableFuture.failedFuture(new CircuitBreakerOpenException("熔断器开启")));
+        assertEquals(500, response.getCode());
+        assertEquals(List.of(A, B, C), attempts);
+        assertFalse(excludedSets.isEmpty());
+    }
+
+    private static void sleep(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Test
+    public void testDefaultInstancesShareBudget() {
+        assertSame(RetryBudget.shared(), new FailoverRetry().getBudget());
+        assertSame(new FailoverRetry().getBudget(), new FailoverRetry().getBudget());
+    }
+}
@@ -0,0 +1,73 @@
+package com.ljm.client.retry;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RetryBudgetTest {
+    private final AtomicLong now = new AtomicLong(1_000_000);
+
+    private static int acquireAll(RetryBudget budget) {
+        int acquired = 0;
+        while (budget.tryAcquire()) {
+            acquired++;
+        }
+        return acquired;
+    }
+
+    @Test
+    public void testRatioOfRequests() {
+        RetryBudget budget = new RetryBudget(0.1, 0, now::get);
+        assertFalse(budget.tryAcquire());
+        for (int i = 0; i < 9; i++) {
+            budget.deposit();
+        }
+        assertFalse(budget.tryAcquire());
+        budget.deposit();
+        assertTrue(budget.tryAcquire());
+        assertFalse(budget.tryAcquire());
+        for (int i = 0; i < 100; i++) {
+            budget.deposit();
+        }
+        assertEquals(10, acquireAll(budget));
+    }
+
+    @Test
+    public void testBalanceIsCapped() {
+        RetryBudget budget = new RetryBudget(0.1, 0, now::get);
+        for (int i = 0; i < 100_000; i++) {
+            budget.deposit();
+        }
+        assertEquals(100, acquireAll(budget));
+    }
+
+    @Test
+    public void testPerSecondFloor() {
+        RetryBudget budget = new RetryBudget(0.1, 3, now::get);
+        assertEquals(3, acquireAll(budget));
+        now.addAndGet(999 - now.get() % 1000);
+        assertFalse(budget.tryAcquire());
+        //进入下一秒，保底名额重新发放
+        now.addAndGet(1);
+        assertEquals(3, acquireAll(budget));
+    }
+
+    @Test
+    public void testBalanceUsedBeforeFloor() {
+        RetryBudget budget = new RetryBudget(0.5, 2, now::get);
+        budget.deposit();
+        budget.deposit();
+        assertEquals(3, acquireAll(budget));
+    }
+
+    @Test
+    public void testDisabled() {
+        RetryBudget budget = new RetryBudget(0, 0, now::get);
+        budget.deposit();
+        assertFalse(budget.tryAcquire());
+    }
+}
@@ -0,0 +1,132 @@
+package com.ljm.client.servicecenter.balacne.impl;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ConsistencyHashBalanceTest {
+    private static final int VIRTUAL_NODES = 160;
+    private static final int KEYS = 20000;
+
+    private static List<String> nodes(int count) {
+        List<String> nodes = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            nodes.add("10.0.0." + (i + 1) + ":9999");
+        }
+        return nodes;
+    }
+
+    @Test
+    public void testRingWalkSkipsExcludedNodes() {
+        List<String> nodes = nodes(3);
+        ConsistencyHashBalance.Ring ring = new ConsistencyHashBalance.Ring(nodes, VIRTUAL_NODES);
+        for (int key = 0; key < 1000; key++) {
+            int hash = ConsistencyHashBalance.getHash("user-" + key);
+            String first = ring.get(hash);
+            assertEquals(first, ring.get(hash, Set.of()));
+            String second = ring.get(hash, Set.of(first));
+            assertNotEquals(first, second);
+            String third = ring.get(hash, Set.of(first, second));
+            assertFalse(third.equals(first) || third.equals(second));
+            //全部被排除时回到原来的落点
+            assertEquals(first, ring.get(hash, new HashSet<>(nodes)));
+        }
+    }
+
+    @Test
+    public void testRingWalkMatchesRingWithoutExcludedNode() {
+        List<String> nodes = nodes(5);
+        ConsistencyHashBalance.Ring ring = new ConsistencyHashBalance.Ring(nodes, VIRTUAL_NODES);
+        for (int key = 0; key < 1000; key++) {
+            int hash = ConsistencyHashBalance.getHash("user-" + key);
+            String first = ring.get(hash);
+            List<String> rest = new ArrayList<>(nodes);
+            rest.remove(first);
+            //跳过失败的节点后选到的，就是该节点下线后这个key会落到的节点
+            assertEquals(new ConsistencyHashBalance.Ring(rest, VIRTUAL_NODES).get(hash), ring.get(hash, Set.of(first)));
+        }
+    }
+
+    @Test
+    public void testBalanceWithExcluded() {
+        ConsistencyHashBalance balance = new ConsistencyHashBalance(VIRTUAL_NODES);
+        List<String> nodes = nodes(3);
+        String first = balance.balance("svc", nodes, 42);
+        String second = balance.balance("svc", nodes, 42, Set.of(first));
+        assertNotEquals(first, second);
+    }
+
+    //节点数从 before 变为 after 时，计算迁移到其他节点的key的比例，并检查迁移只发生在变化的节点上
+    private static double movedFraction(List<String> before, List<String> after) {
+        ConsistencyHashBalance.Ring oldRing = new ConsistencyHashBalance.Ring(before, VIRTUAL_NODES);
+        ConsistencyHashBalance.Ring newRing = new ConsistencyHashBalance.Ring(after, VIRTUAL_NODES);
+        int moved = 0;
+        for (int key = 0; key < KEYS; key++) {
+            int hash = ConsistencyHashBalance.getHash("user-" + key);
+            String oldNode = oldRing.get(hash);
+            String newNode = newRing.get(hash);
+            if (!oldNode.equals(newNode)) {
+                moved++;
+                assertTrue(!after.contains(oldNode) || !before.contains(newNode), oldNode + " -> " + newNode);
+            }
+        }
+        return (double) moved / KEYS;
+    }
+
+    @Test
+    public void testNodeJoinMovesAboutOneNth() {
+        List<String> nodes = nodes(10);
+        double moved = movedFraction(nodes, nodes(11));
+        //新节点分走约 1/11 的key，且只从旧节点迁到新节点
+        assertTrue(moved > 0.5 / 11 && moved < 1.5 / 11, "moved " + moved);
+    }
+
+    @Test
+    public void testNodeLeaveMovesAboutOneNth() {
+        List<String> nodes = nodes(10);
+        List<String> rest = new ArrayList<>(nodes);
+        rest.remove(3);
+        //只有下线节点上的key迁移，约 1/10
+        double moved = movedFraction(nodes, rest);
+        assertTrue(moved > 0.5 / 10 && moved < 1.5 / 10, "moved " + moved);
+    }
+
+    @Test
+    public void testMemberOrderDoesNotChangeRing() {
+        List<String> nodes = nodes(8);
+        List<String> shuffled = new ArrayList<>(nodes);
+        Collections.shuffle(shuffled, new Random(7));
+        ConsistencyHashBalance.Ring ring = new ConsistencyHashBalance.Ring(nodes, VIRTUAL_NODES);
+        ConsistencyHashBalance.Ring shuffledRing = new ConsistencyHashBalance.Ring(shuffled, VIRTUAL_NODES);
+        assertTrue(ring.hasSameMembers(shuffled));
+        for (int key = 0; key < KEYS; key++) {
+            int hash = ConsistencyHashBalance.getHash("user-" + key);
+            assertEquals(ring.get(hash), shuffledRing.get(hash));
+        }
+    }
+
+    @Test
+    public void testSameHashKeyAlwaysMapsToSameNode() {
+        List<String> nodes = nodes(6);
+        List<String> shuffled = new ArrayList<>(nodes);
+        Collections.shuffle(shuffled, new Random(11));
+        ConsistencyHashBalance balance = new ConsistencyHashBalance(VIRTUAL_NODES);
+        ConsistencyHashBalance other = new ConsistencyHashBalance(VIRTUAL_NODES);
+        for (int key = 0; key < 1000; key++) {
+            String node = balance.balance("svc", nodes, key);
+            assertEquals(node, balance.balance("svc", nodes, key));
+            //其他客户端的实例、不同顺序的地址列表也落到同一节点
+            assertEquals(node, other.balance("svc", shuffled, key));
+        }
+    }
+}
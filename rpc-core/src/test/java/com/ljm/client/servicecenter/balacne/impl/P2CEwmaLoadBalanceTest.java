@@ -0,0 +1,87 @@
+package com.ljm.client.servicecenter.balacne.impl;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToLongFunction;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class P2CEwmaLoadBalanceTest {
+    private static final List<String> NODES = List.of("10.0.0.1:9999", "10.0.0.2:9999", "10.0.0.3:9999");
+    private static final String BAD = "10.0.0.3:9999";
+    private static final int REQUESTS = 10000;
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final AtomicLong now = new AtomicLong(1_000_000_000L);
+    private final P2CEwmaLoadBalance balance = new P2CEwmaLoadBalance(now::get);
+
+    //依次发出请求，每个请求在下一个请求之前完成，返回每个节点被选中的次数
+    private Map<String, Integer> run(ToLongFunction<String> latency, String failing) {
+        Map<String, Integer> picks = new HashMap<>();
+        for (int i = 0; i < REQUESTS; i++) {
+            String node = balance.balance(NODES);
+            picks.merge(node, 1, Integer::sum);
+            balance.onRequestStart(node);
+            long nanos = latency.applyAsLong(node);
+            now.addAndGet(nanos);
+            balance.onRequestComplete(node, nanos, !node.equals(failing));
+        }
+        return picks;
+    }
+
+    @Test
+    public void testSlowNodeGetsLessTraffic() {
+        Map<String, Integer> picks = run(node -> node.equals(BAD) ? FAST * 50 : FAST, null);
+        //均匀分配时每个节点约三分之一
+        assertTrue(picks.getOrDefault(BAD, 0) < REQUESTS / 20, picks.toString());
+    }
+
+    @Test
+    public void testFailingNodeGetsLessTraffic() {
+        Map<String, Integer> picks = run(node -> FAST, BAD);
+        assertTrue(picks.getOrDefault(BAD, 0) < REQUESTS / 20, picks.toString());
+    }
+
+    @Test
+    public void testInflightRequestsRaiseCost() {
+        List<String> nodes = List.of("10.0.0.1:9999", "10.0.0.2:9999");
+        balance.onRequestStart(nodes.get(0));
+        //两个节点时每次都比较这两个，在途请求少的一定被选中
+        for (int i = 0; i < 100; i++) {
+            assertEquals(nodes.get(1), balance.balance(nodes));
+        }
+    }
+
+    @Test
+    public void testPenaltyDecaysOverTime() {
+        List<String> nodes = List.of("10.0.0.1:9999", "10.0.0.2:9999");
+        balance.onRequestStart(nodes.get(0));
+        balance.onRequestComplete(nodes.get(0), FAST, false);
+        balance.onRequestStart(nodes.get(1));
+        balance.onRequestComplete(nodes.get(1), FAST * 100, true);
+        assertEquals(nodes.get(1), balance.balance(nodes));
+        //失败的惩罚按时间衰减，之后落到慢节点之下
+        now.addAndGet(TimeUnit.SECONDS.toNanos(60));
+        balance.onRequestStart(nodes.get(1));
+        balance.onRequestComplete(nodes.get(1), FAST * 100, true);
+        assertEquals(nodes.get(0), balance.balance(nodes));
+    }
+
+    @Test
+    public void testCompletionAfterRemovalIsIgnored() {
+        List<String> nodes = List.of("10.0.0.1:9999", "10.0.0.2:9999");
+        balance.onRequestStart(nodes.get(0));
+        balance.delNode(nodes.get(0));
+        //节点移除后才结束的请求不会留下统计数据
+        balance.onRequestComplete(nodes.get(0), TimeUnit.SECONDS.toNanos(10), false);
+        balance.onRequestStart(nodes.get(1));
+        //重新上线的节点从零开始，比有在途请求的节点代价低
+        assertEquals(nodes.get(0), balance.balance(nodes));
+    }
+}
@@ -0,0 +1,265 @@
+package com.ljm.server.bulkhead;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AdmissionQueueTest {
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long TARGET_MS = 5;
+    private static final long INTERVAL_MS = 100;
+
+    private final AtomicLong now = new AtomicLong(1_000_000_000L);
+
+    private AdmissionQueue queue(long maxQueueTimeMs) {
+        return new AdmissionQueue("test", 10_000, AdmissionQueueConfig.builder()
+                .targetMs(TARGET_MS)
+                .intervalMs(INTERVAL_MS)
+                .maxQueueTimeMs(maxQueueTimeMs)
+                .build(), now::get);
+    }
+
+    //到达时间为当前时间，timeoutMs为0表示没有截止时间
+    private Task task(long timeoutMs) {
+        return new Task(now.get(), timeoutMs > 0 ? now.get() + timeoutMs * MS : 0);
+    }
+
+    private void advance(long ms) {
+        now.addAndGet(ms * MS);
+    }
+
+    //每次出队时的排队延迟都是 delayMs，持续 durationMs
+    private void dequeueWithDelay(AdmissionQueue queue, long delayMs, long durationMs) throws Exception {
+        for (long elapsed = 0; elapsed < durationMs; elapsed += 10) {
+            queue.offer(new Task(now.get() - delayMs * MS, 0));
+            assertTrue(queue.take() instanceof Task);
+            advance(10);
+        }
+    }
+
+    @Test
+    public void testExpiredTaskIsDroppedAsExpired() throws Exception {
+        AdmissionQueue queue = queue(0);
+        Task expired = task(50);
+        Task fresh = task(0);
+        queue.offer(expired);
+        queue.offer(fresh);
+        advance(60);
+        assertSame(fresh, queue.take());
+        assertEquals(Boolean.TRUE, expired.dropped);
+        assertNull(fresh.dropped);
+    }
+
+    @Test
+    public void testMaxQueueTimeDropsAsNotExpired() throws Exception {
+        AdmissionQueue queue = queue(50);
+        Task stale = task(1000);
+        queue.offer(stale);
+        advance(60);
+        Task fresh = task(1000);
+        queue.offer(fresh);
+        assertSame(fresh, queue.take());
+        assertEquals(Boolean.FALSE, stale.dropped);
+    }
+
+    @Test
+    public void testTaskWithoutDeadlineIsKept() throws Exception {
+        AdmissionQueue queue = queue(0);
+        Task task = task(0);
+        queue.offer(task);
+        advance(10_000);
+        assertSame(task, queue.take());
+    }
+
+    @Test
+    public void testOtherTasksAreNeverDropped() throws Exception {
+        AdmissionQueue queue = queue(1);
+        Runnable plain = () -> {
+        };
+        queue.offer(plain);
+        advance(10_000);
+        assertSame(plain, queue.take());
+    }
+
+    @Test
+    public void testOverloadNeedsAFullIntervalAboveTarget() throws Exception {
+        AdmissionQueue queue = queue(0);
+        //整个周期内的排队延迟都超过目标值，但周期还没结束
+        dequeueWithDelay(queue, TARGET_MS * 2, INTERVAL_MS - 10);
+        assertFalse(queue.isOverloaded());
+        dequeueWithDelay(queue, TARGET_MS * 2, 10);
+        assertFalse(queue.isOverloaded());
+        //周期结束后的第一次出队切换为过载
+        dequeueWithDelay(queue, TARGET_MS * 2, 10);
+        assertTrue(queue.isOverloaded());
+    }
+
+    @Test
+    public void testShortBurstIsNotOverload() throws Exception {
+        AdmissionQueue queue = queue(0);
+        //周期内只要有一次排队延迟低于目标值，就只是短暂的突发
+        dequeueWithDelay(queue, TARGET_MS * 4, INTERVAL_MS - 20);
+        dequeueWithDelay(queue, 1, 10);
+        dequeueWithDelay(queue, TARGET_MS * 4, 20);
+        assertFalse(queue.isOverloaded());
+    }
+
+    private AdmissionQueue overloadedQueue() throws Exception {
+        AdmissionQueue queue = queue(0);
+        dequeueWithDelay(queue, TARGET_MS * 2, INTERVAL_MS + 10);
+        assertTrue(queue.isOverloaded());
+        return queue;
+    }
+
+    @Test
+    public void testOverloadedQueueIsLifo() throws Exception {
+        AdmissionQueue queue = overloadedQueue();
+        Task first = task(0);
+        Task second = task(0);
+        Task third = task(0);
+        queue.offer(first);
+        queue.offer(second);
+        queue.offer(third);
+        assertSame(third, queue.take());
+        assertSame(second, queue.take());
+    }
+
+    @Test
+    public void testOverloadedQueueDropsStaleHead() throws Exception {
+        AdmissionQueue queue = overloadedQueue();
+        Task stale = task(0);
+        advance(TARGET_MS * 2 + 1);
+        Task fresh = task(0);
+        queue.offer(stale);
+        queue.offer(fresh);
+        assertSame(fresh, queue.take());
+        assertEquals(Boolean.FALSE, stale.dropped);
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void testDrainedQueueReturnsToFifo() throws Exception {
+        AdmissionQueue queue = overloadedQueue();
+        assertNull(queue.poll(0, TimeUnit.NANOSECONDS));
+        assertFalse(queue.isOverloaded());
+        Task first = task(0);
+        Task second = task(0);
+        queue.offer(first);
+        queue.offer(second);
+        assertSame(first, queue.take());
+        assertSame(second, queue.take());
+    }
+
+    /**
+     * 单个工作线程、每个请求耗时10ms、请求以1.5倍处理能力到达、截止时间300ms
+     * 先进先出时积压越来越长，绝大多数请求执行完时调用方早已超时；
+     * AdmissionQueue 过载后改为后进先出并丢弃排队过久的请求，多数请求仍能按时完成，且不浪费执行时间
+     */
+    @Test
+    public void testOverloadSimulation() throws Exception {
+        Result fifo = simulate(new LinkedBlockingDeque<>(10_000));
+        Result admission = simulate(queue(0));
+        assertTrue(admission.useful > fifo.useful * 3, "fifo " + fifo + " admission " + admission);
+        assertEquals(0, admission.late);
+        //处理能力的三分之二用在了按时完成的请求上
+        assertTrue(admission.useful > TASKS / 2, admission.toString());
+    }
+
+    private static final int TASKS = 1200;
+    private static final long SERVICE_NANOS = 10 * MS;
+    private static final long ARRIVAL_NANOS = SERVICE_NANOS * 2 / 3;
+    private static final long TIMEOUT_MS = 300;
+
+    //离散事件模拟：时钟只在请求到达和工作线程处理时推进
+    private Result simulate(BlockingQueue<Runnable> queue) throws Exception {
+        Result result = new Result();
+        List<Task> tasks = new ArrayList<>();
+        long start = now.get();
+        long workerFreeAt = start;
+        int next = 0;
+        while (next < TASKS || !queue.isEmpty()) {
+            //工作线程空闲之前到达的请求入队
+            while (next < TASKS && start + next * ARRIVAL_NANOS <= workerFreeAt) {
+                now.set(start + next * ARRIVAL_NANOS);
+                Task task = task(TIMEOUT_MS);
+                tasks.add(task);
+                queue.offer(task);
+                next++;
+            }
+            now.set(workerFreeAt);
+            Task task = (Task) queue.poll(0, TimeUnit.NANOSECONDS);
+            if (task == null) {
+                //队列为空，等下一个请求到达
+                workerFreeAt = start + next * ARRIVAL_NANOS;
+                continue;
+            }
+            workerFreeAt = now.get() + SERVICE_NANOS;
+            if (workerFreeAt - task.getDeadline() <= 0) {
+                result.useful++;
+            } else {
+                result.late++;
+            }
+        }
+        for (Task task : tasks) {
+            if (task.dropped != null) {
+                result.dropped++;
+            }
+        }
+        return result;
+    }
+
+    private static class Result {
+        //按时完成的请求
+        int useful;
+        //执行了但调用方已经超时的请求，浪费了处理时间
+        int late;
+        int dropped;
+
+        @Override
+        public String toString() {
+            return "useful=" + useful + " late=" + late + " dropped=" + dropped;
+        }
+    }
+
+    private static class Task implements DeadlineTask {
+        private final long arrivedAt;
+        private final long deadline;
+        //null表示没有被丢弃
+        private Boolean dropped;
+
+        Task(long arrivedAt, long deadline) {
+            this.arrivedAt = arrivedAt;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public void run() {
+        }
+
+        @Override
+        public long getArrivedAt() {
+            return arrivedAt;
+        }
+
+        @Override
+        public long getDeadline() {
+            return deadline;
+        }
+
+        @Override
+        public void drop(boolean expired) {
+            dropped = expired;
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.ljm.server.bulkhead;
+
+import com.ljm.config.KRpcConfig;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.Executor;
+
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public class BulkheadProviderTest {
+
+    @Test
+    public void testBadEntriesAreSkipped() {
+        KRpcConfig config = new KRpcConfig();
+        config.setBusinessThreads(1);
+        config.setBulkheads("a.Bad:x:8, b.Bad:2:y,c.Bad:0:8,d.Bad:2,,com.ljm.service.UserService:2:8");
+        BulkheadProvider provider = new BulkheadProvider(config);
+        try {
+            Executor shared = provider.getExecutor("other.Service");
+            for (String bad : new String[]{"a.Bad", "b.Bad", "c.Bad", "d.Bad"}) {
+                assertSame(shared, provider.getExecutor(bad), bad);
+            }
+            assertNotSame(shared, provider.getExecutor("com.ljm.service.UserService"));
+        } finally {
+            provider.shutdown();
+        }
+    }
+}
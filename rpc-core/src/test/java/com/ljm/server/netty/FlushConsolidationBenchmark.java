@@ -0,0 +1,141 @@
+package com.ljm.server.netty;
+
+import com.ljm.RpcApplication;
+import com.ljm.client.rpcclient.impl.NettyRpcClient;
+import com.ljm.message.RequestType;
+import com.ljm.message.RpcRequest;
+import com.ljm.message.RpcResponse;
+import com.ljm.pojo.User;
+import com.ljm.server.provider.ServiceProvider;
+import com.ljm.server.server.impl.NettyRpcServer;
+import com.ljm.service.UserService;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @ClassName FlushConsolidationBenchmark
+ * @Description 合并flush前后的对比：多个线程在同一条连接上流水线式地发送请求，统计吞吐量和每个请求的写系统调用次数
+ * 客户端和服务端在同一进程内，写系统调用次数取自 /proc/self/io 的 syscw（仅Linux），包含两端的所有写操作
+ * 直接运行main方法，不依赖JMH；不需要注册中心，服务注册失败不影响测试；结果只用于对比量级
+ * @Author ljm
+ */
+public class FlushConsolidationBenchmark {
+    private static final int THREADS = 8;
+    //每个线程同时在途的请求数
+    private static final int IN_FLIGHT = 32;
+    private static final int WARMUP = 20_000;
+    private static final int REQUESTS = 100_000;
+
+    public static void main(String[] args) throws Exception {
+        //并发限制放宽到在途请求数以上，只比较传输
+        RpcApplication.getRpcConfig().setConcurrencyInitialLimit(THREADS * IN_FLIGHT * 2);
+        RpcApplication.getRpcConfig().setConcurrencyMaxLimit(THREADS * IN_FLIGHT * 2);
+        int port = 19700;
+        for (int round = 0; round < 2; round++) {
+            //每种配置使用新的端口，从而建立新连接，连接建立时按当前配置初始化pipeline
+            run("flush per message", 0, port++);
+            run("consolidated flush", 256, port++);
+            System.out.println();
+        }
+        System.exit(0);
+    }
+
+    private static void run(String name, int flushBatchSize, int port) throws Exception {
+        RpcApplication.getRpcConfig().setFlushBatchSize(flushBatchSize);
+        ServiceProvider serviceProvider = new ServiceProvider("127.0.0.1", port);
+        //没有注册中心时注册会阻塞重试，放到后台线程；方法表在注册之前就已建好
+        Thread registerThread = new Thread(() -> serviceProvider.provideServiceInterface(new BenchUserService()));
+        registerThread.setDaemon(true);
+        registerThread.start();
+        NettyRpcServer server = new NettyRpcServer(serviceProvider);
+        Thread serverThread = new Thread(() -> server.start(port));
+        serverThread.setDaemon(true);
+        serverThread.start();
+        TimeUnit.MILLISECONDS.sleep(1000);
+
+        NettyRpcClient client = new NettyRpcClient(new InetSocketAddress("127.0.0.1", port));
+        send(client, WARMUP);
+        long writes = readSyscw();
+        long start = System.nanoTime();
+        send(client, REQUESTS);
+        long nanos = System.nanoTime() - start;
+        writes = readSyscw() - writes;
+        System.out.printf("%-18s  %8.0f req/s  %5.2f write syscalls/req%n", name,
+                REQUESTS / (nanos / 1e9), writes < 0 ? Double.NaN : (double) writes / REQUESTS);
+        server.stop();
+    }
+
+    private static void send(NettyRpcClient client, int requests) throws InterruptedException {
+        AtomicLong remaining = new AtomicLong(requests);
+        Thread[] threads = new Thread[THREADS];
+        for (int t = 0; t < THREADS; t++) {
+            threads[t] = new Thread(() -> {
+                Semaphore inFlight = new Semaphore(IN_FLIGHT);
+                while (remaining.getAndDecrement() > 0) {
+                    inFlight.acquireUninterruptibly();
+                    CompletableFuture<RpcResponse> future = client.sendRequestAsync(newRequest());
+                    future.whenComplete((response, e) -> inFlight.release());
+                }
+                inFlight.acquireUninterruptibly(IN_FLIGHT);
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+
+    private static RpcRequest newRequest() {
+        return RpcRequest.builder()
+                .requestType(RequestType.NORMAL)
+                .interfaceName(UserService.class.getName())
+                .methodName("getUserByUserId")
+                .params(new Object[]{1})
+                .paramsType(new Class[]{Integer.class})
+                .methodSignature(UserService.class.getName() + "#getUserByUserId(java.lang.Integer)")
+                .build();
+    }
+
+    //当前进程累计的写系统调用次数，不支持时返回-1
+    private static long readSyscw() {
+        Path io = Paths.get("/proc/self/io");
+        try {
+            for (String line : Files.readAllLines(io)) {
+                if (line.startsWith("syscw:")) {
+                    return Long.parseLong(line.substring("syscw:".length()).trim());
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            return -1;
+        }
+        return -1;
+    }
+
+    //不打日志、不做IO，只测传输开销
+    private static class BenchUserService implements UserService {
+        private final User user = User.builder().id(1).userName("bench").gender(true).build();
+
+        @Override
+        public User getUserByUserId(Integer id) {
+            return user;
+        }
+
+        @Override
+        public Integer insertUserId(User user) {
+            return user.getId();
+        }
+
+        @Override
+        public CompletableFuture<User> getUserByUserIdAsync(Integer id) {
+            return CompletableFuture.completedFuture(user);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.ljm.server.netty;
+
+import com.ljm.message.RpcResponse;
+import com.ljm.server.bulkhead.AdmissionQueue;
+import com.ljm.server.bulkhead.AdmissionQueueConfig;
+import com.ljm.server.netty.NettyRpcServerHandler.RequestTask;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public class RequestTaskTest {
+    private static final String SIGNATURE = "com.ljm.service.UserService#getUserByUserId(java.lang.Integer)";
+
+    private static RequestTask task(long receivedAt, long timeoutMs, CompletableFuture<RpcResponse> responseFuture) {
+        return new RequestTask(SIGNATURE, receivedAt, timeoutMs, responseFuture,
+                () -> responseFuture.complete(RpcResponse.sussess(1)));
+    }
+
+    @Test
+    public void testExpiredDropFails() {
+        CompletableFuture<RpcResponse> responseFuture = new CompletableFuture<>();
+        task(System.nanoTime(), 100, responseFuture).drop(true);
+        assertEquals(500, responseFuture.join().getCode());
+    }
+
+    @Test
+    public void testMaxQueueTimeDropIsOverloaded() throws Exception {
+        AdmissionQueue queue = new AdmissionQueue("test", 16, AdmissionQueueConfig.builder()
+                .targetMs(5)
+                .intervalMs(100)
+                .maxQueueTimeMs(1)
+                .build());
+        CompletableFuture<RpcResponse> stale = new CompletableFuture<>();
+        queue.offer(task(System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(50), 10_000, stale));
+        CompletableFuture<RpcResponse> fresh = new CompletableFuture<>();
+        //到达时间取在将来，排队时间不会超过1ms，不受测试机器快慢影响
+        RequestTask freshTask = task(System.nanoTime() + TimeUnit.SECONDS.toNanos(10), 0, fresh);
+        queue.offer(freshTask);
+
+        assertSame(freshTask, queue.take());
+        //排队过久被丢弃的请求返回503，调用方可以换实例重试，而不是当作执行失败
+        assertEquals(503, stale.join().getCode());
+        assertFalse(fresh.isDone());
+    }
+}
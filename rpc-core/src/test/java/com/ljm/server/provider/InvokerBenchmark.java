@@ -0,0 +1,111 @@
+package com.ljm.server.provider;
+
+import com.ljm.pojo.User;
+import com.ljm.service.UserService;
+import com.ljm.service.UserServiceRpcSkeleton;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * @ClassName InvokerBenchmark
+ * @Description 服务端方法调用方式的简单基准：每次反射查找 / 缓存Method反射调用 / 预解析的MethodHandle / 生成的骨架类
+ * 直接运行main方法，不依赖JMH；结果只用于对比量级
+ * @Author ljm
+ */
+public class InvokerBenchmark {
+    private static final int WARMUP = 2_000_000;
+    private static final int ITERATIONS = 10_000_000;
+    //防止JIT把调用当成死代码消除
+    private static long sink;
+
+    public static void main(String[] args) throws Throwable {
+        UserService service = new BenchUserService();
+        Class<?>[] paramsType = {Integer.class};
+        Object[] params = {1};
+        Method cached = UserService.class.getMethod("getUserByUserId", paramsType);
+        ServiceMethod serviceMethod = new ServiceMethod(1,
+                UserService.class.getName() + "#getUserByUserId(java.lang.Integer)",
+                UserService.class.getName(), service, cached);
+        ServiceMethod skeletonMethod = new ServiceMethod(1,
+                UserService.class.getName() + "#getUserByUserId(java.lang.Integer)",
+                UserService.class.getName(), service, cached, new UserServiceRpcSkeleton(service), 0);
+
+        for (int round = 0; round < 3; round++) {
+            //先跑一轮预热，再正式测量
+            lookup(service, paramsType, params, WARMUP);
+            report("lookup + Method.invoke", lookup(service, paramsType, params, ITERATIONS));
+            reflect(cached, service, params, WARMUP);
+            report("cached Method.invoke ", reflect(cached, service, params, ITERATIONS));
+            handle(serviceMethod, params, WARMUP);
+            report("MethodHandle invoker ", handle(serviceMethod, params, ITERATIONS));
+            skeleton(skeletonMethod, params, WARMUP);
+            report("generated skeleton   ", skeleton(skeletonMethod, params, ITERATIONS));
+            System.out.println();
+        }
+        System.out.println("sink=" + sink);
+    }
+
+    //每种方式单独一个循环，避免共用调用点导致JIT无法内联
+
+    //改造前的做法：每次请求都getMethod再反射调用
+    private static long lookup(Object service, Class<?>[] paramsType, Object[] params, int iterations) throws Exception {
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            Object result = service.getClass().getMethod("getUserByUserId", paramsType).invoke(service, params);
+            sink += result == null ? 0 : 1;
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static long reflect(Method method, Object service, Object[] params, int iterations) throws Exception {
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            Object result = method.invoke(service, params);
+            sink += result == null ? 0 : 1;
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static long handle(ServiceMethod serviceMethod, Object[] params, int iterations) throws Throwable {
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            Object result = serviceMethod.invoke(params);
+            sink += result == null ? 0 : 1;
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static long skeleton(ServiceMethod serviceMethod, Object[] params, int iterations) throws Throwable {
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            Object result = serviceMethod.invoke(params);
+            sink += result == null ? 0 : 1;
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static void report(String name, long nanos) {
+        System.out.printf("%s  %6.2f ns/op%n", name, (double) nanos / ITERATIONS);
+    }
+
+    //不打日志、不做IO，只测调用开销
+    private static class BenchUserService implements UserService {
+        private final User user = User.builder().id(1).userName("bench").gender(true).build();
+
+        @Override
+        public User getUserByUserId(Integer id) {
+            return user;
+        }
+
+        @Override
+        public Integer insertUserId(User user) {
+            return user.getId();
+        }
+
+        @Override
+        public CompletableFuture<User> getUserByUserIdAsync(Integer id) {
+            return CompletableFuture.completedFuture(user);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.ljm.server.rateLimit;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RateLimitRuleTest {
+    private final AtomicLong now = new AtomicLong(1_000_000_000L);
+
+    private void advanceSeconds(long seconds) {
+        now.addAndGet(TimeUnit.SECONDS.toNanos(seconds));
+    }
+
+    //速率极低，测试期间不会补充令牌
+    private RateLimitRule perCallerRule(int burst, int maxCallers) {
+        return new RateLimitRule("com.ljm.service.UserService", 0.001, burst, RateLimitRule.TOKEN_BUCKET, true, maxCallers, now::get);
+    }
+
+    @Test
+    public void testCallersAreCountedSeparately() {
+        RateLimitRule rule = perCallerRule(1, 100);
+        assertTrue(rule.tryAcquire("a"));
+        assertFalse(rule.tryAcquire("a"));
+        assertTrue(rule.tryAcquire("b"));
+        assertEquals(2, rule.getCallerCount());
+    }
+
+    @Test
+    public void testCallersBeyondLimitShareOverflow() {
+        RateLimitRule rule = perCallerRule(1, 3);
+        assertTrue(rule.tryAcquire("a"));
+        assertTrue(rule.tryAcquire("b"));
+        assertTrue(rule.tryAcquire("c"));
+        assertTrue(rule.tryAcquire("d"));
+        assertFalse(rule.tryAcquire("e"));
+        assertEquals(3, rule.getCallerCount());
+    }
+
+    @Test
+    public void testIdleCallersAreEvicted() {
+        RateLimitRule rule = new RateLimitRule("com.ljm.service.UserService", 100, 100, RateLimitRule.TOKEN_BUCKET, true, 3, now::get);
+        rule.tryAcquire("a");
+        rule.tryAcquire("b");
+        rule.tryAcquire("c");
+        advanceSeconds(30);
+        rule.tryAcquire("a");
+        advanceSeconds(40);
+        //b、c空闲超过一分钟被移除，a仍在使用
+        rule.tryAcquire("d");
+        assertEquals(2, rule.getCallerCount());
+    }
+
+    @Test
+    public void testCallersAreKeptUntilBucketRefills() {
+        //从空到满需要200秒，空闲一分钟后还不能移除
+        RateLimitRule rule = new RateLimitRule("com.ljm.service.UserService", 1, 200, RateLimitRule.TOKEN_BUCKET, true, 100, now::get);
+        rule.tryAcquire("a");
+        advanceSeconds(70);
+        rule.tryAcquire("b");
+        assertEquals(2, rule.getCallerCount());
+        advanceSeconds(140);
+        rule.tryAcquire("b");
+        assertEquals(1, rule.getCallerCount());
+    }
+
+    @Test
+    public void testRefundReturnsPermitToCaller() {
+        RateLimitRule rule = perCallerRule(1, 100);
+        assertTrue(rule.tryAcquire("a"));
+        rule.refund("a");
+        assertTrue(rule.tryAcquire("a"));
+        assertFalse(rule.tryAcquire("a"));
+    }
+
+    @Test
+    public void testSharedRuleIgnoresCaller() {
+        RateLimitRule rule = new RateLimitRule("com.ljm.service.UserService", 0.001, 1, RateLimitRule.TOKEN_BUCKET, false, 100, now::get);
+        assertTrue(rule.tryAcquire("a"));
+        assertFalse(rule.tryAcquire("b"));
+        assertEquals(0, rule.getCallerCount());
+    }
+}
@@ -0,0 +1,109 @@
+package com.ljm.server.rateLimit.impl;
+
+import com.ljm.server.rateLimit.ConcurrencyLimitConfig;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class GradientConcurrencyLimitTest {
+    private static final long WINDOW_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long HEALTHY_RTT = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final AtomicLong now = new AtomicLong(1_000_000_000L);
+
+    private GradientConcurrencyLimit limit(int initial, int min, int max) {
+        ConcurrencyLimitConfig config = ConcurrencyLimitConfig.builder()
+                .initialLimit(initial).minLimit(min).maxLimit(max).rttTolerance(1.5).build();
+        return new GradientConcurrencyLimit("com.ljm.service.UserService", config, now::get);
+    }
+
+    //一个窗口：同时处理 concurrency 个请求，都以 latencyNanos 结束，最后一个请求结束时窗口到期
+    private void window(GradientConcurrencyLimit limit, int concurrency, long latencyNanos) {
+        for (int i = 0; i < concurrency; i++) {
+            assertTrue(limit.tryAcquire());
+        }
+        for (int i = 0; i < concurrency - 1; i++) {
+            limit.release(latencyNanos);
+        }
+        now.addAndGet(WINDOW_NANOS);
+        limit.release(latencyNanos);
+    }
+
+    //把并发用满的窗口
+    private void saturated(GradientConcurrencyLimit limit, long latencyNanos) {
+        window(limit, limit.getLimit(), latencyNanos);
+    }
+
+    @Test
+    public void testRejectsAtLimit() {
+        GradientConcurrencyLimit limit = limit(10, 1, 100);
+        for (int i = 0; i < 10; i++) {
+            assertTrue(limit.tryAcquire());
+        }
+        assertFalse(limit.tryAcquire());
+        limit.cancel();
+        assertTrue(limit.tryAcquire());
+    }
+
+    @Test
+    public void testGrowsBySqrtWhenHealthy() {
+        GradientConcurrencyLimit limit = limit(100, 10, 1000);
+        saturated(limit, HEALTHY_RTT);
+        //新上限 100 + sqrt(100)，平滑后增加其中的20%
+        assertEquals(102, limit.getLimit());
+        saturated(limit, HEALTHY_RTT);
+        assertEquals(104, limit.getLimit());
+    }
+
+    @Test
+    public void testShrinksOnLatencyRise() {
+        GradientConcurrencyLimit limit = limit(100, 10, 1000);
+        for (int i = 0; i < 20; i++) {
+            saturated(limit, HEALTHY_RTT);
+        }
+        int before = limit.getLimit();
+        assertTrue(before > 100);
+        //延迟升到4倍，梯度取下限0.5：新上限 0.9 * 上限 + 0.2 * sqrt(上限)
+        saturated(limit, HEALTHY_RTT * 4);
+        int after = limit.getLimit();
+        assertEquals((int) (before * 0.9 + 0.2 * Math.sqrt(before)), after, 1);
+        saturated(limit, HEALTHY_RTT * 4);
+        assertTrue(limit.getLimit() < after);
+    }
+
+    @Test
+    public void testHoldsWhileUnderused() {
+        GradientConcurrencyLimit limit = limit(100, 10, 1000);
+        //并发不到上限的一半，延迟变化都不调整
+        for (int i = 0; i < 10; i++) {
+            window(limit, 40, HEALTHY_RTT);
+        }
+        window(limit, 40, HEALTHY_RTT * 10);
+        assertEquals(100, limit.getLimit());
+        window(limit, 50, HEALTHY_RTT);
+        assertTrue(limit.getLimit() > 100);
+    }
+
+    @Test
+    public void testStaysWithinBounds() {
+        GradientConcurrencyLimit limit = limit(100, 10, 150);
+        for (int i = 0; i < 100; i++) {
+            saturated(limit, HEALTHY_RTT);
+            assertTrue(limit.getLimit() <= 150);
+        }
+        assertEquals(150, limit.getLimit());
+        //延迟持续上升，上限收缩到下限为止
+        long rtt = HEALTHY_RTT;
+        for (int i = 0; i < 50; i++) {
+            rtt = rtt * 3 / 2;
+            saturated(limit, rtt);
+            assertTrue(limit.getLimit() >= 10);
+        }
+        assertEquals(10, limit.getLimit());
+    }
+}
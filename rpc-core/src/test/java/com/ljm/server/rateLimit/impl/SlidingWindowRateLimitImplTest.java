@@ -0,0 +1,64 @@
+package com.ljm.server.rateLimit.impl;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SlidingWindowRateLimitImplTest {
+    private final AtomicLong now = new AtomicLong(1_000_000_000L);
+
+    private static int takeAll(SlidingWindowRateLimitImpl limit) {
+        int taken = 0;
+        while (limit.getToken()) {
+            taken++;
+        }
+        return taken;
+    }
+
+    private void advanceMillis(long millis) {
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+
+    @Test
+    public void testLimitWithinWindow() {
+        SlidingWindowRateLimitImpl limit = new SlidingWindowRateLimitImpl(100, 1000, now::get);
+        assertEquals(100, takeAll(limit));
+        advanceMillis(999);
+        assertFalse(limit.getToken());
+    }
+
+    @Test
+    public void testPreviousWindowIsWeighted() {
+        SlidingWindowRateLimitImpl limit = new SlidingWindowRateLimitImpl(100, 1000, now::get);
+        assertEquals(100, takeAll(limit));
+        //新窗口过去25%：上一窗口按75%计入，还剩25个
+        advanceMillis(1250);
+        assertEquals(25, takeAll(limit));
+        //过去75%：上一窗口计入25个，加上当前窗口的25个，还剩50个
+        advanceMillis(500);
+        assertEquals(50, takeAll(limit));
+    }
+
+    @Test
+    public void testSkippedWindowResets() {
+        SlidingWindowRateLimitImpl limit = new SlidingWindowRateLimitImpl(100, 1000, now::get);
+        assertEquals(100, takeAll(limit));
+        //中间空了一个窗口，上一窗口没有请求
+        advanceMillis(2100);
+        assertEquals(100, takeAll(limit));
+    }
+
+    @Test
+    public void testRefundReturnsPermit() {
+        SlidingWindowRateLimitImpl limit = new SlidingWindowRateLimitImpl(10, 1000, now::get);
+        assertEquals(10, takeAll(limit));
+        limit.refund();
+        assertTrue(limit.getToken());
+        assertFalse(limit.getToken());
+    }
+}
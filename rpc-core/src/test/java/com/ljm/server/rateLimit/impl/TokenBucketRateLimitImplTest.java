@@ -0,0 +1,114 @@
+package com.ljm.server.rateLimit.impl;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TokenBucketRateLimitImplTest {
+    private final AtomicLong now = new AtomicLong(1_000_000_000L);
+
+    private static int takeAll(TokenBucketRateLimitImpl bucket) {
+        int taken = 0;
+        while (bucket.getToken()) {
+            taken++;
+        }
+        return taken;
+    }
+
+    //以固定步长推进时间并一直取令牌，返回取到的总数
+    private int drain(TokenBucketRateLimitImpl bucket, long durationNanos, long stepNanos) {
+        int taken = takeAll(bucket);
+        for (long elapsed = 0; elapsed < durationNanos; elapsed += stepNanos) {
+            now.addAndGet(stepNanos);
+            taken += takeAll(bucket);
+        }
+        return taken;
+    }
+
+    @Test
+    public void testBurstThenReject() {
+        TokenBucketRateLimitImpl bucket = new TokenBucketRateLimitImpl(10, 5, 1, now::get);
+        assertEquals(5, takeAll(bucket));
+        assertFalse(bucket.getToken());
+    }
+
+    @Test
+    public void testOneTokenPerInterval() {
+        TokenBucketRateLimitImpl bucket = new TokenBucketRateLimitImpl(10, 5, 1, now::get);
+        takeAll(bucket);
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(99));
+        assertFalse(bucket.getToken());
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(1));
+        assertTrue(bucket.getToken());
+        assertFalse(bucket.getToken());
+    }
+
+    @Test
+    public void testIdleRefillsUpToCapacity() {
+        TokenBucketRateLimitImpl bucket = new TokenBucketRateLimitImpl(10, 5, 1, now::get);
+        takeAll(bucket);
+        now.addAndGet(TimeUnit.SECONDS.toNanos(60));
+        assertEquals(5, takeAll(bucket));
+    }
+
+    @Test
+    public void testLongRunRate() {
+        TokenBucketRateLimitImpl bucket = new TokenBucketRateLimitImpl(100, 5, 1, now::get);
+        //10秒内：初始的5个加上每秒100个
+        assertEquals(5 + 1000, drain(bucket, TimeUnit.SECONDS.toNanos(10), TimeUnit.MILLISECONDS.toNanos(1)));
+    }
+
+    @Test
+    public void testStripedTotalMatchesUnstriped() {
+        long duration = TimeUnit.SECONDS.toNanos(2);
+        long step = TimeUnit.MICROSECONDS.toNanos(100);
+        int unstriped = drain(new TokenBucketRateLimitImpl(10_000, 64, 1, now::get), duration, step);
+        TokenBucketRateLimitImpl striped = new TokenBucketRateLimitImpl(10_000, 64, 8, now::get);
+        assertEquals(8, striped.getStripes());
+        int stripedTotal = drain(striped, duration, step);
+        //各分段独立补充，最多相差每段一个令牌
+        assertTrue(Math.abs(unstriped - stripedTotal) <= 8, unstriped + " vs " + stripedTotal);
+    }
+
+    @Test
+    public void testStripedBurstUsesWholeCapacity() {
+        //容量除不尽时余数分给前面的分段，总量不变
+        TokenBucketRateLimitImpl bucket = new TokenBucketRateLimitImpl(10_000, 13, 4, now::get);
+        assertEquals(13, takeAll(bucket));
+    }
+
+    @Test
+    public void testRefundReturnsToken() {
+        TokenBucketRateLimitImpl bucket = new TokenBucketRateLimitImpl(10, 5, 1, now::get);
+        takeAll(bucket);
+        bucket.refund();
+        assertTrue(bucket.getToken());
+        assertFalse(bucket.getToken());
+    }
+
+    @Test
+    public void testRefundOnFullBucketIsDropped() {
+        TokenBucketRateLimitImpl bucket = new TokenBucketRateLimitImpl(10, 5, 1, now::get);
+        bucket.refund();
+        assertEquals(5, takeAll(bucket));
+    }
+
+    @Test
+    public void testDefaultStripesKeepsLowRatesUnstriped() {
+        assertEquals(1, TokenBucketRateLimitImpl.defaultStripes(1000, 2000));
+        assertEquals(1, TokenBucketRateLimitImpl.defaultStripes(1_000_000, 1));
+        assertTrue(TokenBucketRateLimitImpl.defaultStripes(1_000_000, 2000) <= Runtime.getRuntime().availableProcessors() * 2);
+    }
+
+    @Test
+    public void testInvalidStripes() {
+        assertThrows(IllegalArgumentException.class, () -> new TokenBucketRateLimitImpl(10, 5, 3, now::get));
+        assertThrows(IllegalArgumentException.class, () -> new TokenBucketRateLimitImpl(10, 2, 4, now::get));
+    }
+}
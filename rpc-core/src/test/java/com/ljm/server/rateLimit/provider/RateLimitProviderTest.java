@@ -0,0 +1,81 @@
+package com.ljm.server.rateLimit.provider;
+
+import com.ljm.config.KRpcConfig;
+import com.ljm.server.rateLimit.RateLimitRule;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RateLimitProviderTest {
+    private static final String SERVICE = "com.ljm.service.UserService";
+    private static final String METHOD = SERVICE + "#getUserByUserId(java.lang.Integer)";
+
+    private static RateLimitProvider provider(String rateLimits) {
+        KRpcConfig config = new KRpcConfig();
+        config.setRateLimits(rateLimits);
+        return new RateLimitProvider(config);
+    }
+
+    @Test
+    public void testParseRules() {
+        RateLimitProvider provider = provider(SERVICE + ":5000; " + METHOD + ":1000:2000;");
+        RateLimitRule serviceRule = provider.getRateLimitRule(SERVICE);
+        assertEquals(5000, serviceRule.getPermitsPerSecond());
+        //未指定突发容量时允许一秒的请求量
+        assertEquals(5000, serviceRule.getBurst());
+        assertEquals(RateLimitRule.TOKEN_BUCKET, serviceRule.getAlgorithm());
+        RateLimitRule methodRule = provider.getRateLimitRule(METHOD);
+        assertEquals(1000, methodRule.getPermitsPerSecond());
+        assertEquals(2000, methodRule.getBurst());
+    }
+
+    @Test
+    public void testFractionalRateHasBurstOfAtLeastOne() {
+        assertEquals(1, provider(SERVICE + ":0.5").getRateLimitRule(SERVICE).getBurst());
+    }
+
+    @Test
+    public void testBadEntriesAreSkipped() {
+        RateLimitProvider provider = provider("a.Bad; b.Bad:1:2:3 ;c.Bad:abc;d.Bad:10:x;e.Bad:-1; ;" + SERVICE + ":10");
+        for (String target : new String[]{"a.Bad", "b.Bad", "c.Bad", "d.Bad", "e.Bad"}) {
+            assertNull(provider.getRateLimitRule(target), target);
+        }
+        assertEquals(10, provider.getRateLimitRule(SERVICE).getPermitsPerSecond());
+    }
+
+    @Test
+    public void testNoRules() {
+        assertNull(provider(null).checkRateLimit(SERVICE, METHOD, "caller"));
+        assertNull(provider("  ").checkRateLimit(SERVICE, METHOD, "caller"));
+    }
+
+    @Test
+    public void testMethodRuleRejectsFirst() {
+        RateLimitProvider provider = provider(SERVICE + ":0.001:10;" + METHOD + ":0.001:1");
+        assertNull(provider.checkRateLimit(SERVICE, METHOD, "caller"));
+        assertSame(provider.getRateLimitRule(METHOD), provider.checkRateLimit(SERVICE, METHOD, "caller"));
+        //方法上的规则不影响同一接口的其他方法
+        assertNull(provider.checkRateLimit(SERVICE, SERVICE + "#insertUserId(com.ljm.pojo.User)", "caller"));
+    }
+
+    @Test
+    public void testInterfaceRejectionDoesNotConsumeMethodQuota() {
+        RateLimitProvider provider = provider(SERVICE + ":0.001:2;" + METHOD + ":0.001:5");
+        assertNull(provider.checkRateLimit(SERVICE, METHOD, "caller"));
+        assertNull(provider.checkRateLimit(SERVICE, METHOD, "caller"));
+        RateLimitRule serviceRule = provider.getRateLimitRule(SERVICE);
+        for (int i = 0; i < 10; i++) {
+            assertSame(serviceRule, provider.checkRateLimit(SERVICE, METHOD, "caller"));
+        }
+        //被接口规则拒绝的请求归还了方法规则的许可，方法规则还剩3个
+        RateLimitRule methodRule = provider.getRateLimitRule(METHOD);
+        for (int i = 0; i < 3; i++) {
+            assertTrue(methodRule.tryAcquire("caller"));
+        }
+        assertFalse(methodRule.tryAcquire("caller"));
+    }
+}
@@ -0,0 +1,34 @@
+package com.ljm.server.serverRegister.impl;
+
+import com.ljm.annotation.Retryable;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class ZKServiceRegisterTest {
+
+    interface BaseQuery<K> {
+        @Retryable
+        K find(K key);
+
+        void remove(K key);
+    }
+
+    interface QueryService extends BaseQuery<String> {
+        @Retryable
+        String echo(String value);
+
+        String update(String value);
+    }
+
+    @Test
+    public void testInheritedRetryableMethodsArePublished() {
+        List<String> retryable = ZKServiceRegister.getRetryableMethod(QueryService.class);
+        String service = QueryService.class.getName();
+        assertEquals(Set.of(service + "#find(java.lang.Object)", service + "#echo(java.lang.String)"), new HashSet<>(retryable));
+    }
+}
@@ -7,6 +7,7 @@ import lombok.extern.slf4j.Slf4j;
 
 import java.util.Random;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * @ClassName UserServiceImpl
@@ -38,5 +39,11 @@ public class UserServiceImpl implements UserService {
         // 假设插入数据返回用户ID
         return user.getId();
     }
+
+    @Override
+    public CompletableFuture<User> getUserByUserIdAsync(Integer id) {
+        // 模拟异步查询，结果完成后由框架写回客户端
+        return CompletableFuture.supplyAsync(() -> getUserByUserId(id));
+    }
 }
 